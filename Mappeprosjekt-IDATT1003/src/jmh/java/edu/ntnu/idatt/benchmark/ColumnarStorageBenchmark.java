@@ -0,0 +1,151 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.ColumnarFoodStorage;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full-storage value scans over {@code lots} lots spread over 1000 names, comparing the columnar
+ * storage with FoodStorage and with the original {@code HashMap<String, ArrayList<Grocery>>}
+ * layout. The cutoff is a year out, so every lot is visited.
+ *
+ * <p>Run {@link #main(String[])} to print the retained heap per lot of each layout.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ColumnarStorageBenchmark {
+
+  private static final int NAMES = 1000;
+
+  @Param({"100000", "1000000"})
+  private int lots;
+
+  private HashMap<String, ArrayList<Grocery>> hashMap;
+  private FoodStorage foodStorage;
+  private ColumnarFoodStorage columnar;
+  private LocalDate cutoff;
+
+  /**
+   * Fills all three layouts with the same lots.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    hashMap = hashMap(lots);
+    foodStorage = Workloads.storage(NAMES, lots / NAMES, 1003);
+    columnar = columnar(lots);
+    cutoff = Workloads.TODAY.plusDays(Workloads.EXPIRY_SPREAD_DAYS);
+  }
+
+  /**
+   * The original scan: every list, every lot, through the Grocery getters.
+   *
+   * @return the value
+   */
+  @Benchmark
+  public double hashMapScan() {
+    double totalValue = 0.0;
+    for (ArrayList<Grocery> list : hashMap.values()) {
+      for (Grocery g : list) {
+        if (g.getExpiryDate().isBefore(cutoff)) {
+          totalValue += g.getAmount() * g.getUnitPrice();
+        }
+      }
+    }
+    return totalValue;
+  }
+
+  /**
+   * FoodStorage's scan over its expiry index.
+   *
+   * @return the value
+   */
+  @Benchmark
+  public double foodStorageScan() {
+    return foodStorage.valueOfExpiredGroceries(cutoff);
+  }
+
+  /**
+   * The columnar scan over primitive arrays.
+   *
+   * @return the value
+   */
+  @Benchmark
+  public double columnarScan() {
+    return columnar.valueOfExpiredGroceries(cutoff);
+  }
+
+  private static HashMap<String, ArrayList<Grocery>> hashMap(int lots) {
+    Random random = new Random(1003);
+    HashMap<String, ArrayList<Grocery>> map = new HashMap<>();
+    for (int i = 0; i < lots; i++) {
+      String name = Workloads.name(i % NAMES);
+      map.computeIfAbsent(name, n -> new ArrayList<>()).add(Workloads.lot(name, random));
+    }
+    return map;
+  }
+
+  private static ColumnarFoodStorage columnar(int lots) {
+    Random random = new Random(1003);
+    ColumnarFoodStorage storage = new ColumnarFoodStorage();
+    for (int i = 0; i < lots; i++) {
+      storage.addGrocery(Workloads.lot(Workloads.name(i % NAMES), random));
+    }
+    return storage;
+  }
+
+  /**
+   * Prints the heap retained per lot by each layout with one million lots.
+   *
+   * @param args not used
+   */
+  public static void main(String[] args) {
+    int lots = 1_000_000;
+    footprint("HashMap<String, ArrayList<Grocery>>", lots, () -> hashMap(lots));
+    footprint("FoodStorage", lots, () -> Workloads.storage(NAMES, lots / NAMES, 1003));
+    footprint("ColumnarFoodStorage", lots, () -> columnar(lots));
+  }
+
+  private static void footprint(String layout, int lots, Supplier<Object> build) {
+    MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    long before = settledHeap(memory);
+    Object storage = build.get();
+    long after = settledHeap(memory);
+    System.out.printf("%-36s %6.1f bytes/lot%n", layout, (after - before) / (double) lots);
+    // Keep the storage reachable until it has been measured
+    if (storage.hashCode() == 42) {
+      System.out.println();
+    }
+  }
+
+  private static long settledHeap(MemoryMXBean memory) {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+    }
+    return memory.getHeapMemoryUsage().getUsed();
+  }
+}
@@ -0,0 +1,154 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.StoragePipeline;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares FoodStorage throughput when every call goes through one global lock against calling
+ * the lock-striped storage directly, and against sending every change through a
+ * {@link StoragePipeline} and waiting for it. Each operation is 40% adds, 40% withdrawals and 20%
+ * total lookups on a random grocery.
+ *
+ * <p>With {@code recipes} above 0, a cookbook of that many four-ingredient recipes is attached to
+ * the storage, so every change also updates its recipe availability index, as it does in the
+ * application.</p>
+ *
+ * <p>Under the benchmark profile this runs single-threaded like the other benchmarks; run
+ * {@link #main(String[])} to sweep 1, 4, 16 and 64 threads.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentThroughputBenchmark {
+
+  private static final int[] THREAD_COUNTS = {1, 4, 16, 64};
+
+  @Param({"256"})
+  private int names;
+
+  @Param({"0", "1000"})
+  private int recipes;
+
+  private FoodStorage foodStorage;
+  private Object globalLock;
+  private StoragePipeline pipeline;
+
+  /**
+   * Builds a storage with 100 lots per grocery and its cookbook.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    foodStorage = Workloads.storage(names, 100, 1003);
+    globalLock = new Object();
+    CookBook cookBook = Workloads.cookBook(foodStorage, names, recipes, 4, 7);
+    pipeline = StoragePipeline.start(foodStorage, cookBook, StoragePipeline.Settings.defaults());
+  }
+
+  /**
+   * Stops the pipeline's writer.
+   */
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    pipeline.close();
+  }
+
+  /**
+   * One operation, with every call serialised on a single lock.
+   */
+  @Benchmark
+  public void globalLock() {
+    synchronized (globalLock) {
+      step();
+    }
+  }
+
+  /**
+   * One operation against the striped storage.
+   */
+  @Benchmark
+  public void striped() {
+    step();
+  }
+
+  /**
+   * One operation through the single-writer pipeline. Changes wait for their batch to be applied;
+   * lookups read the published totals.
+   */
+  @Benchmark
+  public void pipelined() {
+    Random random = ThreadLocalRandom.current();
+    String name = Workloads.name(random.nextInt(names));
+    int operation = random.nextInt(5);
+    if (operation < 2) {
+      pipeline.addGrocery(Workloads.lot(name, random)).join();
+    } else if (operation < 4) {
+      if (pipeline.getTotalAmount(name) >= 1.0) {
+        // Fails on its own if another thread emptied the grocery first
+        pipeline.removeAmount(name, 1.0).exceptionally(raced -> null).join();
+      }
+    } else {
+      pipeline.getTotalAmount(name);
+    }
+  }
+
+  private void step() {
+    Random random = ThreadLocalRandom.current();
+    String name = Workloads.name(random.nextInt(names));
+    int operation = random.nextInt(5);
+    if (operation < 2) {
+      foodStorage.addGrocery(Workloads.lot(name, random));
+    } else if (operation < 4) {
+      if (foodStorage.getTotalAmount(name) >= 1.0) {
+        try {
+          foodStorage.removeAmount(name, 1.0);
+        } catch (IllegalArgumentException raced) {
+          // Another thread emptied the grocery first
+        }
+      }
+    } else {
+      foodStorage.getTotalAmount(name);
+    }
+  }
+
+  /**
+   * Runs both benchmarks at 1, 4, 16 and 64 threads, writing one JSON result file per thread
+   * count to the target directory.
+   *
+   * @param args not used
+   * @throws RunnerException if JMH fails
+   */
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : THREAD_COUNTS) {
+      new Runner(new OptionsBuilder()
+          .include(ConcurrentThroughputBenchmark.class.getSimpleName())
+          .threads(threads)
+          .resultFormat(ResultFormatType.JSON)
+          .result("target/jmh-concurrency-" + threads + ".json")
+          .build()).run();
+    }
+  }
+}
@@ -0,0 +1,141 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.Recipe;
+import edu.ntnu.idatt.models.Unit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hot paths of CookBook over {@code recipes} recipes of {@code ingredientsPerRecipe} ingredients,
+ * drawn from a storage of {@code names} groceries with {@code lotsPerName} lots each.
+ *
+ * <p>{@link #checkRecipeAvailability()} evaluates a compiled requirement vector;
+ * {@link #checkByIngredientList()} is the same check done by walking the recipe's ingredient
+ * objects and looking every grocery up by name. Run with {@code -prof gc} to compare
+ * allocation.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CookBookBenchmark {
+
+  @Param({"1000"})
+  private int names;
+
+  @Param({"100"})
+  private int lotsPerName;
+
+  @Param({"1000", "50000"})
+  private int recipes;
+
+  @Param({"4", "12"})
+  private int ingredientsPerRecipe;
+
+  private FoodStorage foodStorage;
+  private CookBook cookBook;
+  private String[] recipeNames;
+  private int next;
+
+  /**
+   * Builds the storage and cookbook once per trial; the benchmarks keep them in a steady state.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    foodStorage = Workloads.storage(names, lotsPerName, 1003);
+    cookBook = Workloads.cookBook(foodStorage, names, recipes, ingredientsPerRecipe, 7);
+    recipeNames = new String[recipes];
+    for (int i = 0; i < recipes; i++) {
+      recipeNames[i] = "Recipe" + i;
+    }
+    next = 0;
+  }
+
+  /**
+   * Lists the recipes that can be made.
+   *
+   * @return the suggested recipes
+   */
+  @Benchmark
+  public List<String> suggestRecipes() {
+    return cookBook.suggestRecipes();
+  }
+
+  /**
+   * Computes the maximum portions of every recipe.
+   *
+   * @return portions by recipe name
+   */
+  @Benchmark
+  public Map<String, Double> maxPortions() {
+    return cookBook.maxPortions();
+  }
+
+  /**
+   * Checks one recipe against the storage through the cookbook.
+   *
+   * @return whether the recipe can be made
+   */
+  @Benchmark
+  public boolean checkRecipeAvailability() {
+    return cookBook.checkRecipeAvailability(nextRecipe());
+  }
+
+  /**
+   * Checks one recipe by walking its ingredient list, summing repeated ingredients by name.
+   *
+   * @return whether the recipe can be made
+   */
+  @Benchmark
+  public boolean checkByIngredientList() {
+    Recipe recipe = cookBook.getRecipe(nextRecipe());
+    Map<String, Double> required = new HashMap<>();
+    for (Grocery ingredient : recipe.getIngredients()) {
+      required.merge(ingredient.getName(), ingredient.getAmount(), Double::sum);
+    }
+    for (Map.Entry<String, Double> entry : required.entrySet()) {
+      if (foodStorage.getTotalAmount(entry.getKey()) < entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Prepares one recipe, then restocks its ingredients.
+   */
+  @Benchmark
+  public void prepareRecipe() {
+    String recipeName = nextRecipe();
+    cookBook.prepareRecipe(recipeName);
+    for (Grocery ingredient : cookBook.getRecipe(recipeName).getIngredients()) {
+      foodStorage.addGrocery(new Grocery(ingredient.getName(), ingredient.getAmount(),
+          Unit.KILOGRAM, Workloads.TODAY.plusDays(Workloads.EXPIRY_SPREAD_DAYS), 2.5));
+    }
+  }
+
+  private String nextRecipe() {
+    String recipeName = recipeNames[next];
+    next = next + 1 == recipes ? 0 : next + 1;
+    return recipeName;
+  }
+}
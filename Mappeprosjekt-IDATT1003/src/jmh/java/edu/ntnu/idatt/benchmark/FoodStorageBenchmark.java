@@ -0,0 +1,170 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.StockBatch;
+import edu.ntnu.idatt.models.Unit;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Hot paths of FoodStorage over a storage of {@code names} groceries with {@code lotsPerName}
+ * lots each.
+ *
+ * <p>Mutating benchmarks keep the storage in a steady state: withdrawals restock what they took,
+ * and the expiry sweep first stocks the lots it will remove, so later invocations measure the
+ * same amount of work as earlier ones.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FoodStorageBenchmark {
+
+  @Param({"100", "1000"})
+  private int names;
+
+  @Param({"10", "1000"})
+  private int lotsPerName;
+
+  @Param({"100"})
+  private int expiredPerSweep;
+
+  private FoodStorage foodStorage;
+  private Random random;
+  private int next;
+
+  /**
+   * Builds a fresh storage for every iteration, so lots added by earlier iterations do not pile
+   * up.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    foodStorage = Workloads.storage(names, lotsPerName, 1003);
+    random = new Random(42);
+    next = 0;
+  }
+
+  private String nextName() {
+    next = next + 1 == names ? 0 : next + 1;
+    return Workloads.name(next);
+  }
+
+  /**
+   * Adds one lot.
+   */
+  @Benchmark
+  public void addGrocery() {
+    foodStorage.addGrocery(Workloads.lot(nextName(), random));
+  }
+
+  /**
+   * Withdraws one and a half lots' worth, then restocks it as a single lot.
+   */
+  @Benchmark
+  public void removeAmount() {
+    String name = nextName();
+    foodStorage.removeAmount(name, 1.5);
+    foodStorage.addGrocery(new Grocery(name, 1.5, Unit.KILOGRAM,
+        Workloads.TODAY.plusDays(random.nextInt(Workloads.EXPIRY_SPREAD_DAYS)), 2.5));
+  }
+
+  /**
+   * Looks up the total of one grocery.
+   *
+   * @return the total, so the lookup is not optimised away
+   */
+  @Benchmark
+  public double getTotalAmount() {
+    return foodStorage.getTotalAmount(nextName());
+  }
+
+  /**
+   * Lists the lots expiring within the first week, about 2% of the storage.
+   *
+   * @return the expired lots
+   */
+  @Benchmark
+  public List<Grocery> expiredGroceries() {
+    return foodStorage.expiredGroceries(Workloads.TODAY.plusDays(7));
+  }
+
+  /**
+   * Values the lots expiring within the first month, about 8% of the storage.
+   *
+   * @return the value
+   */
+  @Benchmark
+  public double valueOfExpiredGroceries() {
+    return foodStorage.valueOfExpiredGroceries(Workloads.TODAY.plusDays(30));
+  }
+
+  /**
+   * Values the lots expiring in one week-long window, moving the window a day each call, as a
+   * dashboard charting value at risk over the coming year would.
+   *
+   * @return the value
+   */
+  @Benchmark
+  public double valueExpiringBetween() {
+    next = next + 1 == 365 ? 0 : next + 1;
+    LocalDate from = Workloads.TODAY.plusDays(next);
+    return foodStorage.valueExpiringBetween(from, from.plusDays(7));
+  }
+
+  /**
+   * Checks out 200 withdrawals of half a lot and restocks them as 100 lots, one call per change.
+   */
+  @Benchmark
+  public void checkoutSeparately() {
+    for (int i = 0; i < 200; i++) {
+      foodStorage.removeAmount(nextName(), 0.5);
+    }
+    for (int i = 0; i < 100; i++) {
+      foodStorage.addGrocery(Workloads.lot(nextName(), random));
+    }
+  }
+
+  /**
+   * Makes the same changes as {@link #checkoutSeparately()} as a single batch.
+   */
+  @Benchmark
+  public void checkoutBatch() {
+    StockBatch batch = new StockBatch();
+    for (int i = 0; i < 200; i++) {
+      batch.withdraw(nextName(), 0.5);
+    }
+    for (int i = 0; i < 100; i++) {
+      batch.add(Workloads.lot(nextName(), random));
+    }
+    foodStorage.apply(batch);
+  }
+
+  /**
+   * Stocks {@code expiredPerSweep} lots that expired yesterday, then sweeps them out.
+   */
+  @Benchmark
+  public void removeCurrentlyExpiredGroceries() {
+    LocalDate yesterday = Workloads.TODAY.minusDays(1);
+    for (int i = 0; i < expiredPerSweep; i++) {
+      foodStorage.addGrocery(new Grocery(nextName(), 1.0, Unit.KILOGRAM, yesterday, 2.5));
+    }
+    foodStorage.removeCurrentlyExpiredGroceries();
+  }
+}
@@ -0,0 +1,111 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.ColumnarFoodStorage;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.GroceryStorage;
+import edu.ntnu.idatt.models.OffHeapFoodStorage;
+import edu.ntnu.idatt.models.Unit;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Garbage collection cost of holding {@code lots} lots in each storage backend.
+ *
+ * <p>{@link #fullCollection()} times one full collection with the storage live, which grows with
+ * the number of heap objects the collector has to trace. {@link #steadyChurn()} adds and
+ * withdraws lots while allocating short-lived garbage; run it with
+ * {@code -Djmh.args="GcPauseBenchmark.steadyChurn -prof gc"} to compare gc.count and gc.time, the time
+ * spent in young collections.</p>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms3g", "-Xmx3g", "-XX:+UseG1GC"})
+public class GcPauseBenchmark {
+
+  private static final int NAMES = 1000;
+
+  @Param({"foodStorage", "columnar", "offHeap"})
+  private String backend;
+
+  @Param({"2000000"})
+  private int lots;
+
+  private GroceryStorage storage;
+  private Random random;
+  private int next;
+
+  /**
+   * Fills the storage once per trial.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    storage = switch (backend) {
+      case "foodStorage" -> new FoodStorage();
+      case "columnar" -> new ColumnarFoodStorage();
+      case "offHeap" -> new OffHeapFoodStorage();
+      default -> throw new IllegalArgumentException("Unknown backend: " + backend);
+    };
+    random = new Random(1003);
+    for (int i = 0; i < lots; i++) {
+      storage.addGrocery(Workloads.lot(Workloads.name(i % NAMES), random));
+    }
+  }
+
+  /**
+   * Frees the off-heap storage.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (storage instanceof AutoCloseable closeable) {
+      try {
+        closeable.close();
+      } catch (Exception e) {
+        throw new IllegalStateException(e);
+      }
+    }
+  }
+
+  /**
+   * Runs one full collection.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  @Warmup(iterations = 2)
+  @Measurement(iterations = 10)
+  public void fullCollection() {
+    System.gc();
+  }
+
+  /**
+   * Adds a lot, withdraws as much again and allocates a little garbage on the side.
+   *
+   * @return the garbage, so it is not optimised away
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  @Warmup(iterations = 3, time = 2)
+  @Measurement(iterations = 5, time = 2)
+  public byte[] steadyChurn() {
+    next = next + 1 == NAMES ? 0 : next + 1;
+    String name = Workloads.name(next);
+    storage.addGrocery(new Grocery(name, 1.0, Unit.KILOGRAM,
+        Workloads.TODAY.plusDays(random.nextInt(Workloads.EXPIRY_SPREAD_DAYS)), 2.5));
+    storage.removeAmount(name, 1.0);
+    return new byte[256];
+  }
+}
@@ -0,0 +1,109 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.Unit;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * FoodStorage under daily restocking of the same items, with and without lot merging. Every
+ * grocery is restocked {@code restocksPerDay} times a day for {@code days} days, always at the
+ * same unit price, so without merging each name holds {@code days * restocksPerDay} lots and
+ * with merging one lot per day.
+ *
+ * <p>The withdrawal benchmark restocks what it took on the same terms, so the lot counts stay as
+ * built.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LotMergingBenchmark {
+
+  @Param({"false", "true"})
+  private boolean merge;
+
+  @Param({"100"})
+  private int names;
+
+  @Param({"30"})
+  private int days;
+
+  @Param({"40"})
+  private int restocksPerDay;
+
+  private FoodStorage foodStorage;
+  private int next;
+
+  /**
+   * Builds a fresh restocked storage for every iteration.
+   */
+  @Setup(Level.Iteration)
+  public void setUp() {
+    foodStorage = new FoodStorage();
+    foodStorage.setLotMerging(merge);
+    for (int day = 0; day < days; day++) {
+      for (int restock = 0; restock < restocksPerDay; restock++) {
+        for (int n = 0; n < names; n++) {
+          foodStorage.addGrocery(restock(Workloads.name(n), day));
+        }
+      }
+    }
+    next = 0;
+  }
+
+  private Grocery restock(String name, int day) {
+    return new Grocery(name, 0.5, Unit.KILOGRAM, Workloads.TODAY.plusDays(day), 2.5);
+  }
+
+  private String nextName() {
+    next = next + 1 == names ? 0 : next + 1;
+    return Workloads.name(next);
+  }
+
+  /**
+   * Withdraws several restocks' worth, then restocks it on the latest day.
+   */
+  @Benchmark
+  public void removeAmount() {
+    String name = nextName();
+    foodStorage.removeAmount(name, 2.0);
+    for (int i = 0; i < 4; i++) {
+      foodStorage.addGrocery(restock(name, days - 1));
+    }
+  }
+
+  /**
+   * Looks up the total of one grocery.
+   *
+   * @return the total
+   */
+  @Benchmark
+  public double getTotalAmount() {
+    return foodStorage.getTotalAmount(nextName());
+  }
+
+  /**
+   * Renders every lot of one grocery.
+   *
+   * @return the rendered lots
+   */
+  @Benchmark
+  public String displayGroceryByKey() {
+    return foodStorage.displayGroceryByKey(nextName());
+  }
+}
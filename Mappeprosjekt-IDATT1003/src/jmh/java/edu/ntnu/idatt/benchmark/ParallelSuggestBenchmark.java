@@ -0,0 +1,73 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.FoodStorage;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Full-catalog suggestions from a snapshot of the storage totals, on fork-join pools of
+ * {@code parallelism} workers over cookbooks of {@code recipes} recipes. Speedup is bounded by
+ * the cores of the machine; check {@code nproc} before reading the parallelism rows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ParallelSuggestBenchmark {
+
+  private static final int NAMES = 1000;
+
+  @Param({"1", "2", "4", "8"})
+  private int parallelism;
+
+  @Param({"10000", "100000", "500000"})
+  private int recipes;
+
+  private CookBook cookBook;
+  private ForkJoinPool pool;
+
+  /**
+   * Builds the storage, cookbook and pool once per trial.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    FoodStorage foodStorage = Workloads.storage(NAMES, 20, 1003);
+    cookBook = Workloads.cookBook(foodStorage, NAMES, recipes, 4, 7);
+    pool = new ForkJoinPool(parallelism);
+  }
+
+  /**
+   * Shuts the pool down.
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  /**
+   * Checks every recipe against one snapshot of the totals.
+   *
+   * @return the suggested recipes
+   */
+  @Benchmark
+  public List<String> suggestRecipes() {
+    return cookBook.suggestRecipes(pool);
+  }
+}
@@ -0,0 +1,128 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.Unit;
+import edu.ntnu.idatt.persistence.MappedSnapshot;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time from nothing to a usable storage of {@code names} groceries with {@code lotsPerName} lots
+ * each: opening a mapped snapshot against building the storage with addGrocery calls.
+ *
+ * <p>Each invocation is timed on its own, so the numbers are cold starts. Run with
+ * {@code -Djmh.args="SnapshotStartup -prof gc"} to compare the bytes allocated per start.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class SnapshotStartupBenchmark {
+
+  @Param({"1000"})
+  private int names;
+
+  @Param({"100", "1000"})
+  private int lotsPerName;
+
+  private Path file;
+  private String[] lotNames;
+  private double[] amounts;
+  private LocalDate[] expiryDates;
+
+  /**
+   * Writes the snapshot and keeps the same lots as plain arrays for the addGrocery baseline.
+   *
+   * @throws IOException if the snapshot cannot be written
+   */
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    FoodStorage source = Workloads.storage(names, lotsPerName, 1003);
+    file = Files.createTempFile("storage", ".snapshot");
+    MappedSnapshot.write(file, source);
+
+    int lots = names * lotsPerName;
+    lotNames = new String[lots];
+    amounts = new double[lots];
+    expiryDates = new LocalDate[lots];
+    int i = 0;
+    for (Map.Entry<String, List<Grocery>> entry : source.getGroceries().entrySet()) {
+      for (Grocery lot : entry.getValue()) {
+        lotNames[i] = entry.getKey();
+        amounts[i] = lot.getAmount();
+        expiryDates[i] = lot.getExpiryDate();
+        i++;
+      }
+    }
+  }
+
+  /**
+   * Deletes the snapshot.
+   *
+   * @throws IOException if the file cannot be deleted
+   */
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(file);
+  }
+
+  /**
+   * Opens the snapshot and reads the total of one grocery, which materializes only its lots.
+   *
+   * @return the total
+   * @throws IOException if the snapshot cannot be read
+   */
+  @Benchmark
+  public double openMapped() throws IOException {
+    FoodStorage foodStorage = new FoodStorage(MappedSnapshot.open(file));
+    return foodStorage.getTotalAmount(Workloads.name(0));
+  }
+
+  /**
+   * Opens the snapshot and runs a whole-storage query, which materializes every lot.
+   *
+   * @return the value of the lots expiring within a month
+   * @throws IOException if the snapshot cannot be read
+   */
+  @Benchmark
+  public double openMappedAndLoadAll() throws IOException {
+    FoodStorage foodStorage = new FoodStorage(MappedSnapshot.open(file));
+    return foodStorage.valueOfExpiredGroceries(Workloads.TODAY.plusDays(30));
+  }
+
+  /**
+   * Builds the same storage lot by lot.
+   *
+   * @return the storage
+   */
+  @Benchmark
+  public FoodStorage addGrocery() {
+    FoodStorage foodStorage = new FoodStorage();
+    for (int i = 0; i < lotNames.length; i++) {
+      foodStorage.addGrocery(
+          new Grocery(lotNames[i], amounts[i], Unit.KILOGRAM, expiryDates[i], 2.5));
+    }
+    return foodStorage;
+  }
+}
@@ -0,0 +1,143 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.StorageHistory;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Point-in-time queries against a year of simulated history. Every simulated day, each of
+ * {@code names} groceries is restocked {@code changesPerDay / 2} times and withdrawn from as
+ * often, spread evenly over the day, which records a little over {@code changesPerDay * 365}
+ * deltas. Queries then ask about random moments of that year.
+ *
+ * <p>{@code checkpointInterval} trades memory for query time: a query replays up to that many
+ * deltas after the nearest checkpoint.</p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StorageHistoryBenchmark {
+
+  private static final long DAY_MILLIS = 86_400_000L;
+
+  @Param({"256", "4096"})
+  private int checkpointInterval;
+
+  @Param({"100"})
+  private int names;
+
+  @Param({"2000"})
+  private int changesPerDay;
+
+  private StorageHistory history;
+  private Instant start;
+  private Random random;
+
+  /**
+   * Records the simulated year once per run; the queries do not change it.
+   */
+  @Setup(Level.Trial)
+  public void setUp() {
+    SimulatedClock clock = new SimulatedClock(
+        Workloads.TODAY.atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli());
+    start = clock.instant();
+    FoodStorage foodStorage = Workloads.storage(names, 10, 1003);
+    history = new StorageHistory(foodStorage, clock,
+        new StorageHistory.Settings(checkpointInterval));
+    Random changes = new Random(42);
+    long step = DAY_MILLIS / changesPerDay;
+    for (int day = 0; day < 365; day++) {
+      for (int change = 0; change < changesPerDay; change += 2) {
+        String name = Workloads.name(changes.nextInt(names));
+        clock.advance(step);
+        foodStorage.addGrocery(Workloads.lot(name, changes));
+        clock.advance(step);
+        foodStorage.removeAmount(name, 0.75);
+      }
+    }
+    random = new Random(7);
+  }
+
+  private Instant randomMoment() {
+    return start.plusMillis((long) (random.nextDouble() * 365 * DAY_MILLIS));
+  }
+
+  /**
+   * Looks up the total of one grocery at a random moment of the year.
+   *
+   * @return the total
+   */
+  @Benchmark
+  public double getTotalAmountAsOf() {
+    return history.getTotalAmount(Workloads.name(random.nextInt(names)), randomMoment());
+  }
+
+  /**
+   * Values the lots that were stored at a random moment of the year and expired within a month
+   * of it.
+   *
+   * @return the value
+   */
+  @Benchmark
+  public double valueOfExpiredGroceriesAsOf() {
+    Instant moment = randomMoment();
+    return history.valueOfExpiredGroceries(
+        moment.atZone(ZoneOffset.UTC).toLocalDate().plusDays(30), moment);
+  }
+
+  /**
+   * A clock moved forward by hand as the simulation runs.
+   */
+  private static final class SimulatedClock extends Clock {
+
+    private long millis;
+
+    private SimulatedClock(long millis) {
+      this.millis = millis;
+    }
+
+    private void advance(long delta) {
+      millis += delta;
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public long millis() {
+      return millis;
+    }
+
+    @Override
+    public Instant instant() {
+      return Instant.ofEpochMilli(millis);
+    }
+  }
+}
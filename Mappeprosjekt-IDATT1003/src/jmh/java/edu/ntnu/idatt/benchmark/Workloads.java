@@ -0,0 +1,97 @@
+package edu.ntnu.idatt.benchmark;
+
+import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.Unit;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds the storages and cookbooks the benchmarks run against. Everything is seeded, so each
+ * run sees the same data.
+ */
+final class Workloads {
+
+  /**
+   * The date all generated expiry dates are relative to.
+   */
+  static final LocalDate TODAY = LocalDate.now();
+
+  /**
+   * Number of days generated expiry dates are spread over.
+   */
+  static final int EXPIRY_SPREAD_DAYS = 365;
+
+  private Workloads() {
+  }
+
+  /**
+   * Returns the name of the grocery with the given index.
+   *
+   * @param index the grocery index
+   * @return the grocery name
+   */
+  static String name(int index) {
+    return "Grocery" + index;
+  }
+
+  /**
+   * Creates a lot of one unit with an expiry date within the spread.
+   *
+   * @param name   the grocery name
+   * @param random the source of expiry dates
+   * @return a new lot
+   */
+  static Grocery lot(String name, Random random) {
+    return new Grocery(name, 1.0, Unit.KILOGRAM,
+        TODAY.plusDays(random.nextInt(EXPIRY_SPREAD_DAYS)), 2.5);
+  }
+
+  /**
+   * Fills a storage with the given number of names, each with the given number of lots.
+   *
+   * @param names       number of distinct grocery names
+   * @param lotsPerName number of lots per name
+   * @param seed        random seed for expiry dates
+   * @return the filled storage
+   */
+  static FoodStorage storage(int names, int lotsPerName, long seed) {
+    Random random = new Random(seed);
+    FoodStorage foodStorage = new FoodStorage();
+    for (int lot = 0; lot < lotsPerName; lot++) {
+      for (int n = 0; n < names; n++) {
+        foodStorage.addGrocery(lot(name(n), random));
+      }
+    }
+    return foodStorage;
+  }
+
+  /**
+   * Creates a cookbook over the storage with recipes named "Recipe0", "Recipe1", and so on. Each
+   * recipe needs a small amount of randomly chosen groceries, so most recipes can be made.
+   *
+   * @param foodStorage          the storage to cook from
+   * @param names                number of distinct grocery names in the storage
+   * @param recipes              number of recipes
+   * @param ingredientsPerRecipe number of ingredients per recipe
+   * @param seed                 random seed for ingredient choice
+   * @return the filled cookbook
+   */
+  static CookBook cookBook(FoodStorage foodStorage, int names, int recipes,
+      int ingredientsPerRecipe, long seed) {
+    Random random = new Random(seed);
+    CookBook cookBook = new CookBook(foodStorage);
+    for (int r = 0; r < recipes; r++) {
+      List<Grocery> ingredients = new ArrayList<>(ingredientsPerRecipe);
+      for (int i = 0; i < ingredientsPerRecipe; i++) {
+        ingredients.add(new Grocery(name(random.nextInt(names)), 0.1 + random.nextDouble(),
+            Unit.KILOGRAM, TODAY, 1.0));
+      }
+      cookBook.addRecipe("Recipe" + r, "Benchmark recipe", "None", ingredients, 1);
+    }
+    return cookBook;
+  }
+}
@@ -0,0 +1,287 @@
+package edu.ntnu.idatt.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A grocery storage that keeps lots in parallel primitive arrays instead of {@link Grocery}
+ * objects. Each lot takes one slot across five columns: name id, amount, unit ordinal, expiry
+ * epoch day and unit price. That is 25 bytes per lot plus a 4 byte entry in its name's queue,
+ * with no object header or {@link LocalDate} behind it.
+ *
+ * <p>Behaves like {@link FoodStorage}, with one difference: lots are stored by value. Groceries
+ * passed in are copied, and groceries handed out are new objects, so changing them does not
+ * change the storage.</p>
+ *
+ * <p>Each name keeps the slots of its lots in expiry order, so withdrawals and the expiry sweep
+ * take lots from the front of a queue. Freed slots are reused by later lots. A freed slot gets an
+ * amount of 0 and an expiry day that never passes, so value scans need no extra check to skip
+ * it.</p>
+ *
+ * <p>The storage is safe to use from several threads. Queries share a read lock and changes take
+ * a write lock.</p>
+ */
+public class ColumnarFoodStorage implements GroceryStorage {
+
+  private static final Unit[] UNITS = Unit.values();
+  private static final int FREE_EXPIRY_DAY = Integer.MAX_VALUE;
+  /* tolerance set to 1g/1ml in order to circumvent floating point inaccuracies
+  when trying to remove the entire amount */
+  private static final double TOLERANCE = 0.001;
+
+  private final StampedLock lock;
+  private final NameDictionary names;
+
+  // Lot columns, indexed by slot
+  private int[] nameIds;
+  private double[] amounts;
+  private byte[] units;
+  private int[] expiryDays;
+  private double[] unitPrices;
+  private int slotCount;
+  private int[] freeSlots;
+  private int freeCount;
+
+  // Per-name queues of slots in expiry order, and running totals
+  private final SlotQueues queues;
+
+  /**
+   * Initializes an empty storage.
+   */
+  public ColumnarFoodStorage() {
+    this.lock = new StampedLock();
+    this.names = new NameDictionary();
+    int capacity = 1024;
+    this.nameIds = new int[capacity];
+    this.amounts = new double[capacity];
+    this.units = new byte[capacity];
+    this.expiryDays = new int[capacity];
+    this.unitPrices = new double[capacity];
+    this.freeSlots = new int[64];
+    this.queues = new SlotQueues(slot -> expiryDays[slot], slot -> amounts[slot]);
+  }
+
+  /**
+   * Adds a copy of a grocery item to the storage. No restrictions on expiry date.
+   *
+   * @param grocery the grocery item to add
+   * @throws IllegalArgumentException if the grocery is null or its expiry date is millions of
+   *                                  years away
+   */
+  @Override
+  public void addGrocery(Grocery grocery) {
+    if (grocery == null) {
+      throw new IllegalArgumentException("grocery cannot be null");
+    }
+    long expiryDay = grocery.getExpiryDate().toEpochDay();
+    if (expiryDay < Integer.MIN_VALUE || expiryDay >= FREE_EXPIRY_DAY) {
+      throw new IllegalArgumentException("Expiry date is out of range");
+    }
+    long stamp = lock.writeLock();
+    try {
+      int nameId = names.intern(grocery.getName());
+      queues.ensureCapacity(nameId);
+      int slot = allocateSlot();
+      nameIds[slot] = nameId;
+      amounts[slot] = grocery.getAmount();
+      units[slot] = (byte) grocery.getUnit().ordinal();
+      expiryDays[slot] = (int) expiryDay;
+      unitPrices[slot] = grocery.getUnitPrice();
+      queues.enqueue(nameId, slot);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public void removeAmount(String groceryName, double amountRemoved) {
+    if (groceryName == null || groceryName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Grocery name cannot be null or empty");
+    }
+    long stamp = lock.writeLock();
+    try {
+      int nameId = names.idOf(groceryName);
+      if (nameId < 0) {
+        throw new IllegalArgumentException("No grocery found with the name: " + groceryName);
+      }
+      if (queues.total(nameId) < amountRemoved) {
+        throw new IllegalArgumentException(
+            "Amount to remove cannot be larger than the total amount");
+      }
+      while (amountRemoved > TOLERANCE && queues.head(nameId) < queues.end(nameId)) {
+        int oldest = queues.lotAt(nameId, queues.head(nameId));
+        if (amounts[oldest] > amountRemoved) {
+          amounts[oldest] -= amountRemoved;
+          queues.addToTotal(nameId, -amountRemoved);
+          amountRemoved = 0;
+        } else {
+          amountRemoved -= amounts[oldest];
+          freeSlot(queues.dequeueOldest(nameId));
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  @Override
+  public double getTotalAmount(String groceryName) {
+    if (groceryName == null || groceryName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Grocery name cannot be null or empty");
+    }
+    long stamp = lock.readLock();
+    try {
+      int nameId = names.idOf(groceryName);
+      return nameId < 0 ? 0.0 : queues.total(nameId);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  @Override
+  public List<Grocery> expiredGroceries(LocalDate date) {
+    if (date == null) {
+      throw new IllegalArgumentException("date cannot be null");
+    }
+    long cutoff = date.toEpochDay();
+    List<Grocery> expired = new ArrayList<>();
+    long stamp = lock.readLock();
+    try {
+      for (int nameId = 0; nameId < names.size(); nameId++) {
+        // Queues are in expiry order, so only the expired front of each queue is visited
+        for (int i = queues.head(nameId); i < queues.end(nameId); i++) {
+          int slot = queues.lotAt(nameId, i);
+          if (expiryDays[slot] >= cutoff) {
+            break;
+          }
+          expired.add(toGrocery(slot));
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    expired.sort(Comparator.comparing(Grocery::getExpiryDate));
+    return expired;
+  }
+
+  /**
+   * Returns the value of all groceries that expire before the given date. This is one pass over
+   * the expiry, amount and price columns that allocates nothing.
+   *
+   * @param date the cutoff date
+   * @return the value of the expired groceries
+   */
+  @Override
+  public double valueOfExpiredGroceries(LocalDate date) {
+    if (date == null) {
+      throw new IllegalArgumentException("date cannot be null");
+    }
+    long cutoff = date.toEpochDay();
+    double totalValue = 0.0;
+    long stamp = lock.readLock();
+    try {
+      for (int slot = 0; slot < slotCount; slot++) {
+        if (expiryDays[slot] < cutoff) {
+          totalValue += amounts[slot] * unitPrices[slot];
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    return totalValue;
+  }
+
+  @Override
+  public void removeCurrentlyExpiredGroceries() {
+    long today = LocalDate.now().toEpochDay();
+    long stamp = lock.writeLock();
+    try {
+      for (int nameId = 0; nameId < names.size(); nameId++) {
+        while (queues.head(nameId) < queues.end(nameId)
+            && expiryDays[queues.lotAt(nameId, queues.head(nameId))] < today) {
+          freeSlot(queues.dequeueOldest(nameId));
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Returns copies of the stored groceries grouped by name. Names without lots are left out.
+   *
+   * @return grocery lists keyed by name
+   */
+  @Override
+  public Map<String, List<Grocery>> getGroceries() {
+    Map<String, List<Grocery>> copy = new HashMap<>();
+    long stamp = lock.readLock();
+    try {
+      for (int nameId = 0; nameId < names.size(); nameId++) {
+        if (queues.head(nameId) == queues.end(nameId)) {
+          continue;
+        }
+        List<Grocery> lots = new ArrayList<>(queues.end(nameId) - queues.head(nameId));
+        for (int i = queues.head(nameId); i < queues.end(nameId); i++) {
+          lots.add(toGrocery(queues.lotAt(nameId, i)));
+        }
+        copy.put(names.name(nameId), lots);
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the number of lots in the storage.
+   *
+   * @return the lot count
+   */
+  public int lotCount() {
+    long stamp = lock.readLock();
+    try {
+      return slotCount - freeCount;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private Grocery toGrocery(int slot) {
+    return new Grocery(names.name(nameIds[slot]), amounts[slot], UNITS[units[slot]],
+        LocalDate.ofEpochDay(expiryDays[slot]), unitPrices[slot]);
+  }
+
+  private int allocateSlot() {
+    if (freeCount > 0) {
+      return freeSlots[--freeCount];
+    }
+    if (slotCount == nameIds.length) {
+      int capacity = slotCount * 2;
+      nameIds = Arrays.copyOf(nameIds, capacity);
+      amounts = Arrays.copyOf(amounts, capacity);
+      units = Arrays.copyOf(units, capacity);
+      expiryDays = Arrays.copyOf(expiryDays, capacity);
+      unitPrices = Arrays.copyOf(unitPrices, capacity);
+    }
+    return slotCount++;
+  }
+
+  private void freeSlot(int slot) {
+    nameIds[slot] = -1;
+    amounts[slot] = 0.0;
+    expiryDays[slot] = FREE_EXPIRY_DAY;
+    if (freeCount == freeSlots.length) {
+      freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+    }
+    freeSlots[freeCount++] = slot;
+  }
+
+
+}
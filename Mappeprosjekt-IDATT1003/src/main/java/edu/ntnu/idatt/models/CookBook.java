@@ -1,19 +1,62 @@
 package edu.ntnu.idatt.models;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
 
 //All javadoc commentary provided by OpenAI's ChatGPT and double-checked by hand
 
 /**
  * Represents a cookbook that integrates with a FoodStorage system to manage recipes and
  * ingredients.
+ *
+ * <p>Each recipe is compiled into a {@link RequirementVector} when it is added, and again when
+ * its portions change: the grocery id and total amount of every distinct ingredient. Checking
+ * and preparing a recipe work from that vector, so they neither walk the ingredient objects nor
+ * hash a grocery name, and allocate nothing.</p>
+ *
+ * <p>Availability checks are also cached per recipe, together with the versions of the groceries
+ * they depended on, see {@link #checkRecipeAvailability(String)}.</p>
  */
 public class CookBook {
 
+  /**
+   * How often availability checks were answered from the cache.
+   *
+   * @param hits   checks answered from the cache
+   * @param misses checks that had to compare the totals again
+   */
+  public record CacheStats(long hits, long misses) {
+
+    /**
+     * Returns the share of checks answered from the cache.
+     *
+     * @return hits divided by all checks, or 0.0 if there have been none
+     */
+    public double hitRate() {
+      long checks = hits + misses;
+      return checks == 0 ? 0.0 : (double) hits / checks;
+    }
+  }
+
+  // Number of recipes from which catalog passes are split across a fork-join pool
+  private static final int PARALLEL_THRESHOLD = 4096;
+  // Number of recipes one fork-join task checks without splitting further
+  private static final int LEAF_SIZE = 1024;
+
   private final FoodStorage foodStorage;
-  private final HashMap<String, Recipe> recipes;
+  private final ConcurrentHashMap<String, Entry> recipes;
+  private final RecipeAvailabilityIndex availability;
+  // Every entry in the order it was added; slots below catalogSize are never changed
+  private volatile Entry[] catalog;
+  private volatile int catalogSize;
+  private final LongAdder cacheHits;
+  private final LongAdder cacheMisses;
 
   /**
    * Constructs a new CookBook instance.
@@ -26,7 +69,12 @@ public class CookBook {
       throw new NullPointerException("foodStorage is null");
     }
     this.foodStorage = foodStorage;
-    this.recipes = new HashMap<>();
+    this.recipes = new ConcurrentHashMap<>();
+    this.availability = new RecipeAvailabilityIndex(foodStorage);
+    this.catalog = new Entry[64];
+    this.catalogSize = 0;
+    this.cacheHits = new LongAdder();
+    this.cacheMisses = new LongAdder();
   }
 
   /**
@@ -41,70 +89,213 @@ public class CookBook {
   public void addRecipe(String name, String description, String instructions,
       List<Grocery> groceryList,
       double portions) {
-    if (recipes.containsKey(name)) {
+    Recipe recipe = new Recipe(description, instructions, groceryList, portions);
+    Entry entry = new Entry(name, recipe, RequirementVector.compile(recipe, foodStorage));
+    if (recipes.putIfAbsent(name, entry) != null) {
       throw new IllegalArgumentException("Recipe with this name already exists.");
     }
-    recipes.put(name, new Recipe(description, instructions, groceryList, portions));
+    appendToCatalog(entry);
+    // Materialize ingredients the storage has not loaded yet, which takes their stripe locks,
+    // before the index reads their totals under its own monitor
+    for (int i = 0; i < entry.requirements.size(); i++) {
+      foodStorage.getTotalAmount(entry.requirements.groceryId(i));
+    }
+    // Indexed before it listens, so a change to the recipe always finds it in the index
+    availability.addRecipe(name, entry.requirements);
+    recipe.setChangeListener(() -> {
+      entry.requirements = RequirementVector.compile(recipe, foodStorage);
+      availability.recipeChanged(name, entry.requirements);
+    });
   }
 
   /**
    * Checks if all the ingredients for a given recipe are available in sufficient quantities in the
    * food storage.
    *
+   * <p>The last answer for each recipe is cached with the versions of its groceries. If nothing
+   * in the storage has changed since, the answer is returned after reading one counter. If other
+   * groceries have changed, the recipe's grocery versions are compared, and only if one of them
+   * has changed are the totals compared again. Hits allocate nothing.</p>
+   *
    * @param recipeName the name of the recipe to check
    * @return true if all ingredients are available, false otherwise
    * @throws IllegalArgumentException if the recipe does not exist
    */
   public boolean checkRecipeAvailability(String recipeName) {
-    Recipe recipe = recipes.get(recipeName);
-    if (recipe == null) {
-      throw new IllegalArgumentException("Recipe not found: " + recipeName);
-    }
-
-    for (Grocery ingredient : recipe.getIngredients()) {
-      double requiredAmount = ingredient.getAmount();
-      double availableAmount = foodStorage.getTotalAmount(ingredient.getName());
-      if (availableAmount < requiredAmount) {
-        return false;
+    Entry entry = getEntry(recipeName);
+    RequirementVector requirements = entry.requirements;
+    // Read before any version, so the versions found are at least as new as the count
+    long count = foodStorage.modificationCount();
+    CachedAvailability cached = entry.cached;
+    if (cached != null && cached.requirements == requirements) {
+      if (cached.checkedAt == count) {
+        cacheHits.increment();
+        return cached.available;
+      }
+      if (requirements.versionsMatch(foodStorage, cached.versions)) {
+        cached.checkedAt = count;
+        cacheHits.increment();
+        return cached.available;
       }
     }
-    return true;
+    cacheMisses.increment();
+    long[] versions = requirements.versions(foodStorage);
+    boolean available = requirements.isSatisfiedBy(foodStorage, 1.0);
+    entry.cached = new CachedAvailability(requirements, versions, available, count);
+    return available;
+  }
+
+  /**
+   * Checks a recipe against totals copied from the storage, such as
+   * {@link FoodStorage#snapshotTotals()}, instead of the live totals.
+   *
+   * @param recipeName the name of the recipe to check
+   * @param totals     the total of each grocery, indexed by grocery id
+   * @return true if all ingredients are available in those totals
+   * @throws IllegalArgumentException if the recipe does not exist
+   */
+  boolean checkRecipeAvailability(String recipeName, double[] totals) {
+    return getEntry(recipeName).requirements.isSatisfiedBy(totals);
+  }
+
+  /**
+   * Returns how often {@link #checkRecipeAvailability(String)} has been answered from the cache
+   * since the cookbook was created. Checks for other portion counts are not cached or counted.
+   *
+   * @return the hit and miss counts
+   */
+  public CacheStats availabilityCacheStats() {
+    return new CacheStats(cacheHits.sum(), cacheMisses.sum());
+  }
+
+  /**
+   * Checks if a given number of portions of a recipe can be made from the food storage. The
+   * recipe is not changed; its requirements are scaled as they are compared with the totals, so
+   * this allocates nothing.
+   *
+   * @param recipeName the name of the recipe to check
+   * @param portions   the number of portions (must be greater than 0)
+   * @return true if all ingredients are available for that many portions, false otherwise
+   * @throws IllegalArgumentException if the recipe does not exist or portions is not positive
+   */
+  public boolean checkRecipeAvailability(String recipeName, double portions) {
+    RequirementVector requirements = getEntry(recipeName).requirements;
+    return requirements.isSatisfiedBy(foodStorage, scale(requirements, portions));
   }
 
   /**
    * Suggests recipes from the cookbook that can be made with the ingredients available in the food
-   * storage.
+   * storage. The set of available recipes is maintained as groceries change, so no recipe is
+   * re-checked here.
    *
    * @return a list of recipe names that can be made
    */
   public List<String> suggestRecipes() {
-    List<String> availableRecipes = new ArrayList<>();
+    return availability.availableRecipes();
+  }
 
-    for (String recipeName : recipes.keySet()) {
-      if (checkRecipeAvailability(recipeName)) {
-        availableRecipes.add(recipeName);
-      }
+  /**
+   * Suggests recipes by checking every recipe against one snapshot of the storage totals, split
+   * across a fork-join pool. Unlike {@link #suggestRecipes()}, which reads the maintained index,
+   * this re-evaluates the whole catalog, so every recipe is judged against the same instant even
+   * while other threads change the stock.
+   *
+   * <p>Cookbooks with fewer than 4096 recipes are checked on the calling thread. Larger ones are
+   * split in halves down to tasks of 1024 recipes, and the halves are joined left to right, so the
+   * result lists recipes in the order they were added whatever the pool size.</p>
+   *
+   * @param pool the pool to run on
+   * @return a list of recipe names that can be made, in the order the recipes were added
+   * @throws IllegalArgumentException if the pool is null
+   */
+  public List<String> suggestRecipes(ForkJoinPool pool) {
+    if (pool == null) {
+      throw new IllegalArgumentException("pool cannot be null");
     }
+    int size = catalogSize;
+    Entry[] entries = catalog;
+    double[] totals = foodStorage.snapshotTotals();
+    SuggestTask task = new SuggestTask(entries, 0, size, totals);
+    return size < PARALLEL_THRESHOLD ? task.compute() : pool.invoke(task);
+  }
 
-    return availableRecipes;
+  /**
+   * Suggests recipes that could be made with the stock as it was when a storage snapshot was
+   * taken, so a report can list them next to the snapshot's other figures.
+   *
+   * @param snapshot a snapshot of this cookbook's food storage
+   * @return a list of recipe names that could be made, in the order the recipes were added
+   * @throws IllegalArgumentException if the snapshot is null
+   */
+  public List<String> suggestRecipesFrom(StorageSnapshot snapshot) {
+    if (snapshot == null) {
+      throw new IllegalArgumentException("snapshot cannot be null");
+    }
+    int size = catalogSize;
+    return new SuggestTask(catalog, 0, size, snapshot.totals()).compute();
   }
 
   /**
-   * Prepares a recipe by removing the required ingredients from the food storage.
+   * Returns how many portions of every recipe the current stock allows, each limited by its
+   * scarcest ingredient. Portions are not rounded, so a recipe with half the ingredients it needs
+   * for 2 portions can make 1.0. A recipe without ingredients can make infinitely many.
+   *
+   * <p>This is one pass over the compiled recipes that changes none of them. Cookbooks with more
+   * than a few thousand recipes are split across the common fork-join pool. Each recipe sees the
+   * totals as they were when it was visited; stock changed meanwhile may or may not be
+   * counted.</p>
+   *
+   * @return the maximum portions, keyed by recipe name
+   */
+  public Map<String, Double> maxPortions() {
+    ConcurrentHashMap<String, Double> portions = new ConcurrentHashMap<>(recipes.size());
+    recipes.forEach((long) PARALLEL_THRESHOLD, (name, entry) ->
+        portions.put(name, entry.requirements.maxPortions(foodStorage)));
+    return portions;
+  }
+
+  /**
+   * Prepares a recipe by removing the required ingredients from the food storage. All ingredients
+   * are removed in one atomic step, so a recipe is never left half-prepared, even when other
+   * threads are using the same groceries.
    *
    * @param recipeName the name of the recipe to prepare
    * @throws IllegalArgumentException if the recipe does not exist or ingredients are insufficient
    */
   public void prepareRecipe(String recipeName) {
-    if (!checkRecipeAvailability(recipeName)) {
+    // Ingredients listed more than once are covered by their combined amount in the vector
+    RequirementVector requirements = getEntry(recipeName).requirements;
+    withdraw(recipeName, requirements, 1.0);
+  }
+
+  /**
+   * Prepares a given number of portions of a recipe, removing the scaled ingredient amounts from
+   * the food storage in one atomic step. The recipe itself is not changed.
+   *
+   * @param recipeName the name of the recipe to prepare
+   * @param portions   the number of portions (must be greater than 0)
+   * @throws IllegalArgumentException if the recipe does not exist, portions is not positive, or
+   *                                  ingredients are insufficient
+   */
+  public void prepareRecipe(String recipeName, double portions) {
+    RequirementVector requirements = getEntry(recipeName).requirements;
+    withdraw(recipeName, requirements, scale(requirements, portions));
+  }
+
+  private void withdraw(String recipeName, RequirementVector requirements, double scale) {
+    try {
+      requirements.withdrawFrom(foodStorage, scale);
+    } catch (IllegalArgumentException e) {
       throw new IllegalArgumentException(
-          "Not enough ingredients to prepare the recipe: " + recipeName);
+          "Not enough ingredients to prepare the recipe: " + recipeName, e);
     }
+  }
 
-    Recipe recipe = recipes.get(recipeName);
-    for (Grocery ingredient : recipe.getIngredients()) {
-      foodStorage.removeAmount(ingredient.getName(), ingredient.getAmount());
+  private static double scale(RequirementVector requirements, double portions) {
+    if (portions <= 0) {
+      throw new IllegalArgumentException("Portions must be greater than 0.");
     }
+    return portions / requirements.portions();
   }
 
   /**
@@ -115,10 +306,104 @@ public class CookBook {
    * @throws IllegalArgumentException if the recipe does not exist
    */
   public Recipe getRecipe(String recipeName) {
-    Recipe recipe = recipes.get(recipeName);
-    if (recipe == null) {
+    return getEntry(recipeName).recipe;
+  }
+
+  private Entry getEntry(String recipeName) {
+    Entry entry = recipes.get(recipeName);
+    if (entry == null) {
       throw new IllegalArgumentException("Recipe not found: " + recipeName);
     }
-    return recipe;
+    return entry;
+  }
+
+  private synchronized void appendToCatalog(Entry entry) {
+    int size = catalogSize;
+    Entry[] entries = catalog;
+    if (size == entries.length) {
+      entries = Arrays.copyOf(entries, size * 2);
+    }
+    entries[size] = entry;
+    catalog = entries;
+    // Published last, so readers that see the new size also see the entry
+    catalogSize = size + 1;
+  }
+
+  /**
+   * A recipe and its current requirement vector.
+   */
+  private static final class Entry {
+
+    private final String name;
+    private final Recipe recipe;
+    private volatile RequirementVector requirements;
+    private volatile CachedAvailability cached;
+
+    private Entry(String name, Recipe recipe, RequirementVector requirements) {
+      this.name = name;
+      this.recipe = recipe;
+      this.requirements = requirements;
+    }
+  }
+
+  /**
+   * A cached availability answer and the grocery versions it was computed from. The answer is
+   * valid as long as the versions are current; {@code checkedAt} is a modification count at which
+   * they were last known to be, so a later check at the same count can skip comparing them.
+   */
+  private static final class CachedAvailability {
+
+    private final RequirementVector requirements;
+    private final long[] versions;
+    private final boolean available;
+    private volatile long checkedAt;
+
+    private CachedAvailability(RequirementVector requirements, long[] versions, boolean available,
+        long checkedAt) {
+      this.requirements = requirements;
+      this.versions = versions;
+      this.available = available;
+      this.checkedAt = checkedAt;
+    }
+  }
+
+  /**
+   * Checks a range of the catalog against a snapshot of totals, splitting in halves until a
+   * range is small enough to check directly. Tasks are never serialized.
+   */
+  @SuppressWarnings("serial")
+  private static final class SuggestTask extends RecursiveTask<List<String>> {
+
+    private final Entry[] entries;
+    private final int from;
+    private final int to;
+    private final double[] totals;
+
+    private SuggestTask(Entry[] entries, int from, int to, double[] totals) {
+      this.entries = entries;
+      this.from = from;
+      this.to = to;
+      this.totals = totals;
+    }
+
+    @Override
+    protected List<String> compute() {
+      if (to - from <= LEAF_SIZE) {
+        List<String> available = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+          if (entries[i].requirements.isSatisfiedBy(totals)) {
+            available.add(entries[i].name);
+          }
+        }
+        return available;
+      }
+      int middle = (from + to) >>> 1;
+      SuggestTask left = new SuggestTask(entries, from, middle, totals);
+      left.fork();
+      List<String> right = new SuggestTask(entries, middle, to, totals).compute();
+      List<String> available = left.join();
+      available.addAll(right);
+      return available;
+    }
   }
 }
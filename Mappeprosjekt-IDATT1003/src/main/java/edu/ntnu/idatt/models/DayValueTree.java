@@ -0,0 +1,131 @@
+package edu.ntnu.idatt.models;
+
+import java.util.TreeMap;
+
+/**
+ * Running sums of a value per epoch day, kept in a Fenwick tree so the sum of every day before a
+ * cutoff is found in logarithmic time without allocating.
+ *
+ * <p>The tree covers a window of days that starts around the first day added and doubles,
+ * re-centred, whenever a day outside it is added, up to {@link #MAX_SPAN} days. Days beyond that
+ * are kept in a sorted map and summed one by one, so far-off dates stay correct without making
+ * the tree huge.</p>
+ *
+ * <p>The tree is not synchronized.</p>
+ */
+final class DayValueTree {
+
+  private static final int INITIAL_SPAN = 1024;
+  // About 180 years of days, or 512 KiB per array
+  private static final int MAX_SPAN = 1 << 16;
+  // Outlier days whose value has cancelled down to this are dropped
+  private static final double EPSILON = 1e-9;
+
+  private long origin;
+  // The value of each day in the window, kept alongside the tree so the window can be rebuilt
+  private double[] values;
+  // Fenwick tree over values, 1-based
+  private double[] tree;
+  private final TreeMap<Long, Double> outliers;
+
+  /**
+   * Creates a tree with every day at 0.
+   */
+  DayValueTree() {
+    this.outliers = new TreeMap<>();
+  }
+
+  /**
+   * Adds a delta to the value of a day.
+   *
+   * @param day   the epoch day
+   * @param delta the amount to add, negative to subtract
+   */
+  void add(long day, double delta) {
+    if (values == null) {
+      origin = day - INITIAL_SPAN / 2;
+      values = new double[INITIAL_SPAN];
+      tree = new double[INITIAL_SPAN + 1];
+    }
+    if (!covers(day) && !grow(day)) {
+      Double value = outliers.merge(day, delta, Double::sum);
+      if (Math.abs(value) < EPSILON) {
+        outliers.remove(day);
+      }
+      return;
+    }
+    int index = (int) (day - origin);
+    values[index] += delta;
+    for (int i = index + 1; i < tree.length; i += i & -i) {
+      tree[i] += delta;
+    }
+  }
+
+  /**
+   * Returns the summed value of every day before a cutoff.
+   *
+   * @param day the first epoch day not included
+   * @return the sum
+   */
+  double sumBefore(long day) {
+    double sum = 0.0;
+    if (values != null && day > origin) {
+      int count = (int) Math.min(day - origin, values.length);
+      for (int i = count; i > 0; i -= i & -i) {
+        sum += tree[i];
+      }
+    }
+    if (!outliers.isEmpty()) {
+      for (double value : outliers.headMap(day, false).values()) {
+        sum += value;
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Returns the summed value of every day in a range.
+   *
+   * @param fromDay the first epoch day included
+   * @param toDay   the first epoch day not included
+   * @return the sum
+   */
+  double sumBetween(long fromDay, long toDay) {
+    return sumBefore(toDay) - sumBefore(fromDay);
+  }
+
+  private boolean covers(long day) {
+    return day >= origin && day - origin < values.length;
+  }
+
+  /**
+   * Widens the window to take in a day, or returns false if that would exceed the maximum span.
+   */
+  private boolean grow(long day) {
+    long low = Math.min(origin, day);
+    long high = Math.max(origin + values.length, day + 1);
+    if (high - low > MAX_SPAN) {
+      return false;
+    }
+    int span = values.length;
+    while (span < high - low) {
+      span *= 2;
+    }
+    long newOrigin = low - (span - (high - low)) / 2;
+    double[] newValues = new double[span];
+    System.arraycopy(values, 0, newValues, (int) (origin - newOrigin), values.length);
+    // Linear-time Fenwick construction: each node passes its sum on to its parent
+    double[] newTree = new double[span + 1];
+    System.arraycopy(newValues, 0, newTree, 1, span);
+    for (int i = 1; i <= span; i++) {
+      int parent = i + (i & -i);
+      if (parent <= span) {
+        newTree[parent] += newTree[i];
+      }
+    }
+    origin = newOrigin;
+    values = newValues;
+    tree = newTree;
+    return true;
+  }
+}
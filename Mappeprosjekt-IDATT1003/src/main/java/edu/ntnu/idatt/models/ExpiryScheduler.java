@@ -0,0 +1,234 @@
+package edu.ntnu.idatt.models;
+
+import java.time.Clock;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Evicts lots from a {@link FoodStorage} when they expire and warns ahead of time about lots
+ * that are about to.
+ *
+ * <p>Every stored lot is scheduled on a {@link TimingWheel} keyed by epoch day, kept up to date
+ * through the storage's listener events. A lot is evicted on the first day after its expiry date,
+ * matching {@link FoodStorage#removeCurrentlyExpiredGroceries()}, and warned about
+ * {@link Settings#warningDays()} before its expiry date. A {@link #tick()} therefore only touches
+ * the lots that are due, instead of scanning the expiry index.</p>
+ *
+ * <p>Days are read from an injected {@link Clock}. {@link #tick()} can be called directly, or
+ * {@link #start()} runs it on a background thread every {@link Settings#checkIntervalMillis()}.</p>
+ */
+public final class ExpiryScheduler implements StorageListener, AutoCloseable {
+
+  /**
+   * How far ahead to warn and how often the background thread checks the clock.
+   *
+   * @param warningDays         the number of days before expiry to warn, or 0 for no warnings
+   * @param checkIntervalMillis the time between background ticks
+   */
+  public record Settings(int warningDays, long checkIntervalMillis) {
+
+    /**
+     * Validates the settings.
+     *
+     * @throws IllegalArgumentException if warningDays is negative or the interval not positive
+     */
+    public Settings {
+      if (warningDays < 0 || checkIntervalMillis <= 0) {
+        throw new IllegalArgumentException(
+            "Warning days cannot be negative and check interval must be greater than 0");
+      }
+    }
+
+    /**
+     * Returns settings suitable for interactive use: warnings three days ahead and a check every
+     * minute.
+     *
+     * @return the default settings
+     */
+    public static Settings defaults() {
+      return new Settings(3, 60_000);
+    }
+  }
+
+  /**
+   * Receives warnings about lots that are about to expire.
+   */
+  public interface WarningListener {
+
+    /**
+     * Called once when a stored lot comes within the warning period of its expiry date. Called
+     * again if the lot is later given a new expiry date and comes within the period of that one.
+     *
+     * @param lot the lot
+     */
+    void expiresSoon(Grocery lot);
+  }
+
+  private final FoodStorage foodStorage;
+  private final Clock clock;
+  private final Settings settings;
+  private final List<WarningListener> warningListeners;
+  private final Thread ticker;
+
+  // Guarded by this scheduler's monitor
+  private final TimingWheel<Grocery> evictions;
+  private final TimingWheel<Grocery> warnings;
+  private boolean started;
+  private boolean closed;
+
+  /**
+   * Creates a scheduler for a storage and schedules the lots it already holds.
+   *
+   * @param foodStorage the storage to evict from
+   * @param clock       the clock days are read from
+   * @param settings    the warning period and check interval
+   * @throws IllegalArgumentException if any argument is null
+   */
+  public ExpiryScheduler(FoodStorage foodStorage, Clock clock, Settings settings) {
+    if (foodStorage == null || clock == null || settings == null) {
+      throw new IllegalArgumentException("storage, clock and settings cannot be null");
+    }
+    this.foodStorage = foodStorage;
+    this.clock = clock;
+    this.settings = settings;
+    this.warningListeners = new CopyOnWriteArrayList<>();
+    long today = LocalDate.now(clock).toEpochDay();
+    this.evictions = new TimingWheel<>(today);
+    this.warnings = new TimingWheel<>(today);
+    this.ticker = new Thread(this::tickLoop, "expiry-scheduler");
+    this.ticker.setDaemon(true);
+    // Listen first so no lot added during the scan is missed; scheduling a lot twice is harmless
+    foodStorage.addListener(this);
+    foodStorage.getGroceries().values().forEach(lots -> lots.forEach(this::lotAdded));
+  }
+
+  /**
+   * Registers a listener for lots about to expire.
+   *
+   * @param listener the listener to add
+   * @throws IllegalArgumentException if the listener is null
+   */
+  public void addWarningListener(WarningListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("listener cannot be null");
+    }
+    warningListeners.add(listener);
+  }
+
+  /**
+   * Advances to the clock's current day, evicts every lot that has expired and warns about every
+   * lot that has come within the warning period.
+   *
+   * @return the number of lots evicted
+   */
+  public int tick() {
+    LocalDate today = LocalDate.now(clock);
+    List<Grocery> expired;
+    List<Grocery> expiring;
+    synchronized (this) {
+      expired = evictions.advanceTo(today.toEpochDay());
+      expiring = warnings.advanceTo(today.toEpochDay());
+    }
+    // Storage locks are taken with this monitor released, since listener events take them the
+    // other way round
+    int evicted = 0;
+    for (Grocery lot : expired) {
+      if (foodStorage.removeLot(lot, today)) {
+        evicted++;
+      }
+    }
+    for (Grocery lot : expiring) {
+      if (lot.getStorage() == foodStorage && !lot.getExpiryDate().isBefore(today)) {
+        for (WarningListener listener : warningListeners) {
+          listener.expiresSoon(lot);
+        }
+      }
+    }
+    return evicted;
+  }
+
+  /**
+   * Returns the number of lots waiting to be evicted.
+   *
+   * @return the number of scheduled lots
+   */
+  public synchronized int scheduledCount() {
+    return evictions.size();
+  }
+
+  /**
+   * Starts ticking on a background thread.
+   *
+   * @throws IllegalStateException if the scheduler was already started or closed
+   */
+  public synchronized void start() {
+    if (started || closed) {
+      throw new IllegalStateException("Expiry scheduler cannot be started twice");
+    }
+    started = true;
+    ticker.start();
+  }
+
+  /**
+   * Stops the background thread, if started. Lots keep being scheduled, so {@link #tick()} can
+   * still be called directly.
+   */
+  @Override
+  public void close() {
+    synchronized (this) {
+      closed = true;
+      notifyAll();
+    }
+    if (ticker.isAlive()) {
+      try {
+        ticker.join();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  @Override
+  public void lotAdded(Grocery lot) {
+    schedule(lot);
+  }
+
+  @Override
+  public void lotExpiryChanged(Grocery lot) {
+    schedule(lot);
+  }
+
+  @Override
+  public synchronized void lotRemoved(Grocery lot) {
+    evictions.cancel(lot);
+    warnings.cancel(lot);
+  }
+
+  private synchronized void schedule(Grocery lot) {
+    long expiryDay = lot.getExpiryDate().toEpochDay();
+    evictions.schedule(lot, expiryDay + 1);
+    if (settings.warningDays() > 0) {
+      warnings.schedule(lot, expiryDay - settings.warningDays());
+    }
+  }
+
+  private void tickLoop() {
+    while (true) {
+      synchronized (this) {
+        if (closed) {
+          return;
+        }
+        try {
+          wait(settings.checkIntervalMillis());
+        } catch (InterruptedException e) {
+          return;
+        }
+        if (closed) {
+          return;
+        }
+      }
+      tick();
+    }
+  }
+}
@@ -1,48 +1,344 @@
 package edu.ntnu.idatt.models;
 
+import java.lang.ref.WeakReference;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 
 /**
  * Represents a storage system for groceries, allowing for adding, removing, displaying, and
  * managing groceries.
+ *
+ * <p>The storage is safe to use from several threads. Each grocery name maps to one of a fixed
+ * set of lock stripes, so changes to different groceries run in parallel while every change to
+ * one grocery is atomic. Total lookups take no lock at all.</p>
+ *
+ * <p>Every grocery name gets a dense int id from a {@link NameDictionary}, and lot queues are
+ * kept in an array indexed by that id. Callers that look up the same groceries over and over,
+ * like a {@link CookBook}, can resolve the names once with {@link #groceryId(String)} and use the
+ * id overloads, which index the array instead of hashing the name.</p>
  */
-public class FoodStorage {
+public class FoodStorage implements GroceryStorage {
 
-  private final HashMap<String, ArrayList<Grocery>> groceries;
+  // Power of two, so a stripe can be picked by masking the hash, and at most 64, so a set of
+  // stripes fits in the bits of a long
+  private static final int STRIPES = 64;
+  private static final int VERSION_PAGE_BITS = 10;
+  // Value sums closer to 0 than this are rounding drift
+  private static final double VALUE_EPSILON = 1e-9;
+
+  private final NameDictionary names;
+  // Lot queues indexed by grocery id; slots are only written by setQueue
+  private volatile AtomicReferenceArray<LotQueue> queues;
+  // Total change counters by grocery id, in pages of 1024 that are never copied, so growing the
+  // directory cannot lose an increment
+  private volatile AtomicLongArray[] versionPages;
+  private final AtomicLong modificationCount;
+  private final ReentrantLock[] stripes;
+  // Every stored lot keyed by expiry date, so expiry queries only visit the lots that match
+  private final TreeMap<LocalDate, Set<Grocery>> expiryIndex;
+  // Value of the stored lots by expiry day, so value queries need not visit the lots
+  private final DayValueTree valueByExpiry;
+  // Guards the expiry index and the value tree
+  private final ReentrantReadWriteLock indexLock;
+  private final List<StorageListener> listeners;
+  private final AtomicLong nextLotId;
+  // Lots that exist in the source but have not been materialized yet, by grocery name
+  private final LotSource lotSource;
+  private final Set<String> unloadedNames;
+  private volatile boolean mergeLots;
+  // Snapshots still open, held weakly so a dropped snapshot is released by the garbage collector
+  private final List<WeakReference<StorageSnapshot>> openSnapshots;
 
   /**
    * Initializes an empty FoodStorage.
    */
   public FoodStorage() {
-    groceries = new HashMap<>();
+    this(null);
+  }
+
+  /**
+   * Initializes a FoodStorage holding the lots of a source, such as a snapshot file. Nothing is
+   * read up front: the lots of a grocery are materialized the first time that grocery is used,
+   * and all remaining lots the first time the whole storage is queried. Listeners are not told
+   * about materialized lots, since they were in the storage all along.
+   *
+   * @param lotSource the lots to start with, or null for an empty storage
+   */
+  public FoodStorage(LotSource lotSource) {
+    this.lotSource = lotSource;
+    this.unloadedNames = ConcurrentHashMap.newKeySet();
+    if (lotSource != null) {
+      unloadedNames.addAll(lotSource.names());
+    }
+    names = new NameDictionary();
+    queues = new AtomicReferenceArray<>(64);
+    versionPages = new AtomicLongArray[0];
+    modificationCount = new AtomicLong();
+    stripes = new ReentrantLock[STRIPES];
+    for (int i = 0; i < STRIPES; i++) {
+      stripes[i] = new ReentrantLock();
+    }
+    expiryIndex = new TreeMap<>();
+    valueByExpiry = new DayValueTree();
+    indexLock = new ReentrantReadWriteLock();
+    listeners = new CopyOnWriteArrayList<>();
+    nextLotId = new AtomicLong(1);
+    openSnapshots = new CopyOnWriteArrayList<>();
+  }
+
+  /**
+   * Registers a listener that is notified whenever a lot or the total amount of a grocery changes.
+   * The listener is called while the grocery's lock is held, so it should return quickly.
+   *
+   * @param listener the listener to add
+   * @throws IllegalArgumentException if the listener is null
+   */
+  public void addListener(StorageListener listener) {
+    if (listener == null) {
+      throw new IllegalArgumentException("listener cannot be null");
+    }
+    listeners.add(listener);
+  }
+
+  /**
+   * Returns the groceries grouped by name. Each list is a copy of the lots in expiry order, oldest
+   * first.
+   *
+   * @return grocery lists keyed by name
+   */
+  public Map<String, List<Grocery>> getGroceries() {
+    loadAll();
+    Map<String, List<Grocery>> copy = new HashMap<>();
+    for (int id = 0; id < names.size(); id++) {
+      String name = names.name(id);
+      ReentrantLock lock = stripeFor(name);
+      lock.lock();
+      try {
+        LotQueue lots = queue(id);
+        if (lots != null) {
+          copy.put(name, lots.toList());
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return copy;
+  }
+
+  /**
+   * Turns lot merging on insert on or off. While it is on, a grocery added with the same expiry
+   * date, unit and unit price as a lot already stored is folded into that lot: the stored lot's
+   * amount grows and the added object is left out of the storage. Restocking the same item
+   * repeatedly then keeps one lot per expiry date instead of a growing list. Off by default,
+   * since callers that keep the added object cannot use it to change the stored lot.
+   *
+   * @param enabled true to merge identical lots on insert
+   */
+  public void setLotMerging(boolean enabled) {
+    mergeLots = enabled;
   }
 
   /**
-   * Returns the grocery list.
+   * Merges every set of stored lots that share a name, expiry date, unit and unit price into the
+   * earliest added lot of the set. The merged-away lots leave the storage as if removed, and
+   * every total stays the same.
    *
-   * @return grocery list
+   * @return the number of lots merged away
    */
-  public HashMap<String, ArrayList<Grocery>> getGroceries() {
-    return groceries;
+  public int compactLots() {
+    loadAll();
+    int merged = 0;
+    for (int id = 0; id < names.size(); id++) {
+      String name = names.name(id);
+      ReentrantLock lock = stripeFor(name);
+      lock.lock();
+      try {
+        LotQueue lots = queue(id);
+        if (lots == null || lots.size() < 2) {
+          continue;
+        }
+        int mergedBefore = merged;
+        preserve(id);
+        List<Grocery> all = lots.toList();
+        // Latest first, so each lot folds into the earliest match, which stays in place
+        for (int i = all.size() - 1; i >= 0; i--) {
+          Grocery lot = all.get(i);
+          Grocery match = lots.findMergeable(lot);
+          if (match != null) {
+            double amount = lot.getAmount();
+            lots.remove(lot);
+            detachLot(lot);
+            mergeInto(lots, match, amount);
+            merged++;
+          }
+        }
+        if (merged != mergedBefore) {
+          fireTotalChanged(id, name, lots.getTotal());
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return merged;
   }
 
   /**
-   * Adds a grocery item to the storage. No restrictions on expiry date.
+   * Adds a grocery item to the storage. No restrictions on expiry date. With lot merging on, the
+   * amount may instead be added to a matching stored lot, see {@link #setLotMerging(boolean)}.
    *
    * @param grocery the grocery item to add
-   * @throws IllegalArgumentException if the grocery is null
+   * @throws IllegalArgumentException if the grocery is null or already stored
    */
   public void addGrocery(Grocery grocery) {
     if (grocery == null) {
       throw new IllegalArgumentException("grocery cannot be null");
     }
-    groceries.putIfAbsent(grocery.getName(), new ArrayList<>());
-    groceries.get(grocery.getName()).add(grocery);
+    load(grocery.getName());
+    ReentrantLock lock = stripeFor(grocery.getName());
+    lock.lock();
+    try {
+      if (grocery.getStorage() != null) {
+        throw new IllegalArgumentException("grocery is already in a storage");
+      }
+      addLot(grocery);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Adds many grocery items at once. The items are grouped by lock stripe, so each stripe is
+   * locked once per call rather than once per item. The batch is not atomic: another thread may
+   * see some of the items before the call returns.
+   *
+   * @param batch the grocery items to add
+   * @throws IllegalArgumentException if the batch or an item is null, or an item is already
+   *                                  stored, which is checked before anything is added
+   */
+  public void addGroceries(Collection<Grocery> batch) {
+    if (batch == null) {
+      throw new IllegalArgumentException("batch cannot be null");
+    }
+    List<List<Grocery>> byStripe = new ArrayList<>(STRIPES);
+    for (int i = 0; i < STRIPES; i++) {
+      byStripe.add(new ArrayList<>());
+    }
+    for (Grocery grocery : batch) {
+      if (grocery == null) {
+        throw new IllegalArgumentException("grocery cannot be null");
+      }
+      if (grocery.getStorage() != null) {
+        throw new IllegalArgumentException("grocery is already in a storage");
+      }
+      byStripe.get(stripeIndex(grocery.getName())).add(grocery);
+    }
+    for (int i = 0; i < STRIPES; i++) {
+      List<Grocery> group = byStripe.get(i);
+      if (group.isEmpty()) {
+        continue;
+      }
+      group.forEach(grocery -> load(grocery.getName()));
+      stripes[i].lock();
+      try {
+        for (Grocery grocery : group) {
+          // Checked again under the lock, in case another thread stored it in the meantime
+          if (grocery.getStorage() != null) {
+            throw new IllegalArgumentException("grocery is already in a storage");
+          }
+          addLot(grocery);
+        }
+      } finally {
+        stripes[i].unlock();
+      }
+    }
+  }
+
+  /**
+   * Adds a lot under a lot id it was given earlier, e.g. when recovering a storage from disk.
+   * Lots added later get higher ids.
+   *
+   * @param grocery the lot to add
+   * @param lotId   the id the lot had, greater than 0
+   * @throws IllegalArgumentException if the grocery is null or already stored, or the id is not
+   *                                  positive
+   */
+  public void restoreLot(Grocery grocery, long lotId) {
+    if (grocery == null) {
+      throw new IllegalArgumentException("grocery cannot be null");
+    }
+    if (lotId <= 0) {
+      throw new IllegalArgumentException("lotId must be greater than 0");
+    }
+    load(grocery.getName());
+    ReentrantLock lock = stripeFor(grocery.getName());
+    lock.lock();
+    try {
+      if (grocery.getStorage() != null) {
+        throw new IllegalArgumentException("grocery is already in a storage");
+      }
+      nextLotId.accumulateAndGet(lotId + 1, Math::max);
+      attachLot(grocery, lotId);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes one specific lot from the storage, whatever its expiry date.
+   *
+   * @param grocery the lot to remove
+   * @return true if the lot was in this storage
+   */
+  public boolean removeLot(Grocery grocery) {
+    return removeLot(grocery, null);
+  }
+
+  /**
+   * Removes one specific lot if it has expired by a date. The date is checked under the lot's
+   * lock, so a lot re-dated concurrently is left alone.
+   *
+   * @param grocery the lot to remove
+   * @param date    the date the lot must have expired by, or null to remove it regardless
+   * @return true if the lot was in this storage and was removed
+   */
+  boolean removeLot(Grocery grocery, LocalDate date) {
+    if (grocery == null) {
+      return false;
+    }
+    ReentrantLock lock = stripeFor(grocery.getName());
+    lock.lock();
+    try {
+      if (grocery.getStorage() != this
+          || date != null && !grocery.getExpiryDate().isBefore(date)) {
+        return false;
+      }
+      int id = names.idOf(grocery.getName());
+      preserve(id);
+      LotQueue lots = queue(id);
+      lots.remove(grocery);
+      detachLot(grocery);
+      fireTotalChanged(id, grocery.getName(), lots.getTotal());
+      return true;
+    } finally {
+      lock.unlock();
+    }
   }
 
   /**
@@ -52,31 +348,236 @@ public class FoodStorage {
    * @param amountRemoved the amount to remove
    */
   public void removeAmount(String groceryName, double amountRemoved) {
-    /* tolerance set to 1g/1ml in order to circumvent floating point inaccuracies
-    when trying to remove the entire amount */
-    final double tolerance = 0.001;
     if (groceryName == null || groceryName.trim().isEmpty()) {
       throw new IllegalArgumentException("Grocery name cannot be null or empty");
     }
-    if (!groceries.containsKey(groceryName)) {
-      throw new IllegalArgumentException("No grocery found with the name: " + groceryName);
+    load(groceryName);
+    ReentrantLock lock = stripeFor(groceryName);
+    lock.lock();
+    try {
+      int id = names.idOf(groceryName);
+      LotQueue lots = queue(id);
+      if (lots == null) {
+        throw new IllegalArgumentException("No grocery found with the name: " + groceryName);
+      }
+      if (lots.getTotal() < amountRemoved) {
+        throw new IllegalArgumentException(
+            "Amount to remove cannot be larger than the total amount");
+      }
+      preserve(id);
+      withdraw(lots, amountRemoved);
+      fireTotalChanged(id, groceryName, lots.getTotal());
+    } finally {
+      lock.unlock();
     }
-    if (getTotalAmount(groceryName) < amountRemoved) {
-      throw new IllegalArgumentException("Amount to remove cannot be larger than the total amount");
+  }
+
+  /**
+   * Removes amounts of several groceries as one atomic step, each starting with the oldest lot.
+   * Either every amount is removed or, if any grocery is missing or short, nothing is.
+   *
+   * <p>The locks of all named groceries are taken in a fixed order, so concurrent calls over
+   * overlapping groceries cannot deadlock, and no other thread can change the stock between the
+   * check and the removals.</p>
+   *
+   * @param amounts the amount to remove, keyed by grocery name
+   * @throws IllegalArgumentException if a name is null or empty, a grocery is not found, or there
+   *                                  is not enough of it
+   */
+  public void removeAmounts(Map<String, Double> amounts) {
+    if (amounts == null) {
+      throw new IllegalArgumentException("amounts cannot be null");
     }
+    for (String groceryName : amounts.keySet()) {
+      if (groceryName == null || groceryName.trim().isEmpty()) {
+        throw new IllegalArgumentException("Grocery name cannot be null or empty");
+      }
+    }
+    int[] groceryIds = new int[amounts.size()];
+    double[] amountArray = new double[amounts.size()];
+    int i = 0;
+    for (Map.Entry<String, Double> entry : amounts.entrySet()) {
+      groceryIds[i] = existingGroceryId(entry.getKey());
+      if (groceryIds[i] < 0) {
+        throw new IllegalArgumentException("No grocery found with the name: " + entry.getKey());
+      }
+      amountArray[i] = entry.getValue();
+      i++;
+    }
+    removeAmounts(groceryIds, amountArray);
+  }
+
+  /**
+   * Removes amounts of several groceries, given by id, as one atomic step. Works like
+   * {@link #removeAmounts(Map)}; each id must appear at most once.
+   *
+   * @param groceryIds the ids of the groceries, from {@link #groceryId(String)}
+   * @param amounts    the amount to remove of each grocery, at the same index as its id
+   * @throws IllegalArgumentException if the arrays are null or differ in length, an id is
+   *                                  unknown or repeated, a grocery is not found, or there is not
+   *                                  enough of it
+   */
+  public void removeAmounts(int[] groceryIds, double[] amounts) {
+    removeAmounts(groceryIds, amounts, 1.0);
+  }
+
+  /**
+   * Removes amounts of several groceries, each multiplied by a scale factor, as one atomic step.
+   * Lets a caller withdraw a multiple of fixed amounts without building a new array.
+   *
+   * @param groceryIds the ids of the groceries
+   * @param amounts    the unscaled amount of each grocery
+   * @param scale      the factor every amount is multiplied by
+   */
+  void removeAmounts(int[] groceryIds, double[] amounts, double scale) {
+    if (groceryIds == null || amounts == null || groceryIds.length != amounts.length) {
+      throw new IllegalArgumentException("groceryIds and amounts must have the same length");
+    }
+    checkDistinct(groceryIds);
+    long stripeMask = 0L;
+    for (int groceryId : groceryIds) {
+      String groceryName = nameOf(groceryId);
+      load(groceryName);
+      stripeMask |= 1L << stripeIndex(groceryName);
+    }
+    lockAll(stripeMask);
+    try {
+      for (int i = 0; i < groceryIds.length; i++) {
+        LotQueue lots = queue(groceryIds[i]);
+        if (lots == null) {
+          throw new IllegalArgumentException(
+              "No grocery found with the name: " + names.name(groceryIds[i]));
+        }
+        if (lots.getTotal() < amounts[i] * scale) {
+          throw new IllegalArgumentException(
+              "Amount to remove cannot be larger than the total amount of "
+                  + names.name(groceryIds[i]));
+        }
+      }
+      // Nothing can change while the locks are held, so none of these can fail for lack of stock
+      for (int i = 0; i < groceryIds.length; i++) {
+        preserve(groceryIds[i]);
+        withdraw(queue(groceryIds[i]), amounts[i] * scale);
+      }
+      for (int groceryId : groceryIds) {
+        fireTotalChanged(groceryId, names.name(groceryId), queue(groceryId).getTotal());
+      }
+    } finally {
+      unlockAll(stripeMask);
+    }
+  }
+
+  /**
+   * Applies a batch of additions and withdrawals as one atomic step. Either every change is made
+   * or, if any grocery would be short or a lot has been stored elsewhere since it was added to
+   * the batch, nothing is.
+   *
+   * <p>The locks of every grocery in the batch are taken once, in a fixed order. Each grocery is
+   * then checked once against its total plus what the batch adds, gets its new lots, has its
+   * withdrawals taken from the oldest lots in one pass, and reports its new total once.</p>
+   *
+   * @param batch the changes to apply
+   * @throws IllegalArgumentException if the batch is null, a lot is already stored, or a
+   *                                  grocery is not found or there is not enough of it
+   */
+  public void apply(StockBatch batch) {
+    if (batch == null) {
+      throw new IllegalArgumentException("batch cannot be null");
+    }
+    Map<String, StockBatch.Changes> changes = batch.changesByName();
+    long stripeMask = 0L;
+    for (String groceryName : changes.keySet()) {
+      load(groceryName);
+      stripeMask |= 1L << stripeIndex(groceryName);
+    }
+    lockAll(stripeMask);
+    try {
+      for (Map.Entry<String, StockBatch.Changes> entry : changes.entrySet()) {
+        StockBatch.Changes change = entry.getValue();
+        for (Grocery grocery : change.additions()) {
+          if (grocery.getStorage() != null) {
+            throw new IllegalArgumentException("grocery is already in a storage");
+          }
+        }
+        if (change.withdrawal() == 0.0) {
+          continue;
+        }
+        LotQueue lots = queue(names.idOf(entry.getKey()));
+        if (lots == null && change.additions().isEmpty()) {
+          throw new IllegalArgumentException("No grocery found with the name: " + entry.getKey());
+        }
+        double available = (lots == null ? 0.0 : lots.getTotal()) + change.addedAmount();
+        if (available < change.withdrawal()) {
+          throw new IllegalArgumentException(
+              "Amount to remove cannot be larger than the total amount of " + entry.getKey());
+        }
+      }
+      // Nothing can change while the locks are held, so none of these can fail
+      for (Map.Entry<String, StockBatch.Changes> entry : changes.entrySet()) {
+        StockBatch.Changes change = entry.getValue();
+        int id = names.intern(entry.getKey());
+        for (Grocery grocery : change.additions()) {
+          insertLot(grocery);
+        }
+        if (change.withdrawal() > 0.0) {
+          preserve(id);
+          withdraw(queue(id), change.withdrawal());
+        }
+        fireTotalChanged(id, entry.getKey(), queue(id).getTotal());
+      }
+    } finally {
+      unlockAll(stripeMask);
+    }
+  }
+
+  /**
+   * Rejects an id array that lists an id twice. Short arrays, like the ingredients of a recipe,
+   * are checked pairwise so that nothing is allocated.
+   */
+  private static void checkDistinct(int[] groceryIds) {
+    if (groceryIds.length <= 32) {
+      for (int i = 1; i < groceryIds.length; i++) {
+        for (int j = 0; j < i; j++) {
+          if (groceryIds[i] == groceryIds[j]) {
+            throw new IllegalArgumentException(
+                "Grocery id listed more than once: " + groceryIds[i]);
+          }
+        }
+      }
+      return;
+    }
+    int[] sorted = groceryIds.clone();
+    Arrays.sort(sorted);
+    for (int i = 1; i < sorted.length; i++) {
+      if (sorted[i] == sorted[i - 1]) {
+        throw new IllegalArgumentException("Grocery id listed more than once: " + sorted[i]);
+      }
+    }
+  }
 
-    groceries.get(groceryName).sort(Comparator.comparing(Grocery::getExpiryDate));
-    while (amountRemoved > tolerance) {
-      if (groceries.get(groceryName).getFirst().getAmount() > amountRemoved) {
-        groceries.get(groceryName).getFirst()
-            .setAmount(groceries.get(groceryName).getFirst().getAmount() - amountRemoved);
+  /**
+   * Consumes an amount from the front of a queue. The caller holds the grocery's lock and has
+   * checked that the queue holds enough.
+   */
+  private void withdraw(LotQueue lots, double amountRemoved) {
+    /* tolerance set to 1g/1ml in order to circumvent floating point inaccuracies
+    when trying to remove the entire amount */
+    final double tolerance = 0.001;
+    // Lots are kept in expiry order, so only the lots actually consumed are touched
+    while (amountRemoved > tolerance && !lots.isEmpty()) {
+      Grocery oldest = lots.peekFirst();
+      if (oldest.getAmount() > amountRemoved) {
+        oldest.assignAmount(oldest.getAmount() - amountRemoved);
+        addValue(oldest, -amountRemoved);
+        lots.adjustTotal(-amountRemoved);
+        fireLotAmountChanged(oldest);
         amountRemoved = 0;
       } else {
-        amountRemoved -= groceries.get(groceryName).getFirst().getAmount();
-        groceries.get(groceryName).removeFirst();
+        amountRemoved -= oldest.getAmount();
+        lots.pollFirst();
+        detachLot(oldest);
       }
     }
-
   }
 
   /**
@@ -90,15 +591,161 @@ public class FoodStorage {
     if (groceryName == null || groceryName.trim().isEmpty()) {
       throw new IllegalArgumentException("Grocery name cannot be null or empty");
     }
+    load(groceryName);
 
-    if (!groceries.containsKey(groceryName)) {
+    LotQueue lots = queue(names.idOf(groceryName));
+    if (lots == null) {
       return 0.0; // No such grocery found
     }
 
-    // Sum up the amounts of all groceries with the given name
-    return groceries.get(groceryName).stream()
-        .mapToDouble(Grocery::getAmount)
-        .sum();
+    // Running total kept up to date by every mutation, readable without locking
+    return lots.getTotal();
+  }
+
+  /**
+   * Returns the total amount of a grocery given its id. Like {@link #getTotalAmount(String)},
+   * but the queue is found by indexing an array instead of hashing the name. Once every grocery
+   * has been loaded this takes no lock; before that, the first read of a grocery that is still
+   * in the lot source loads it under its stripe lock, so callers holding a lock that listeners
+   * also take must load the grocery first.
+   *
+   * @param groceryId the id of the grocery, from {@link #groceryId(String)}
+   * @return the total amount of the grocery, or 0.0 if none is stored
+   * @throws IllegalArgumentException if the id is unknown
+   */
+  public double getTotalAmount(int groceryId) {
+    if (!unloadedNames.isEmpty()) {
+      load(nameOf(groceryId));
+    } else if (groceryId < 0 || groceryId >= names.size()) {
+      throw new IllegalArgumentException("Unknown grocery id: " + groceryId);
+    }
+    LotQueue lots = queue(groceryId);
+    return lots == null ? 0.0 : lots.getTotal();
+  }
+
+  /**
+   * Returns the total amount of every grocery as of one instant, indexed by grocery id. Every
+   * stripe is locked while the totals are copied, so no change is half-seen, and writers wait for
+   * the length of one pass over the names.
+   *
+   * @return the totals, with 0.0 for groceries that are not in stock
+   */
+  public double[] snapshotTotals() {
+    loadAll();
+    lockAll(-1L);
+    try {
+      double[] totals = new double[names.size()];
+      for (int id = 0; id < totals.length; id++) {
+        LotQueue lots = queue(id);
+        totals[id] = lots == null ? 0.0 : lots.getTotal();
+      }
+      return totals;
+    } finally {
+      unlockAll(-1L);
+    }
+  }
+
+  /**
+   * Takes a point-in-time snapshot of the storage for reports. Every stripe is locked only long
+   * enough to register the snapshot; no lots are copied up front. Afterwards a grocery's lots are
+   * copied into the snapshot just before its first change, so writers keep going while a long
+   * report reads a consistent view. See {@link StorageSnapshot}.
+   *
+   * @return the snapshot, to be closed when the report is done
+   */
+  public StorageSnapshot snapshot() {
+    loadAll();
+    lockAll(-1L);
+    try {
+      StorageSnapshot snapshot = new StorageSnapshot(this, names.size());
+      openSnapshots.add(new WeakReference<>(snapshot));
+      return snapshot;
+    } finally {
+      unlockAll(-1L);
+    }
+  }
+
+  /**
+   * Copies the current lots of a grocery into a snapshot that does not have them yet, under the
+   * grocery's lock.
+   *
+   * @param snapshot  the snapshot
+   * @param groceryId the id of the grocery
+   */
+  void preserveFor(StorageSnapshot snapshot, int groceryId) {
+    ReentrantLock lock = stripeFor(names.name(groceryId));
+    lock.lock();
+    try {
+      snapshot.preserve(groceryId, queue(groceryId));
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Stops copying groceries for a closed snapshot.
+   *
+   * @param snapshot the snapshot
+   */
+  void release(StorageSnapshot snapshot) {
+    openSnapshots.removeIf(ref -> ref.get() == snapshot || ref.get() == null);
+  }
+
+  /**
+   * Returns the version of a grocery's total. The version goes up every time the total changes,
+   * and only then, so a caller can tell whether anything it computed from the total is still
+   * current by comparing versions.
+   *
+   * @param groceryId the id of the grocery, from {@link #groceryId(String)}
+   * @return the version, 0 if the grocery has never been stocked
+   */
+  public long groceryVersion(int groceryId) {
+    AtomicLongArray[] pages = versionPages;
+    int page = groceryId >>> VERSION_PAGE_BITS;
+    return page < pages.length ? pages[page].get(groceryId & ((1 << VERSION_PAGE_BITS) - 1)) : 0;
+  }
+
+  /**
+   * Returns the number of total changes made to the storage so far. It is raised after the
+   * version of the grocery that changed, so a caller that reads this count and then finds the
+   * versions it depends on unchanged knows they were unchanged when the count was read.
+   *
+   * @return the modification count
+   */
+  public long modificationCount() {
+    return modificationCount.get();
+  }
+
+  /**
+   * Returns the id of a grocery name, giving the name a new id if it has none. Ids are dense,
+   * start at 0 and stay valid for the lifetime of the storage, whether or not the grocery is in
+   * stock.
+   *
+   * @param groceryName the name of the grocery
+   * @return the id of the grocery
+   * @throws IllegalArgumentException if the name is null or empty
+   */
+  public int groceryId(String groceryName) {
+    if (groceryName == null || groceryName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Grocery name cannot be null or empty");
+    }
+    return names.intern(groceryName);
+  }
+
+  /**
+   * Returns the id of a grocery without giving a new name one, so lookups of names that were
+   * never stored, such as misspellings, do not grow the id space.
+   *
+   * @param groceryName the name of the grocery
+   * @return the id of the grocery, or -1 if it has never been stored
+   * @throws IllegalArgumentException if the name is null or empty
+   */
+  int existingGroceryId(String groceryName) {
+    if (groceryName == null || groceryName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Grocery name cannot be null or empty");
+    }
+    load(groceryName);
+    return names.idOf(groceryName);
   }
 
   //All javadoc commentary provided by OpenAI's ChatGPT and double-checked by hand
@@ -110,14 +757,23 @@ public class FoodStorage {
    * @return a list of expired groceries
    */
   public List<Grocery> expiredGroceries(LocalDate date) {
-    return groceries.values().stream()
-        .flatMap(List::stream)
-        .filter(g -> g.getExpiryDate().isBefore(date))
-        .toList();
+    if (date == null) {
+      throw new IllegalArgumentException("date cannot be null");
+    }
+    loadAll();
+    List<Grocery> expired = new ArrayList<>();
+    indexLock.readLock().lock();
+    try {
+      expiryIndex.headMap(date, false).values().forEach(expired::addAll);
+    } finally {
+      indexLock.readLock().unlock();
+    }
+    return expired;
   }
 
   /**
-   * Returns value of all expired groceries before the given date.
+   * Returns value of all expired groceries before the given date. Answered from running sums by
+   * expiry day in logarithmic time, without visiting the lots.
    *
    * @param date the cutoff date
    * @return value of all expired groceries
@@ -126,11 +782,38 @@ public class FoodStorage {
     if (date == null) {
       throw new IllegalArgumentException("date cannot be null");
     }
-    double totalValue = 0.0;
-    for (Grocery g : expiredGroceries(date)) {
-      totalValue += g.getAmount() * g.getUnitPrice();
+    loadAll();
+    indexLock.readLock().lock();
+    try {
+      return snapToZero(valueByExpiry.sumBefore(date.toEpochDay()));
+    } finally {
+      indexLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Returns the value of the groceries that expire in a date range, such as the value at risk
+   * over the coming week. Takes logarithmic time in the number of days covered.
+   *
+   * @param from the first expiry date included
+   * @param to   the first expiry date not included
+   * @return the summed amount times unit price of the groceries in the range
+   * @throws IllegalArgumentException if a date is null or the range ends before it starts
+   */
+  public double valueExpiringBetween(LocalDate from, LocalDate to) {
+    if (from == null || to == null) {
+      throw new IllegalArgumentException("dates cannot be null");
+    }
+    if (to.isBefore(from)) {
+      throw new IllegalArgumentException("End date cannot be before start date");
+    }
+    loadAll();
+    indexLock.readLock().lock();
+    try {
+      return snapToZero(valueByExpiry.sumBetween(from.toEpochDay(), to.toEpochDay()));
+    } finally {
+      indexLock.readLock().unlock();
     }
-    return totalValue;
   }
 
   /**
@@ -138,10 +821,367 @@ public class FoodStorage {
    */
   //Method written by ChatGPT
   public void removeCurrentlyExpiredGroceries() {
-    for (String key : groceries.keySet()) {
-      groceries.get(key).removeIf(g -> g.getExpiryDate().isBefore(LocalDate.now()));
+    LocalDate today = LocalDate.now();
+    Map<String, List<Grocery>> expiredByName = new LinkedHashMap<>();
+    for (Grocery g : expiredGroceries(today)) {
+      expiredByName.computeIfAbsent(g.getName(), n -> new ArrayList<>()).add(g);
+    }
+    expiredByName.forEach((name, expired) -> {
+      ReentrantLock lock = stripeFor(name);
+      lock.lock();
+      try {
+        int id = names.idOf(name);
+        LotQueue lots = queue(id);
+        if (lots == null) {
+          return;
+        }
+        preserve(id);
+        for (Grocery g : expired) {
+          // Skip lots that were used up or re-dated since the index was read
+          if (g.getStorage() == this && g.getExpiryDate().isBefore(today) && lots.remove(g)) {
+            detachLot(g);
+          }
+        }
+        // Emptied queues are kept, as on every other removal path, so the name stays known
+        fireTotalChanged(id, name, lots.getTotal());
+      } finally {
+        lock.unlock();
+      }
+    });
+  }
+
+  /**
+   * Moves a stored lot to a new expiry date, keeping the lot queue and the expiry index in order.
+   * Called by {@link Grocery#setExpiryDate(LocalDate)} once the date has been validated.
+   *
+   * @param grocery    the stored lot
+   * @param expiryDate the new expiry date
+   */
+  void changeExpiryDate(Grocery grocery, LocalDate expiryDate) {
+    ReentrantLock lock = stripeFor(grocery.getName());
+    lock.lock();
+    try {
+      if (grocery.getStorage() != this) {
+        // Used up while the caller was validating
+        grocery.assignExpiryDate(expiryDate);
+        return;
+      }
+      int id = names.idOf(grocery.getName());
+      preserve(id);
+      LotQueue lots = queue(id);
+      lots.remove(grocery);
+      unindexLot(grocery);
+      grocery.assignExpiryDate(expiryDate);
+      lots.add(grocery);
+      indexLot(grocery);
+      for (StorageListener listener : listeners) {
+        listener.lotExpiryChanged(grocery);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Changes the amount of a stored lot and updates the running total of its name. Called by
+   * {@link Grocery#setAmount(double)} once the amount has been validated.
+   *
+   * @param grocery the stored lot
+   * @param amount  the new amount
+   */
+  void changeAmount(Grocery grocery, double amount) {
+    ReentrantLock lock = stripeFor(grocery.getName());
+    lock.lock();
+    try {
+      if (grocery.getStorage() != this) {
+        // Used up while the caller was validating
+        grocery.assignAmount(amount);
+        return;
+      }
+      int id = names.idOf(grocery.getName());
+      preserve(id);
+      double delta = amount - grocery.getAmount();
+      grocery.assignAmount(amount);
+      addValue(grocery, delta);
+      LotQueue lots = queue(id);
+      lots.adjustTotal(delta);
+      fireLotAmountChanged(grocery);
+      fireTotalChanged(id, grocery.getName(), lots.getTotal());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Returns the lot queue of a grocery id, or null if the grocery has no lots. Takes no lock.
+   */
+  private LotQueue queue(int groceryId) {
+    AtomicReferenceArray<LotQueue> table = queues;
+    return groceryId >= 0 && groceryId < table.length() ? table.get(groceryId) : null;
+  }
+
+  /**
+   * Sets the lot queue of a grocery id. The caller holds the grocery's lock; this lock only keeps
+   * a growing table from losing slots written by other stripes.
+   */
+  private synchronized void setQueue(int groceryId, LotQueue lots) {
+    AtomicReferenceArray<LotQueue> table = queues;
+    if (groceryId >= table.length()) {
+      AtomicReferenceArray<LotQueue> grown =
+          new AtomicReferenceArray<>(Math.max(table.length() * 2, groceryId + 1));
+      for (int i = 0; i < table.length(); i++) {
+        grown.set(i, table.get(i));
+      }
+      table = grown;
+      queues = grown;
+    }
+    table.set(groceryId, lots);
+    int page = groceryId >>> VERSION_PAGE_BITS;
+    if (page >= versionPages.length) {
+      AtomicLongArray[] pages = Arrays.copyOf(versionPages, page + 1);
+      for (int i = versionPages.length; i < pages.length; i++) {
+        pages[i] = new AtomicLongArray(1 << VERSION_PAGE_BITS);
+      }
+      versionPages = pages;
+    }
+  }
+
+  private String nameOf(int groceryId) {
+    if (groceryId < 0 || groceryId >= names.size()) {
+      throw new IllegalArgumentException("Unknown grocery id: " + groceryId);
+    }
+    return names.name(groceryId);
+  }
+
+  private ReentrantLock stripeFor(String groceryName) {
+    return stripes[stripeIndex(groceryName)];
+  }
+
+  private static int stripeIndex(String groceryName) {
+    int hash = groceryName.hashCode();
+    return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+  }
+
+  /**
+   * Locks a set of stripes, given as a bit mask over the stripe indexes, in ascending stripe
+   * order.
+   */
+  private void lockAll(long stripeMask) {
+    for (long rest = stripeMask; rest != 0; rest &= rest - 1) {
+      stripes[Long.numberOfTrailingZeros(rest)].lock();
+    }
+  }
+
+  private void unlockAll(long stripeMask) {
+    for (long rest = stripeMask; rest != 0; rest &= rest - 1) {
+      stripes[Long.numberOfTrailingZeros(rest)].unlock();
+    }
+  }
+
+  /**
+   * Materializes the lots of a grocery that are still only in the lot source. The name stays
+   * marked as unloaded until all its lots are in place, so lock-free readers that find it
+   * unloaded wait here for the lock instead of reading a half-filled queue.
+   */
+  private void load(String groceryName) {
+    if (unloadedNames.isEmpty() || !unloadedNames.contains(groceryName)) {
+      return;
+    }
+    ReentrantLock lock = stripeFor(groceryName);
+    lock.lock();
+    try {
+      if (unloadedNames.contains(groceryName)) {
+        for (Grocery grocery : lotSource.lots(groceryName)) {
+          placeLot(grocery, nextLotId.getAndIncrement());
+        }
+        unloadedNames.remove(groceryName);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void loadAll() {
+    for (String groceryName : unloadedNames) {
+      load(groceryName);
+    }
+  }
+
+  /**
+   * Stores a new lot, or adds its amount to a matching lot when merging is on, and reports the
+   * new total. The caller holds the grocery's lock.
+   */
+  private void addLot(Grocery grocery) {
+    int id = insertLot(grocery);
+    fireTotalChanged(id, grocery.getName(), queue(id).getTotal());
+  }
+
+  /**
+   * Stores a new lot, or adds its amount to a matching lot when merging is on, without reporting
+   * the new total. The caller holds the grocery's lock and fires the total change.
+   *
+   * @return the grocery id of the lot
+   */
+  private int insertLot(Grocery grocery) {
+    if (mergeLots) {
+      int id = names.idOf(grocery.getName());
+      LotQueue lots = queue(id);
+      Grocery match = lots == null ? null : lots.findMergeable(grocery);
+      if (match != null) {
+        mergeInto(lots, match, grocery.getAmount());
+        return id;
+      }
+    }
+    int id = placeLot(grocery, nextLotId.getAndIncrement());
+    for (StorageListener listener : listeners) {
+      listener.lotAdded(grocery);
+    }
+    return id;
+  }
+
+  /**
+   * Adds an amount to a stored lot. The caller holds the grocery's lock and fires the total
+   * change.
+   */
+  private void mergeInto(LotQueue lots, Grocery lot, double amount) {
+    preserve(names.idOf(lot.getName()));
+    lot.assignAmount(lot.getAmount() + amount);
+    lots.adjustTotal(amount);
+    addValue(lot, amount);
+    fireLotAmountChanged(lot);
+  }
+
+  /**
+   * Puts a lot into its queue and the expiry index under a given lot id and reports the new total.
+   * The caller holds the grocery's lock.
+   */
+  private void attachLot(Grocery grocery, long lotId) {
+    int id = placeLot(grocery, lotId);
+    for (StorageListener listener : listeners) {
+      listener.lotAdded(grocery);
+    }
+    fireTotalChanged(id, grocery.getName(), queue(id).getTotal());
+  }
+
+  /**
+   * Puts a lot into its queue, creating the queue if needed, and into the expiry index.
+   *
+   * @return the grocery id of the lot
+   */
+  private int placeLot(Grocery grocery, long lotId) {
+    int id = names.intern(grocery.getName());
+    preserve(id);
+    LotQueue lots = queue(id);
+    if (lots == null) {
+      lots = new LotQueue();
+      setQueue(id, lots);
+    }
+    grocery.setLotId(lotId);
+    lots.add(grocery);
+    indexLot(grocery);
+    grocery.setStorage(this);
+    return id;
+  }
+
+  /**
+   * Takes a lot that has left its queue out of the expiry index. The caller holds the grocery's
+   * lock and fires the total change.
+   */
+  private void detachLot(Grocery grocery) {
+    unindexLot(grocery);
+    grocery.setStorage(null);
+    for (StorageListener listener : listeners) {
+      listener.lotRemoved(grocery);
+    }
+  }
+
+  /**
+   * Rounds a running value sum to 0 when it is within rounding drift of it, such as after every
+   * lot has been removed. Real negative sums, from lots with negative unit prices, are kept.
+   */
+  private static double snapToZero(double value) {
+    return Math.abs(value) < VALUE_EPSILON ? 0.0 : value;
+  }
+
+  private void fireLotAmountChanged(Grocery grocery) {
+    for (StorageListener listener : listeners) {
+      listener.lotAmountChanged(grocery);
+    }
+  }
+
+  private void fireTotalChanged(int groceryId, String groceryName, double total) {
+    // The grocery has a queue, so its version page exists
+    versionPages[groceryId >>> VERSION_PAGE_BITS]
+        .incrementAndGet(groceryId & ((1 << VERSION_PAGE_BITS) - 1));
+    modificationCount.incrementAndGet();
+    for (StorageListener listener : listeners) {
+      listener.totalChanged(groceryId, groceryName, total);
+    }
+  }
+
+  private void indexLot(Grocery grocery) {
+    indexLock.writeLock().lock();
+    try {
+      expiryIndex.computeIfAbsent(grocery.getExpiryDate(), d -> new LinkedHashSet<>())
+          .add(grocery);
+      valueByExpiry.add(grocery.getExpiryDate().toEpochDay(),
+          grocery.getAmount() * grocery.getUnitPrice());
+    } finally {
+      indexLock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Hands the lots of a grocery to every open snapshot that has not copied them yet. Called with
+   * the grocery's lock held, before the grocery is changed. With no snapshot open this is one
+   * read of an empty list.
+   */
+  private void preserve(int groceryId) {
+    if (openSnapshots.isEmpty()) {
+      return;
+    }
+    boolean cleared = false;
+    for (WeakReference<StorageSnapshot> ref : openSnapshots) {
+      StorageSnapshot snapshot = ref.get();
+      if (snapshot == null) {
+        cleared = true;
+      } else {
+        snapshot.preserve(groceryId, queue(groceryId));
+      }
+    }
+    if (cleared) {
+      openSnapshots.removeIf(ref -> ref.get() == null);
+    }
+  }
+
+  /**
+   * Records a change in the amount of an indexed lot in the value tree. The caller holds the
+   * grocery's lock.
+   */
+  private void addValue(Grocery grocery, double amountDelta) {
+    indexLock.writeLock().lock();
+    try {
+      valueByExpiry.add(grocery.getExpiryDate().toEpochDay(),
+          amountDelta * grocery.getUnitPrice());
+    } finally {
+      indexLock.writeLock().unlock();
+    }
+  }
+
+  private void unindexLot(Grocery grocery) {
+    indexLock.writeLock().lock();
+    try {
+      Set<Grocery> sameDay = expiryIndex.get(grocery.getExpiryDate());
+      if (sameDay != null && sameDay.remove(grocery)) {
+        valueByExpiry.add(grocery.getExpiryDate().toEpochDay(),
+            -grocery.getAmount() * grocery.getUnitPrice());
+        if (sameDay.isEmpty()) {
+          expiryIndex.remove(grocery.getExpiryDate());
+        }
+      }
+    } finally {
+      indexLock.writeLock().unlock();
     }
-    groceries.entrySet().removeIf(entry -> entry.getValue().isEmpty());
   }
 
   /**
@@ -154,27 +1194,36 @@ public class FoodStorage {
     if (groceryName == null) {
       throw new IllegalArgumentException("Grocery name cannot be null");
     }
-    if (!groceries.containsKey(groceryName)) {
-      throw new IllegalArgumentException("No grocery found with the name: " + groceryName);
-    }
-    StringBuilder groceryString = new StringBuilder();
-    for (Grocery g : groceries.get(groceryName)) {
-      groceryString.append(g.toString()).append("\n");
+    load(groceryName);
+    ReentrantLock lock = stripeFor(groceryName);
+    lock.lock();
+    try {
+      LotQueue lots = queue(names.idOf(groceryName));
+      if (lots == null) {
+        throw new IllegalArgumentException("No grocery found with the name: " + groceryName);
+      }
+      StringBuilder groceryString = new StringBuilder();
+      for (Grocery g : lots) {
+        groceryString.append(g.toString()).append("\n");
+      }
+      return groceryString.toString();
+    } finally {
+      lock.unlock();
     }
-    return groceryString.toString();
   }
 
   /**
    * Displays all groceries in the storage, sorted by name.
    */
   public void displayGroceries() {
-    if (groceries.isEmpty()) {
+    Map<String, List<Grocery>> current = getGroceries();
+    if (current.isEmpty()) {
       System.out.println("No groceries found");
     } else {
-      groceries.keySet().stream()
+      current.keySet().stream()
           .sorted()
           .forEach(key -> {
-            groceries.get(key).forEach(System.out::println);
+            current.get(key).forEach(System.out::println);
           });
     }
   }
@@ -14,10 +14,13 @@ import java.time.LocalDate;
 public class Grocery {
 
   private final String name;
-  private double amount;
+  private volatile double amount;
   private final Unit unit;
-  private LocalDate expiryDate;
+  private volatile LocalDate expiryDate;
   private final double unitPrice;
+  // The storage this lot is kept in, or null if it is not stored (e.g. a recipe ingredient)
+  private volatile FoodStorage storage;
+  private volatile long lotId;
 
   /**
    * Constructs a new Grocery item with the specified attributes. Validates input data to ensure the
@@ -118,12 +121,28 @@ public class Grocery {
    * @throws IllegalArgumentException if the amount is invalid.
    */
   public void setAmount(double amount) {
+    if (storage != null) {
+      if (amount < 0) {
+        throw new IllegalArgumentException("Amount must be greater than 0");
+      }
+      storage.changeAmount(this, amount);
+      return;
+    }
     this.amount = amount;
     if (amount < 0) {
       throw new IllegalArgumentException("Amount must be greater than 0");
     }
   }
 
+  /**
+   * Sets the amount without validation. Used by FoodStorage while it keeps its totals in step.
+   *
+   * @param amount the new amount
+   */
+  void assignAmount(double amount) {
+    this.amount = amount;
+  }
+
   /**
    * Updates the expiry date of the grocery item.
    *
@@ -136,9 +155,59 @@ public class Grocery {
     } else if (expiryDate.isBefore(LocalDate.now())) {
       throw new IllegalArgumentException("Expiry date cannot be in the past");
     }
+    if (storage != null) {
+      storage.changeExpiryDate(this, expiryDate);
+    } else {
+      this.expiryDate = expiryDate;
+    }
+  }
+
+  /**
+   * Sets the expiry date without validation. Used by FoodStorage while it re-indexes the lot.
+   *
+   * @param expiryDate the new expiry date
+   */
+  void assignExpiryDate(LocalDate expiryDate) {
     this.expiryDate = expiryDate;
   }
 
+  /**
+   * Gets the id the storage gave this lot when it was added. Ids are unique within a storage and
+   * are kept after the lot leaves it.
+   *
+   * @return the lot id, or 0 if the grocery has never been stored
+   */
+  public long getLotId() {
+    return lotId;
+  }
+
+  /**
+   * Sets the lot id. Used by FoodStorage when the lot is added.
+   *
+   * @param lotId the lot id
+   */
+  void setLotId(long lotId) {
+    this.lotId = lotId;
+  }
+
+  /**
+   * Gets the storage this grocery is kept in.
+   *
+   * @return the owning storage, or null if the grocery is not stored
+   */
+  FoodStorage getStorage() {
+    return storage;
+  }
+
+  /**
+   * Sets the storage this grocery is kept in.
+   *
+   * @param storage the owning storage, or null when the grocery leaves it
+   */
+  void setStorage(FoodStorage storage) {
+    this.storage = storage;
+  }
+
   /**
    * Returns a string representation of the grocery item.
    *
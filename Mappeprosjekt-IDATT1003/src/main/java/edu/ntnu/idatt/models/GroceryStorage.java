@@ -0,0 +1,69 @@
+package edu.ntnu.idatt.models;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The operations every grocery storage backend supports. {@link FoodStorage} keeps each lot as a
+ * {@link Grocery} object; {@link ColumnarFoodStorage} keeps lots in primitive arrays.
+ */
+public interface GroceryStorage {
+
+  /**
+   * Adds a grocery item to the storage.
+   *
+   * @param grocery the grocery item to add
+   * @throws IllegalArgumentException if the grocery is null or cannot be stored
+   */
+  void addGrocery(Grocery grocery);
+
+  /**
+   * Removes a specified amount of a grocery item, starting with the lot that expires first.
+   *
+   * @param groceryName   the name of the grocery to remove
+   * @param amountRemoved the amount to remove
+   * @throws IllegalArgumentException if the name is null or empty, the grocery is not found or
+   *                                  there is not enough of it
+   */
+  void removeAmount(String groceryName, double amountRemoved);
+
+  /**
+   * Calculates the total amount of a grocery.
+   *
+   * @param groceryName the name of the grocery
+   * @return the total amount of the grocery, or 0.0 if the grocery is not found
+   * @throws IllegalArgumentException if the grocery name is null or empty
+   */
+  double getTotalAmount(String groceryName);
+
+  /**
+   * Returns all groceries that expire before the given date, in expiry order.
+   *
+   * @param date the cutoff date
+   * @return a list of expired groceries
+   * @throws IllegalArgumentException if the date is null
+   */
+  List<Grocery> expiredGroceries(LocalDate date);
+
+  /**
+   * Returns the value of all groceries that expire before the given date.
+   *
+   * @param date the cutoff date
+   * @return the summed amount times unit price of the expired groceries
+   * @throws IllegalArgumentException if the date is null
+   */
+  double valueOfExpiredGroceries(LocalDate date);
+
+  /**
+   * Removes all groceries that expired before today.
+   */
+  void removeCurrentlyExpiredGroceries();
+
+  /**
+   * Returns the groceries grouped by name, each list in expiry order.
+   *
+   * @return grocery lists keyed by name
+   */
+  Map<String, List<Grocery>> getGroceries();
+}
@@ -0,0 +1,229 @@
+package edu.ntnu.idatt.models;
+
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * Holds every lot of a single grocery in expiry order, oldest first. Lots that share an expiry
+ * date keep the order they were added in.
+ *
+ * <p>Consuming from the front costs only the lots actually taken, so FoodStorage no longer has to
+ * sort on every withdrawal. The queue also keeps a running total of the amounts it holds, which
+ * is recomputed from the lots every {@value #RESYNC_INTERVAL} updates to shed floating-point
+ * drift.</p>
+ *
+ * <p>A queue is not synchronized; FoodStorage guards each one with its grocery's lock. Only
+ * {@link #getTotal()} may be read without holding that lock.</p>
+ */
+public class LotQueue implements Iterable<Grocery> {
+
+  /**
+   * Number of total updates between exact recomputations of the running total.
+   */
+  public static final int RESYNC_INTERVAL = 1024;
+
+  private final TreeMap<LocalDate, ArrayDeque<Grocery>> lots;
+  private int size;
+  private volatile double total;
+  private int updatesSinceResync;
+
+  /**
+   * Creates an empty queue.
+   */
+  public LotQueue() {
+    lots = new TreeMap<>();
+    size = 0;
+    total = 0.0;
+    updatesSinceResync = 0;
+  }
+
+  /**
+   * Adds a lot behind every lot with the same or an earlier expiry date.
+   *
+   * @param grocery the lot to add
+   * @throws IllegalArgumentException if the grocery is null
+   */
+  public void add(Grocery grocery) {
+    if (grocery == null) {
+      throw new IllegalArgumentException("grocery cannot be null");
+    }
+    lots.computeIfAbsent(grocery.getExpiryDate(), d -> new ArrayDeque<>()).addLast(grocery);
+    size++;
+    adjustTotal(grocery.getAmount());
+  }
+
+  /**
+   * Returns the lot that expires first without removing it.
+   *
+   * @return the oldest lot, or null if the queue is empty
+   */
+  public Grocery peekFirst() {
+    Map.Entry<LocalDate, ArrayDeque<Grocery>> first = lots.firstEntry();
+    return first == null ? null : first.getValue().peekFirst();
+  }
+
+  /**
+   * Removes and returns the lot that expires first.
+   *
+   * @return the oldest lot, or null if the queue is empty
+   */
+  public Grocery pollFirst() {
+    Map.Entry<LocalDate, ArrayDeque<Grocery>> first = lots.firstEntry();
+    if (first == null) {
+      return null;
+    }
+    Grocery oldest = first.getValue().pollFirst();
+    if (first.getValue().isEmpty()) {
+      lots.remove(first.getKey());
+    }
+    size--;
+    adjustTotal(-oldest.getAmount());
+    return oldest;
+  }
+
+  /**
+   * Removes a specific lot from the queue.
+   *
+   * @param grocery the lot to remove
+   * @return true if the lot was in the queue
+   */
+  public boolean remove(Grocery grocery) {
+    if (grocery == null) {
+      return false;
+    }
+    ArrayDeque<Grocery> sameDay = lots.get(grocery.getExpiryDate());
+    if (sameDay == null || !sameDay.removeIf(g -> g == grocery)) {
+      return false;
+    }
+    if (sameDay.isEmpty()) {
+      lots.remove(grocery.getExpiryDate());
+    }
+    size--;
+    adjustTotal(-grocery.getAmount());
+    return true;
+  }
+
+  /**
+   * Finds the earliest added lot, other than the given one, that has the same expiry date, unit
+   * and unit price, so the two could be merged into one. Only lots sharing the expiry date are
+   * visited.
+   *
+   * @param grocery the lot to match
+   * @return the matching lot, or null if there is none
+   */
+  public Grocery findMergeable(Grocery grocery) {
+    ArrayDeque<Grocery> sameDay = lots.get(grocery.getExpiryDate());
+    if (sameDay == null) {
+      return null;
+    }
+    for (Grocery g : sameDay) {
+      if (g != grocery && g.getUnit() == grocery.getUnit()
+          && Double.compare(g.getUnitPrice(), grocery.getUnitPrice()) == 0) {
+        return g;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Returns the total amount held by all lots in the queue.
+   *
+   * @return the running total
+   */
+  public double getTotal() {
+    return total;
+  }
+
+  /**
+   * Adds a change in a lot's amount to the running total. Must be called whenever the amount of a
+   * lot in this queue changes.
+   *
+   * @param delta the change in amount, negative for withdrawals
+   */
+  public void adjustTotal(double delta) {
+    total += delta;
+    if (size == 0) {
+      total = 0.0;
+      updatesSinceResync = 0;
+    } else if (++updatesSinceResync >= RESYNC_INTERVAL) {
+      resyncTotal();
+    }
+  }
+
+  /**
+   * Recomputes the running total from the lots, discarding any accumulated rounding error.
+   */
+  public void resyncTotal() {
+    double exact = 0.0;
+    for (Grocery g : this) {
+      exact += g.getAmount();
+    }
+    total = exact;
+    updatesSinceResync = 0;
+  }
+
+  /**
+   * Returns the number of lots in the queue.
+   *
+   * @return the number of lots
+   */
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Checks whether the queue holds any lots.
+   *
+   * @return true if there are no lots
+   */
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /**
+   * Returns the lots as a list in expiry order.
+   *
+   * @return a new list of the lots, oldest first
+   */
+  public List<Grocery> toList() {
+    List<Grocery> list = new ArrayList<>(size);
+    lots.values().forEach(list::addAll);
+    return list;
+  }
+
+  /**
+   * Iterates over the lots in expiry order, oldest first.
+   *
+   * @return an iterator over the lots
+   */
+  @Override
+  public Iterator<Grocery> iterator() {
+    Iterator<ArrayDeque<Grocery>> days = lots.values().iterator();
+    return new Iterator<>() {
+      private Iterator<Grocery> current = Collections.emptyIterator();
+
+      @Override
+      public boolean hasNext() {
+        while (!current.hasNext() && days.hasNext()) {
+          current = days.next().iterator();
+        }
+        return current.hasNext();
+      }
+
+      @Override
+      public Grocery next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        return current.next();
+      }
+    };
+  }
+}
@@ -0,0 +1,26 @@
+package edu.ntnu.idatt.models;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Lots a {@link FoodStorage} starts out with, read one grocery at a time as the storage needs
+ * them. Implementations may be called from several threads, but never twice for the same name.
+ */
+public interface LotSource {
+
+  /**
+   * Returns the names of the groceries the source has lots of.
+   *
+   * @return the grocery names
+   */
+  Set<String> names();
+
+  /**
+   * Creates the lots of one grocery. The lots are new objects that are not in any storage.
+   *
+   * @param groceryName one of the names returned by {@link #names()}
+   * @return the lots of the grocery
+   */
+  List<Grocery> lots(String groceryName);
+}
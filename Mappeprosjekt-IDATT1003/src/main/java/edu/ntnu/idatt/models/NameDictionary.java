@@ -0,0 +1,91 @@
+package edu.ntnu.idatt.models;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assigns every grocery name a small, dense int id, so per-grocery data can be kept in arrays
+ * indexed by id instead of maps keyed by name. Ids start at 0 and are never reused.
+ *
+ * <p>Looking up ids and names takes no lock; only assigning a new id is synchronized.</p>
+ */
+public final class NameDictionary {
+
+  private final ConcurrentHashMap<String, Integer> ids;
+  private volatile String[] names;
+  private volatile int size;
+
+  /**
+   * Creates an empty dictionary.
+   */
+  public NameDictionary() {
+    this.ids = new ConcurrentHashMap<>();
+    this.names = new String[16];
+    this.size = 0;
+  }
+
+  /**
+   * Returns the id of a name, assigning the next free id if the name is new.
+   *
+   * @param name the grocery name
+   * @return the id of the name
+   * @throws IllegalArgumentException if the name is null
+   */
+  public int intern(String name) {
+    if (name == null) {
+      throw new IllegalArgumentException("name cannot be null");
+    }
+    Integer id = ids.get(name);
+    return id != null ? id : assign(name);
+  }
+
+  /**
+   * Returns the id of a name that has been interned.
+   *
+   * @param name the grocery name
+   * @return the id of the name, or -1 if it has no id
+   */
+  public int idOf(String name) {
+    Integer id = name == null ? null : ids.get(name);
+    return id == null ? -1 : id;
+  }
+
+  /**
+   * Returns the name with the given id.
+   *
+   * @param id an id returned by {@link #intern(String)}
+   * @return the name
+   * @throws IndexOutOfBoundsException if no name has the id
+   */
+  public String name(int id) {
+    if (id < 0 || id >= size) {
+      throw new IndexOutOfBoundsException("No name with id " + id);
+    }
+    return names[id];
+  }
+
+  /**
+   * Returns the number of names, which is also one more than the highest id.
+   *
+   * @return the number of names
+   */
+  public int size() {
+    return size;
+  }
+
+  private synchronized int assign(String name) {
+    Integer existing = ids.get(name);
+    if (existing != null) {
+      return existing;
+    }
+    int id = size;
+    if (id == names.length) {
+      names = Arrays.copyOf(names, id * 2);
+    }
+    names[id] = name;
+    // The name is published before the size that makes it visible
+    size = id + 1;
+    ids.put(name, id);
+    return id;
+  }
+}
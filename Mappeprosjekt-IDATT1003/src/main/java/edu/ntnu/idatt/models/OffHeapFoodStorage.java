@@ -0,0 +1,407 @@
+package edu.ntnu.idatt.models;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * A grocery storage that keeps lot data outside the Java heap, in memory segments owned by an
+ * {@link Arena}. However many lots it holds, the garbage collector has no lot objects to trace or
+ * move.
+ *
+ * <p>Each lot is a 32 byte record:</p>
+ * <pre>
+ *   0  int    name id        16  double unit price
+ *   4  int    expiry day     24  byte   unit ordinal
+ *   8  double amount         28  int    next free record
+ * </pre>
+ *
+ * <p>Records live in chunks of 65 536 that are allocated as the storage grows and never moved.
+ * Freed records are chained into a free list and reused. The compact index on the heap holds no
+ * references for the collector to follow: a {@link NameDictionary}, a running total per name id,
+ * and per name an int array of record numbers in expiry order. Withdrawals and the expiry sweep
+ * take records from the front of that array; new lots are placed by binary search.</p>
+ *
+ * <p>Like {@link ColumnarFoodStorage}, lots are stored by value: groceries passed in are copied
+ * and groceries handed out are new objects. The storage is safe to use from several threads.
+ * {@link #close()} frees all off-heap memory at once; the storage cannot be used after that.</p>
+ */
+public class OffHeapFoodStorage implements GroceryStorage, AutoCloseable {
+
+  private static final int CHUNK_BITS = 16;
+  private static final int CHUNK_RECORDS = 1 << CHUNK_BITS;
+  private static final long RECORD_BYTES = 32;
+
+  private static final long NAME_ID = 0;
+  private static final long EXPIRY_DAY = 4;
+  private static final long AMOUNT = 8;
+  private static final long UNIT_PRICE = 16;
+  private static final long UNIT = 24;
+  private static final long NEXT_FREE = 28;
+
+  private static final int NONE = -1;
+  private static final int FREE_EXPIRY_DAY = Integer.MAX_VALUE;
+  private static final Unit[] UNITS = Unit.values();
+  /* tolerance set to 1g/1ml in order to circumvent floating point inaccuracies
+  when trying to remove the entire amount */
+  private static final double TOLERANCE = 0.001;
+
+  private final Arena arena;
+  private final StampedLock lock;
+  private final NameDictionary names;
+
+  private MemorySegment[] chunks;
+  private int recordCount;
+  private int freeHead;
+  private int freeCount;
+  private boolean closed;
+
+  // Per-name queues of records in expiry order, and running totals
+  private final SlotQueues queues;
+
+  /**
+   * Initializes an empty storage.
+   */
+  public OffHeapFoodStorage() {
+    this.arena = Arena.ofShared();
+    this.lock = new StampedLock();
+    this.names = new NameDictionary();
+    this.chunks = new MemorySegment[8];
+    this.freeHead = NONE;
+    this.queues = new SlotQueues(lot -> getInt(lot, EXPIRY_DAY), lot -> getDouble(lot, AMOUNT));
+  }
+
+  /**
+   * Adds a copy of a grocery item to the storage. No restrictions on expiry date.
+   *
+   * @param grocery the grocery item to add
+   * @throws IllegalArgumentException if the grocery is null or its expiry date is millions of
+   *                                  years away
+   * @throws IllegalStateException    if the storage is closed
+   */
+  @Override
+  public void addGrocery(Grocery grocery) {
+    if (grocery == null) {
+      throw new IllegalArgumentException("grocery cannot be null");
+    }
+    long expiryDay = grocery.getExpiryDate().toEpochDay();
+    if (expiryDay < Integer.MIN_VALUE || expiryDay >= FREE_EXPIRY_DAY) {
+      throw new IllegalArgumentException("Expiry date is out of range");
+    }
+    long stamp = lock.writeLock();
+    try {
+      ensureOpen();
+      int nameId = names.intern(grocery.getName());
+      queues.ensureCapacity(nameId);
+      int lot = allocateRecord();
+      MemorySegment chunk = chunk(lot);
+      long base = offset(lot);
+      chunk.set(ValueLayout.JAVA_INT, base + NAME_ID, nameId);
+      chunk.set(ValueLayout.JAVA_INT, base + EXPIRY_DAY, (int) expiryDay);
+      chunk.set(ValueLayout.JAVA_DOUBLE, base + AMOUNT, grocery.getAmount());
+      chunk.set(ValueLayout.JAVA_DOUBLE, base + UNIT_PRICE, grocery.getUnitPrice());
+      chunk.set(ValueLayout.JAVA_BYTE, base + UNIT, (byte) grocery.getUnit().ordinal());
+      queues.enqueue(nameId, lot);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException if the storage is closed
+   */
+  @Override
+  public void removeAmount(String groceryName, double amountRemoved) {
+    if (groceryName == null || groceryName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Grocery name cannot be null or empty");
+    }
+    long stamp = lock.writeLock();
+    try {
+      ensureOpen();
+      int nameId = names.idOf(groceryName);
+      if (nameId < 0) {
+        throw new IllegalArgumentException("No grocery found with the name: " + groceryName);
+      }
+      if (queues.total(nameId) < amountRemoved) {
+        throw new IllegalArgumentException(
+            "Amount to remove cannot be larger than the total amount");
+      }
+      while (amountRemoved > TOLERANCE && queues.head(nameId) < queues.end(nameId)) {
+        int oldest = queues.lotAt(nameId, queues.head(nameId));
+        double amount = getDouble(oldest, AMOUNT);
+        if (amount > amountRemoved) {
+          setDouble(oldest, AMOUNT, amount - amountRemoved);
+          queues.addToTotal(nameId, -amountRemoved);
+          amountRemoved = 0;
+        } else {
+          amountRemoved -= amount;
+          freeRecord(queues.dequeueOldest(nameId));
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException if the storage is closed
+   */
+  @Override
+  public double getTotalAmount(String groceryName) {
+    if (groceryName == null || groceryName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Grocery name cannot be null or empty");
+    }
+    long stamp = lock.readLock();
+    try {
+      ensureOpen();
+      int nameId = names.idOf(groceryName);
+      return nameId < 0 ? 0.0 : queues.total(nameId);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException if the storage is closed
+   */
+  @Override
+  public List<Grocery> expiredGroceries(LocalDate date) {
+    if (date == null) {
+      throw new IllegalArgumentException("date cannot be null");
+    }
+    long cutoff = date.toEpochDay();
+    List<Grocery> expired = new ArrayList<>();
+    long stamp = lock.readLock();
+    try {
+      ensureOpen();
+      for (int nameId = 0; nameId < names.size(); nameId++) {
+        // Queues are in expiry order, so only the expired front of each queue is visited
+        for (int i = queues.head(nameId); i < queues.end(nameId); i++) {
+          int lot = queues.lotAt(nameId, i);
+          if (getInt(lot, EXPIRY_DAY) >= cutoff) {
+            break;
+          }
+          expired.add(toGrocery(lot));
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    expired.sort(Comparator.comparing(Grocery::getExpiryDate));
+    return expired;
+  }
+
+  /**
+   * Returns the value of all groceries that expire before the given date. This is one pass over
+   * the record chunks that allocates nothing.
+   *
+   * @param date the cutoff date
+   * @return the value of the expired groceries
+   * @throws IllegalStateException if the storage is closed
+   */
+  @Override
+  public double valueOfExpiredGroceries(LocalDate date) {
+    if (date == null) {
+      throw new IllegalArgumentException("date cannot be null");
+    }
+    long cutoff = date.toEpochDay();
+    double totalValue = 0.0;
+    long stamp = lock.readLock();
+    try {
+      ensureOpen();
+      for (int first = 0; first < recordCount; first += CHUNK_RECORDS) {
+        MemorySegment chunk = chunks[first >>> CHUNK_BITS];
+        long end = Math.min(CHUNK_RECORDS, recordCount - first) * RECORD_BYTES;
+        // Freed records have amount 0 and never expire, so they add nothing
+        for (long base = 0; base < end; base += RECORD_BYTES) {
+          if (chunk.get(ValueLayout.JAVA_INT, base + EXPIRY_DAY) < cutoff) {
+            totalValue += chunk.get(ValueLayout.JAVA_DOUBLE, base + AMOUNT)
+                * chunk.get(ValueLayout.JAVA_DOUBLE, base + UNIT_PRICE);
+          }
+        }
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    return totalValue;
+  }
+
+  /**
+   * {@inheritDoc}
+   *
+   * @throws IllegalStateException if the storage is closed
+   */
+  @Override
+  public void removeCurrentlyExpiredGroceries() {
+    long today = LocalDate.now().toEpochDay();
+    long stamp = lock.writeLock();
+    try {
+      ensureOpen();
+      for (int nameId = 0; nameId < names.size(); nameId++) {
+        while (queues.head(nameId) < queues.end(nameId)
+            && getInt(queues.lotAt(nameId, queues.head(nameId)), EXPIRY_DAY) < today) {
+          freeRecord(queues.dequeueOldest(nameId));
+        }
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Returns copies of the stored groceries grouped by name. Names without lots are left out.
+   *
+   * @return grocery lists keyed by name
+   * @throws IllegalStateException if the storage is closed
+   */
+  @Override
+  public Map<String, List<Grocery>> getGroceries() {
+    Map<String, List<Grocery>> copy = new HashMap<>();
+    long stamp = lock.readLock();
+    try {
+      ensureOpen();
+      for (int nameId = 0; nameId < names.size(); nameId++) {
+        if (queues.head(nameId) == queues.end(nameId)) {
+          continue;
+        }
+        List<Grocery> lots = new ArrayList<>(queues.end(nameId) - queues.head(nameId));
+        for (int i = queues.head(nameId); i < queues.end(nameId); i++) {
+          lots.add(toGrocery(queues.lotAt(nameId, i)));
+        }
+        copy.put(names.name(nameId), lots);
+      }
+    } finally {
+      lock.unlockRead(stamp);
+    }
+    return copy;
+  }
+
+  /**
+   * Returns the number of lots in the storage.
+   *
+   * @return the lot count
+   * @throws IllegalStateException if the storage is closed
+   */
+  public int lotCount() {
+    long stamp = lock.readLock();
+    try {
+      ensureOpen();
+      return recordCount - freeCount;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Returns the off-heap memory the storage has allocated.
+   *
+   * @return the allocated size in bytes
+   * @throws IllegalStateException if the storage is closed
+   */
+  public long offHeapBytes() {
+    long stamp = lock.readLock();
+    try {
+      ensureOpen();
+      int chunkCount = (recordCount + CHUNK_RECORDS - 1) >>> CHUNK_BITS;
+      return (long) chunkCount * CHUNK_RECORDS * RECORD_BYTES;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /**
+   * Frees all off-heap memory. Waits for operations in progress to finish; every later call
+   * except another close throws {@link IllegalStateException}.
+   */
+  @Override
+  public void close() {
+    long stamp = lock.writeLock();
+    try {
+      if (!closed) {
+        closed = true;
+        chunks = new MemorySegment[0];
+        arena.close();
+      }
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  private void ensureOpen() {
+    if (closed) {
+      throw new IllegalStateException("Storage is closed");
+    }
+  }
+
+  private Grocery toGrocery(int lot) {
+    return new Grocery(names.name(getInt(lot, NAME_ID)), getDouble(lot, AMOUNT),
+        UNITS[chunk(lot).get(ValueLayout.JAVA_BYTE, offset(lot) + UNIT)],
+        LocalDate.ofEpochDay(getInt(lot, EXPIRY_DAY)), getDouble(lot, UNIT_PRICE));
+  }
+
+  private int allocateRecord() {
+    if (freeHead != NONE) {
+      int lot = freeHead;
+      freeHead = getInt(lot, NEXT_FREE);
+      freeCount--;
+      return lot;
+    }
+    int chunkIndex = recordCount >>> CHUNK_BITS;
+    if (chunkIndex == chunks.length) {
+      chunks = Arrays.copyOf(chunks, chunks.length * 2);
+    }
+    if (chunks[chunkIndex] == null) {
+      chunks[chunkIndex] = arena.allocate(CHUNK_RECORDS * RECORD_BYTES, 8);
+    }
+    return recordCount++;
+  }
+
+  private void freeRecord(int lot) {
+    setInt(lot, NAME_ID, NONE);
+    setInt(lot, EXPIRY_DAY, FREE_EXPIRY_DAY);
+    setDouble(lot, AMOUNT, 0.0);
+    setInt(lot, NEXT_FREE, freeHead);
+    freeHead = lot;
+    freeCount++;
+  }
+
+
+
+  private MemorySegment chunk(int lot) {
+    return chunks[lot >>> CHUNK_BITS];
+  }
+
+  private static long offset(int lot) {
+    return (lot & (CHUNK_RECORDS - 1)) * RECORD_BYTES;
+  }
+
+  private int getInt(int lot, long field) {
+    return chunk(lot).get(ValueLayout.JAVA_INT, offset(lot) + field);
+  }
+
+  private void setInt(int lot, long field, int value) {
+    chunk(lot).set(ValueLayout.JAVA_INT, offset(lot) + field, value);
+  }
+
+  private double getDouble(int lot, long field) {
+    return chunk(lot).get(ValueLayout.JAVA_DOUBLE, offset(lot) + field);
+  }
+
+  private void setDouble(int lot, long field, double value) {
+    chunk(lot).set(ValueLayout.JAVA_DOUBLE, offset(lot) + field, value);
+  }
+}
@@ -5,6 +5,11 @@ import java.util.List;
 
 /**
  * Represents a recipe with a description, instructions, ingredients, and portions.
+ *
+ * <p>The ingredient amounts the recipe is created with are kept as its base amounts. Changing the
+ * portions recomputes every ingredient from them, so scaling back and forth does not accumulate
+ * rounding errors, and {@link #scaledTo(double)} gives a view at other portions without touching
+ * the ingredients at all.</p>
  */
 public class Recipe {
 
@@ -12,13 +17,19 @@ public class Recipe {
   private final String instructions;
   private final List<Grocery> ingredients;
   private double portions;
+  // Ingredient amounts for basePortions, as given to the constructor
+  private final double[] baseAmounts;
+  private final double basePortions;
+  // Notified when ingredient amounts change, so a CookBook can re-check availability
+  private Runnable changeListener;
 
   /**
    * Constructs a Recipe object.
    *
    * @param description the description of the recipe, such as its name or type
    * @param instructions the instructions for preparing the recipe
-   * @param ingredients the list of ingredients needed for the recipe
+   * @param ingredients the list of ingredients needed for the recipe, copied so later changes to
+   *                    the list do not reach the recipe; null for none
    * @param portions the number of portions the recipe serves (must be greater than 0)
    * @throws IllegalArgumentException if portions is less than or equal to 0
    */
@@ -29,8 +40,11 @@ public class Recipe {
     }
     this.description = description;
     this.instructions = instructions;
-    this.ingredients = ingredients;
+    // Copied so the base amounts always line up with the ingredients
+    this.ingredients = ingredients == null ? List.of() : List.copyOf(ingredients);
     this.portions = portions;
+    this.baseAmounts = this.ingredients.stream().mapToDouble(Grocery::getAmount).toArray();
+    this.basePortions = portions;
   }
 
   /**
@@ -54,7 +68,7 @@ public class Recipe {
   /**
    * Returns the list of ingredients for the recipe.
    *
-   * @return the list of ingredients
+   * @return an unmodifiable list of the ingredients, empty if there are none
    */
   public List<Grocery> getIngredients() {
     return ingredients;
@@ -70,7 +84,8 @@ public class Recipe {
   }
 
   /**
-   * Sets a new number of portions for the recipe and adjusts ingredient amounts accordingly.
+   * Sets a new number of portions for the recipe and adjusts ingredient amounts accordingly. The
+   * amounts are computed from the base amounts, not from their current values.
    *
    * @param newPortions the new number of portions (must be greater than 0)
    * @throws IllegalArgumentException if newPortions is less than or equal to 0
@@ -79,10 +94,48 @@ public class Recipe {
     if (newPortions <= 0) {
       throw new IllegalArgumentException("New portions must be greater than 0.");
     }
-    double portionRatio = newPortions / portions;
-    for (Grocery ingredient : getIngredients()) {
-      ingredient.setAmount(ingredient.getAmount() * portionRatio);
+    double portionRatio = newPortions / basePortions;
+    for (int i = 0; i < baseAmounts.length; i++) {
+      ingredients.get(i).setAmount(baseAmounts[i] * portionRatio);
     }
     portions = newPortions;
+    if (changeListener != null) {
+      changeListener.run();
+    }
+  }
+
+  /**
+   * Returns a read-only view of the recipe scaled to a number of portions. The view holds only a
+   * scale factor and computes amounts from the base amounts when they are read. Neither the recipe
+   * nor its ingredients are changed.
+   *
+   * @param portions the number of portions (must be greater than 0)
+   * @return the scaled view
+   * @throws IllegalArgumentException if portions is less than or equal to 0
+   */
+  public ScaledRecipe scaledTo(double portions) {
+    if (portions <= 0) {
+      throw new IllegalArgumentException("Portions must be greater than 0.");
+    }
+    return new ScaledRecipe(this, portions, portions / basePortions);
+  }
+
+  /**
+   * Returns the amount of an ingredient at the portions the recipe was created with.
+   *
+   * @param index the position of the ingredient
+   * @return the base amount
+   */
+  double getBaseAmount(int index) {
+    return baseAmounts[index];
+  }
+
+  /**
+   * Sets the callback that is run after the ingredient amounts have been changed.
+   *
+   * @param changeListener the callback, or null for none
+   */
+  void setChangeListener(Runnable changeListener) {
+    this.changeListener = changeListener;
   }
 }
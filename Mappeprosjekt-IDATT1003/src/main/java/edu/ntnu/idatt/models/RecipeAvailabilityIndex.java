@@ -0,0 +1,177 @@
+package edu.ntnu.idatt.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+/**
+ * Keeps track of which recipes can be made with the groceries in a FoodStorage.
+ *
+ * <p>Each recipe counts how many of its ingredients are currently in stock in sufficient amounts.
+ * An inverted index from grocery id to the recipes that use it means a change in one grocery's
+ * total only re-checks the recipes that need that grocery, found by indexing a list rather than
+ * hashing the grocery name.</p>
+ *
+ * <p>Storage changes arrive from whichever thread made them, with that grocery's lock held, so
+ * they take no lock shared between groceries. The inverted index is copied on write and read
+ * without locking, and each recipe's counts are guarded by that recipe's own monitor, so two
+ * writers only wait for each other when they change ingredients of the same recipe. Adding and
+ * changing recipes is synchronized on the index.</p>
+ */
+class RecipeAvailabilityIndex implements StorageListener {
+
+  private final FoodStorage foodStorage;
+  // Guarded by this index's monitor
+  private final HashMap<String, RecipeState> states;
+  private int nextSequence;
+  // Indexed by grocery id; null for groceries no recipe uses. Replaced, never changed in place
+  private volatile Requirement[][] requirementsByGrocery;
+  // Recipes that can be made, in the order they were added
+  private final ConcurrentSkipListSet<RecipeState> availableRecipes;
+
+  /**
+   * Creates an index over the given storage and registers it for total changes.
+   *
+   * @param foodStorage the storage to follow
+   */
+  RecipeAvailabilityIndex(FoodStorage foodStorage) {
+    this.foodStorage = foodStorage;
+    this.states = new HashMap<>();
+    this.requirementsByGrocery = new Requirement[0][];
+    this.availableRecipes =
+        new ConcurrentSkipListSet<>(Comparator.comparingInt(state -> state.sequence));
+    foodStorage.addListener(this);
+  }
+
+  /**
+   * Starts tracking a recipe.
+   *
+   * @param recipeName   the name of the recipe
+   * @param requirements the compiled requirements of the recipe
+   */
+  synchronized void addRecipe(String recipeName, RequirementVector requirements) {
+    RecipeState state = new RecipeState(recipeName, requirements, nextSequence++);
+    states.put(recipeName, state);
+    Requirement[][] byGrocery = requirementsByGrocery;
+    for (int i = 0; i < requirements.size(); i++) {
+      int groceryId = requirements.groceryId(i);
+      if (groceryId >= byGrocery.length) {
+        byGrocery = Arrays.copyOf(byGrocery, Math.max(byGrocery.length * 2, groceryId + 1));
+      } else if (byGrocery == requirementsByGrocery) {
+        byGrocery = byGrocery.clone();
+      }
+      Requirement[] current = byGrocery[groceryId];
+      Requirement[] added = current == null
+          ? new Requirement[1] : Arrays.copyOf(current, current.length + 1);
+      added[added.length - 1] = new Requirement(state, i);
+      byGrocery[groceryId] = added;
+    }
+    // Published before the totals are read, so a change made meanwhile is either seen by
+    // evaluate or delivered to the recipe
+    requirementsByGrocery = byGrocery;
+    evaluate(state);
+  }
+
+  /**
+   * Re-checks every ingredient of a recipe against new amounts, e.g. after its portions have been
+   * changed. The recipe must still use the same groceries.
+   *
+   * @param recipeName   the name of the recipe
+   * @param requirements the recompiled requirements of the recipe
+   */
+  synchronized void recipeChanged(String recipeName, RequirementVector requirements) {
+    RecipeState state = states.get(recipeName);
+    synchronized (state) {
+      state.requirements = requirements;
+    }
+    evaluate(state);
+  }
+
+  /**
+   * Returns the recipes that can currently be made, in the order they were added.
+   *
+   * @return a new list of recipe names
+   */
+  List<String> availableRecipes() {
+    List<String> names = new ArrayList<>(availableRecipes.size());
+    for (RecipeState state : availableRecipes) {
+      names.add(state.name);
+    }
+    return names;
+  }
+
+  @Override
+  public void totalChanged(int groceryId, String groceryName, double total) {
+    Requirement[][] byGrocery = requirementsByGrocery;
+    Requirement[] requirements = groceryId < byGrocery.length ? byGrocery[groceryId] : null;
+    if (requirements == null) {
+      return;
+    }
+    for (Requirement requirement : requirements) {
+      requirement.state.update(requirement.index, total);
+    }
+  }
+
+  /**
+   * Checks every ingredient of a recipe against the current totals. A total read just before a
+   * writer changed it could overwrite the writer's newer update, so each one is read again until
+   * its version is the same after the update as before the read.
+   */
+  private void evaluate(RecipeState state) {
+    RequirementVector requirements = state.requirements;
+    for (int i = 0; i < requirements.size(); i++) {
+      int groceryId = requirements.groceryId(i);
+      long version;
+      do {
+        version = foodStorage.groceryVersion(groceryId);
+        state.update(i, foodStorage.getTotalAmount(groceryId));
+      } while (foodStorage.groceryVersion(groceryId) != version);
+    }
+  }
+
+  /**
+   * One entry of the requirement vector of one recipe.
+   */
+  private record Requirement(RecipeState state, int index) {
+  }
+
+  /**
+   * Which ingredients of a recipe are satisfied, and how many. Updated under its own monitor.
+   */
+  private final class RecipeState {
+
+    private final String name;
+    private final int sequence;
+    private volatile RequirementVector requirements;
+    private final boolean[] satisfied;
+    private int satisfiedCount;
+
+    private RecipeState(String name, RequirementVector requirements, int sequence) {
+      this.name = name;
+      this.sequence = sequence;
+      this.requirements = requirements;
+      this.satisfied = new boolean[requirements.size()];
+      this.satisfiedCount = 0;
+      if (satisfied.length == 0) {
+        availableRecipes.add(this);
+      }
+    }
+
+    private synchronized void update(int index, double total) {
+      boolean nowSatisfied = total >= requirements.amount(index);
+      if (nowSatisfied == satisfied[index]) {
+        return;
+      }
+      satisfied[index] = nowSatisfied;
+      satisfiedCount += nowSatisfied ? 1 : -1;
+      if (satisfiedCount == satisfied.length) {
+        availableRecipes.add(this);
+      } else {
+        availableRecipes.remove(this);
+      }
+    }
+  }
+}
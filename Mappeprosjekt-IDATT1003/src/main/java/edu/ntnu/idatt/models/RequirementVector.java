@@ -0,0 +1,186 @@
+package edu.ntnu.idatt.models;
+
+import java.util.Arrays;
+
+/**
+ * What a recipe needs from a storage, compiled to two parallel arrays: the grocery id of each
+ * distinct ingredient and the total amount of it the recipe uses. Ingredients listed more than
+ * once are summed into one entry. Amounts are in the ingredient's unit, which for every
+ * {@link Unit} is already the base unit the storage totals are kept in.
+ *
+ * <p>A vector is immutable and records the portions its amounts are for. When a recipe's amounts
+ * change, a new vector is compiled.</p>
+ */
+final class RequirementVector {
+
+  private final int[] groceryIds;
+  private final double[] amounts;
+  private final double portions;
+
+  private RequirementVector(int[] groceryIds, double[] amounts, double portions) {
+    this.groceryIds = groceryIds;
+    this.amounts = amounts;
+    this.portions = portions;
+  }
+
+  /**
+   * Compiles the ingredients of a recipe against the grocery ids of a storage.
+   *
+   * @param recipe      the recipe
+   * @param foodStorage the storage whose ids to use
+   * @return the requirement vector
+   */
+  static RequirementVector compile(Recipe recipe, FoodStorage foodStorage) {
+    // Amounts come from the base amounts, so they carry no drift from earlier rescaling
+    ScaledRecipe current = recipe.scaledTo(recipe.getPortions());
+    int[] groceryIds = new int[current.getIngredientCount()];
+    double[] amounts = new double[current.getIngredientCount()];
+    int size = 0;
+    for (int j = 0; j < current.getIngredientCount(); j++) {
+      int groceryId = foodStorage.groceryId(current.getIngredientName(j));
+      int i = 0;
+      while (i < size && groceryIds[i] != groceryId) {
+        i++;
+      }
+      if (i == size) {
+        groceryIds[size++] = groceryId;
+      }
+      amounts[i] += current.getAmount(j);
+    }
+    return new RequirementVector(Arrays.copyOf(groceryIds, size), Arrays.copyOf(amounts, size),
+        current.getPortions());
+  }
+
+  /**
+   * Returns the number of distinct ingredients.
+   *
+   * @return the number of entries
+   */
+  int size() {
+    return groceryIds.length;
+  }
+
+  /**
+   * Returns the grocery id of an entry.
+   *
+   * @param index the entry
+   * @return the grocery id
+   */
+  int groceryId(int index) {
+    return groceryIds[index];
+  }
+
+  /**
+   * Returns the amount an entry requires.
+   *
+   * @param index the entry
+   * @return the required amount
+   */
+  double amount(int index) {
+    return amounts[index];
+  }
+
+  /**
+   * Returns the number of portions the amounts are for.
+   *
+   * @return the number of portions
+   */
+  double portions() {
+    return portions;
+  }
+
+  /**
+   * Checks the vector, scaled by a factor, against the current totals of a storage. Takes no lock
+   * and allocates nothing.
+   *
+   * @param foodStorage the storage the vector was compiled against
+   * @param scale       the factor to multiply every amount by
+   * @return true if every grocery is in stock in the required amount
+   */
+  boolean isSatisfiedBy(FoodStorage foodStorage, double scale) {
+    for (int i = 0; i < groceryIds.length; i++) {
+      if (foodStorage.getTotalAmount(groceryIds[i]) < amounts[i] * scale) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Reads the current version of every grocery in the vector.
+   *
+   * @param foodStorage the storage the vector was compiled against
+   * @return the versions, in entry order
+   */
+  long[] versions(FoodStorage foodStorage) {
+    long[] versions = new long[groceryIds.length];
+    for (int i = 0; i < groceryIds.length; i++) {
+      versions[i] = foodStorage.groceryVersion(groceryIds[i]);
+    }
+    return versions;
+  }
+
+  /**
+   * Checks whether no grocery in the vector has changed since its versions were read.
+   *
+   * @param foodStorage the storage the vector was compiled against
+   * @param versions    versions returned by {@link #versions(FoodStorage)}
+   * @return true if every version is unchanged
+   */
+  boolean versionsMatch(FoodStorage foodStorage, long[] versions) {
+    for (int i = 0; i < groceryIds.length; i++) {
+      if (foodStorage.groceryVersion(groceryIds[i]) != versions[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks the vector against totals copied from a storage, such as
+   * {@link FoodStorage#snapshotTotals()}. Groceries beyond the end of the array count as out of
+   * stock.
+   *
+   * @param totals the total of each grocery, indexed by grocery id
+   * @return true if every grocery is in stock in the required amount
+   */
+  boolean isSatisfiedBy(double[] totals) {
+    for (int i = 0; i < groceryIds.length; i++) {
+      double total = groceryIds[i] < totals.length ? totals[groceryIds[i]] : 0.0;
+      if (total < amounts[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns how many portions the current totals of a storage allow, limited by the scarcest
+   * ingredient. Takes no lock and allocates nothing.
+   *
+   * @param foodStorage the storage the vector was compiled against
+   * @return the maximum number of portions, possibly fractional, or positive infinity if nothing
+   *         is required
+   */
+  double maxPortions(FoodStorage foodStorage) {
+    double batches = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < groceryIds.length; i++) {
+      if (amounts[i] > 0) {
+        batches = Math.min(batches, foodStorage.getTotalAmount(groceryIds[i]) / amounts[i]);
+      }
+    }
+    return batches * portions;
+  }
+
+  /**
+   * Removes the required amounts, scaled by a factor, from a storage as one atomic step.
+   *
+   * @param foodStorage the storage the vector was compiled against
+   * @param scale       the factor to multiply every amount by
+   * @throws IllegalArgumentException if any grocery is short
+   */
+  void withdrawFrom(FoodStorage foodStorage, double scale) {
+    // The storage only reads the arrays, so they can be passed without copying
+    foodStorage.removeAmounts(groceryIds, amounts, scale);
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ntnu.idatt.models;
+
+/**
+ * A recipe seen at a different number of portions. The view is a scale factor over the recipe's
+ * base amounts: nothing is copied when it is made, and each amount is computed when it is read.
+ * Views are immutable and unaffected by later {@link Recipe#setPortions(double)} calls.
+ */
+public final class ScaledRecipe {
+
+  private final Recipe recipe;
+  private final double portions;
+  private final double scale;
+
+  ScaledRecipe(Recipe recipe, double portions, double scale) {
+    this.recipe = recipe;
+    this.portions = portions;
+    this.scale = scale;
+  }
+
+  /**
+   * Returns the recipe this is a view of.
+   *
+   * @return the recipe
+   */
+  public Recipe getRecipe() {
+    return recipe;
+  }
+
+  /**
+   * Returns the number of portions of the view.
+   *
+   * @return the number of portions
+   */
+  public double getPortions() {
+    return portions;
+  }
+
+  /**
+   * Returns the number of ingredients.
+   *
+   * @return the number of ingredients
+   */
+  public int getIngredientCount() {
+    return recipe.getIngredients().size();
+  }
+
+  /**
+   * Returns the name of an ingredient.
+   *
+   * @param index the position of the ingredient in the recipe
+   * @return the name
+   */
+  public String getIngredientName(int index) {
+    return recipe.getIngredients().get(index).getName();
+  }
+
+  /**
+   * Returns the amount of an ingredient at the portions of the view.
+   *
+   * @param index the position of the ingredient in the recipe
+   * @return the scaled amount
+   */
+  public double getAmount(int index) {
+    return recipe.getBaseAmount(index) * scale;
+  }
+}
@@ -0,0 +1,168 @@
+package edu.ntnu.idatt.models;
+
+import java.util.Arrays;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Per-name queues of lot numbers in expiry order, with a running total per name, for the storages
+ * that keep lots by number rather than as {@link Grocery} objects. Withdrawals and the expiry
+ * sweep take lots from the front of a queue; new lots are placed by binary search.
+ *
+ * <p>The storage owns the lot data and tells the queues how to read a lot's expiry day and
+ * amount. Not thread-safe; the storage guards it with its own lock.</p>
+ */
+final class SlotQueues {
+
+  private final IntUnaryOperator expiryDay;
+  private final IntToDoubleFunction amount;
+
+  // Indexed by name id
+  private int[][] queues;
+  private int[] heads;
+  private int[] ends;
+  private double[] totals;
+
+  /**
+   * Creates empty queues.
+   *
+   * @param expiryDay reads the expiry epoch day of a lot
+   * @param amount    reads the amount of a lot
+   */
+  SlotQueues(IntUnaryOperator expiryDay, IntToDoubleFunction amount) {
+    this.expiryDay = expiryDay;
+    this.amount = amount;
+    this.queues = new int[64][];
+    this.heads = new int[64];
+    this.ends = new int[64];
+    this.totals = new double[64];
+  }
+
+  /**
+   * Makes room for a name id.
+   *
+   * @param nameId the name id
+   */
+  void ensureCapacity(int nameId) {
+    if (nameId < queues.length) {
+      return;
+    }
+    int capacity = Math.max(queues.length * 2, nameId + 1);
+    queues = Arrays.copyOf(queues, capacity);
+    heads = Arrays.copyOf(heads, capacity);
+    ends = Arrays.copyOf(ends, capacity);
+    totals = Arrays.copyOf(totals, capacity);
+  }
+
+  /**
+   * Inserts a lot into its name's queue after every lot with the same or an earlier expiry day,
+   * and adds its amount to the name's total.
+   *
+   * @param nameId the name id, with room made for it
+   * @param lot    the lot number
+   */
+  void enqueue(int nameId, int lot) {
+    int[] queue = queues[nameId];
+    int head = heads[nameId];
+    int end = ends[nameId];
+    if (queue == null) {
+      queue = new int[4];
+    } else if (end == queue.length) {
+      // Reclaim the consumed front before growing
+      int length = end - head;
+      int[] moved = length * 2 > queue.length ? new int[queue.length * 2] : queue;
+      System.arraycopy(queue, head, moved, 0, length);
+      queue = moved;
+      head = 0;
+      end = length;
+    }
+    int day = expiryDay.applyAsInt(lot);
+    int low = head;
+    int high = end;
+    while (low < high) {
+      int mid = (low + high) >>> 1;
+      if (expiryDay.applyAsInt(queue[mid]) <= day) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    System.arraycopy(queue, low, queue, low + 1, end - low);
+    queue[low] = lot;
+    queues[nameId] = queue;
+    heads[nameId] = head;
+    ends[nameId] = end + 1;
+    totals[nameId] += amount.applyAsDouble(lot);
+  }
+
+  /**
+   * Takes the oldest lot off a name's queue and subtracts its amount from the name's total. The
+   * caller frees the lot.
+   *
+   * @param nameId the name id, whose queue is not empty
+   * @return the lot number
+   */
+  int dequeueOldest(int nameId) {
+    int lot = queues[nameId][heads[nameId]++];
+    totals[nameId] -= amount.applyAsDouble(lot);
+    if (heads[nameId] == ends[nameId]) {
+      heads[nameId] = 0;
+      ends[nameId] = 0;
+      // Clear the rounding left over from many subtractions
+      totals[nameId] = 0.0;
+    }
+    return lot;
+  }
+
+  /**
+   * Returns the position of a name's oldest lot. Lots of a name sit at positions from
+   * {@code head(nameId)} up to but not including {@code end(nameId)}.
+   *
+   * @param nameId the name id, with room made for it
+   * @return the first position
+   */
+  int head(int nameId) {
+    return heads[nameId];
+  }
+
+  /**
+   * Returns the position after a name's newest lot.
+   *
+   * @param nameId the name id, with room made for it
+   * @return the end position
+   */
+  int end(int nameId) {
+    return ends[nameId];
+  }
+
+  /**
+   * Returns the lot at a position of a name's queue.
+   *
+   * @param nameId   the name id
+   * @param position a position from {@link #head(int)} to before {@link #end(int)}
+   * @return the lot number
+   */
+  int lotAt(int nameId, int position) {
+    return queues[nameId][position];
+  }
+
+  /**
+   * Returns the running total of a name.
+   *
+   * @param nameId the name id, with room made for it
+   * @return the total amount
+   */
+  double total(int nameId) {
+    return totals[nameId];
+  }
+
+  /**
+   * Adjusts the running total of a name after a lot's amount was changed in place.
+   *
+   * @param nameId the name id
+   * @param delta  the change in amount
+   */
+  void addToTotal(int nameId, double delta) {
+    totals[nameId] += delta;
+  }
+}
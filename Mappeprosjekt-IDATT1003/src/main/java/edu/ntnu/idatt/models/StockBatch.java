@@ -0,0 +1,136 @@
+package edu.ntnu.idatt.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A set of stock changes to apply to a {@link FoodStorage} in one step with
+ * {@link FoodStorage#apply(StockBatch)}, such as everything sold at the end of a service.
+ *
+ * <p>Changes are grouped by grocery name as they are added, and each change is validated on the
+ * way in, so a batch that has been built holds no malformed entries. Within one name, the lots
+ * added are stored before the withdrawals are taken, and all withdrawals of a name are taken as
+ * one amount.</p>
+ */
+public final class StockBatch {
+
+  /**
+   * The changes to one grocery.
+   */
+  static final class Changes {
+
+    private final List<Grocery> additions = new ArrayList<>();
+    private double withdrawal;
+
+    /**
+     * Returns the lots to add, in the order they were given.
+     *
+     * @return the lots
+     */
+    List<Grocery> additions() {
+      return additions;
+    }
+
+    /**
+     * Returns the total amount to withdraw.
+     *
+     * @return the amount, 0.0 if nothing is withdrawn
+     */
+    double withdrawal() {
+      return withdrawal;
+    }
+
+    /**
+     * Returns the total amount added.
+     *
+     * @return the summed amount of the lots to add
+     */
+    double addedAmount() {
+      double added = 0.0;
+      for (Grocery grocery : additions) {
+        added += grocery.getAmount();
+      }
+      return added;
+    }
+  }
+
+  private final Map<String, Changes> changes;
+  private final Set<Grocery> added;
+
+  /**
+   * Creates an empty batch.
+   */
+  public StockBatch() {
+    this.changes = new LinkedHashMap<>();
+    this.added = Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+
+  /**
+   * Adds a lot to store.
+   *
+   * @param grocery the lot
+   * @return this batch
+   * @throws IllegalArgumentException if the grocery is null, already stored or already in this
+   *                                  batch
+   */
+  public StockBatch add(Grocery grocery) {
+    if (grocery == null) {
+      throw new IllegalArgumentException("grocery cannot be null");
+    }
+    if (grocery.getStorage() != null) {
+      throw new IllegalArgumentException("grocery is already in a storage");
+    }
+    if (!added.add(grocery)) {
+      throw new IllegalArgumentException("grocery is already in the batch");
+    }
+    changesOf(grocery.getName()).additions.add(grocery);
+    return this;
+  }
+
+  /**
+   * Adds an amount to withdraw from a grocery, oldest lots first. Amounts withdrawn from the same
+   * grocery more than once are summed.
+   *
+   * @param groceryName the name of the grocery
+   * @param amount      the amount to withdraw
+   * @return this batch
+   * @throws IllegalArgumentException if the name is null or empty, or the amount not positive
+   */
+  public StockBatch withdraw(String groceryName, double amount) {
+    if (groceryName == null || groceryName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Grocery name cannot be null or empty");
+    }
+    if (!(amount > 0)) {
+      throw new IllegalArgumentException("Amount must be greater than 0");
+    }
+    changesOf(groceryName).withdrawal += amount;
+    return this;
+  }
+
+  /**
+   * Checks whether the batch holds no changes.
+   *
+   * @return true if nothing has been added or withdrawn
+   */
+  public boolean isEmpty() {
+    return changes.isEmpty();
+  }
+
+  /**
+   * Returns the changes keyed by grocery name, in the order the names first appeared.
+   *
+   * @return the changes
+   */
+  Map<String, Changes> changesByName() {
+    return changes;
+  }
+
+  private Changes changesOf(String groceryName) {
+    return changes.computeIfAbsent(groceryName, n -> new Changes());
+  }
+}
@@ -0,0 +1,356 @@
+package edu.ntnu.idatt.models;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Records how the contents of a {@link FoodStorage} change over time, so questions such as "how
+ * much milk was there, and what was about to expire, at 06:00 last Tuesday" can be answered
+ * later without keeping copies of the storage.
+ *
+ * <p>Every lot event the storage reports is stored as a delta: the change in amount and in value
+ * of one grocery at one expiry day, stamped with the time read from an injected {@link Clock}.
+ * The deltas are kept in parallel primitive arrays, 32 bytes each. Every
+ * {@link Settings#checkpointInterval()} deltas, the running total of every grocery and the
+ * running value by expiry day are saved as a checkpoint. A query as of a time finds the latest
+ * checkpoint before it and adds the deltas recorded since, so it never replays more than one
+ * interval.</p>
+ *
+ * <p>Queries ask about times since the history was created. The lots already stored then are
+ * recorded as added at that moment.</p>
+ */
+public final class StorageHistory implements StorageListener {
+
+  /**
+   * How often the history saves a checkpoint.
+   *
+   * @param checkpointInterval the number of deltas between checkpoints
+   */
+  public record Settings(int checkpointInterval) {
+
+    /**
+     * Validates the settings.
+     *
+     * @throws IllegalArgumentException if the interval is not positive
+     */
+    public Settings {
+      if (checkpointInterval <= 0) {
+        throw new IllegalArgumentException("Checkpoint interval must be greater than 0");
+      }
+    }
+
+    /**
+     * Returns settings that keep a query under a few thousand deltas: a checkpoint every 4096.
+     *
+     * @return the default settings
+     */
+    public static Settings defaults() {
+      return new Settings(4096);
+    }
+  }
+
+  /**
+   * What the history last recorded about a stored lot.
+   */
+  private static final class RecordedLot {
+
+    private final int groceryId;
+    private final double unitPrice;
+    private double amount;
+    private int expiryDay;
+
+    private RecordedLot(int groceryId, double unitPrice, double amount, int expiryDay) {
+      this.groceryId = groceryId;
+      this.unitPrice = unitPrice;
+      this.amount = amount;
+      this.expiryDay = expiryDay;
+    }
+  }
+
+  /**
+   * The running sums after the first {@code eventIndex} deltas.
+   *
+   * @param eventIndex  the number of deltas included
+   * @param totals      the total of every grocery, indexed by grocery id
+   * @param days        the expiry days holding value, ascending
+   * @param valueBefore the value expiring before each of those days, with one extra entry for
+   *                    all of them
+   */
+  private record Checkpoint(int eventIndex, double[] totals, int[] days, double[] valueBefore) {
+
+    double valueBefore(long day) {
+      int index = Arrays.binarySearch(days, (int) Math.max(Integer.MIN_VALUE,
+          Math.min(Integer.MAX_VALUE, day)));
+      return valueBefore[index < 0 ? -index - 1 : index];
+    }
+  }
+
+  // Sums closer to 0 than this are rounding drift
+  private static final double EPSILON = 1e-9;
+
+  private final FoodStorage foodStorage;
+  private final Clock clock;
+  private final int checkpointInterval;
+  private final long startMillis;
+
+  // Guarded by this history's monitor
+  private final Map<Long, RecordedLot> lots;
+  private final List<Checkpoint> checkpoints;
+  private final TreeMap<Integer, Double> valueByDay;
+  private double[] totals;
+  private long[] times;
+  private int[] groceryIds;
+  private int[] expiryDays;
+  private double[] amountDeltas;
+  private double[] valueDeltas;
+  private int size;
+  private long lastMillis;
+
+  /**
+   * Creates a history of a storage, starting now, and records the lots it already holds.
+   *
+   * @param foodStorage the storage to record
+   * @param clock       the clock deltas are stamped with
+   * @param settings    the checkpoint interval
+   * @throws IllegalArgumentException if any argument is null
+   */
+  public StorageHistory(FoodStorage foodStorage, Clock clock, Settings settings) {
+    if (foodStorage == null || clock == null || settings == null) {
+      throw new IllegalArgumentException("storage, clock and settings cannot be null");
+    }
+    this.foodStorage = foodStorage;
+    this.clock = clock;
+    this.checkpointInterval = settings.checkpointInterval();
+    this.startMillis = clock.millis();
+    this.lastMillis = startMillis;
+    this.lots = new HashMap<>();
+    this.checkpoints = new ArrayList<>();
+    this.valueByDay = new TreeMap<>();
+    this.totals = new double[64];
+    this.times = new long[1024];
+    this.groceryIds = new int[1024];
+    this.expiryDays = new int[1024];
+    this.amountDeltas = new double[1024];
+    this.valueDeltas = new double[1024];
+    checkpoints.add(new Checkpoint(0, new double[0], new int[0], new double[1]));
+    // Listen first so no lot added during the scan is missed; lots already recorded are skipped
+    foodStorage.addListener(this);
+    foodStorage.getGroceries().values().forEach(stored -> stored.forEach(lot -> {
+      if (lot.getStorage() == foodStorage) {
+        lotAdded(lot);
+      }
+    }));
+  }
+
+  /**
+   * Returns the total amount of a grocery at a point in time.
+   *
+   * @param groceryName the name of the grocery
+   * @param time        the point in time
+   * @return the total amount stored at that time, 0.0 if there was none
+   * @throws IllegalArgumentException if the name is null or empty, the time is null or the time
+   *                                  is before the history started
+   */
+  public double getTotalAmount(String groceryName, Instant time) {
+    int id = foodStorage.existingGroceryId(groceryName);
+    synchronized (this) {
+      int end = eventsUntil(time);
+      if (id < 0) {
+        return 0.0;
+      }
+      Checkpoint checkpoint = checkpointBefore(end);
+      double total = id < checkpoint.totals().length ? checkpoint.totals()[id] : 0.0;
+      for (int i = checkpoint.eventIndex(); i < end; i++) {
+        if (groceryIds[i] == id) {
+          total += amountDeltas[i];
+        }
+      }
+      // Rounding can leave a tiny total once every lot has been removed
+      return snapToZero(total);
+    }
+  }
+
+  /**
+   * Returns the value of the groceries stored at a point in time that expire before a date, as
+   * {@link FoodStorage#valueOfExpiredGroceries(LocalDate)} would have answered then.
+   *
+   * @param date the cutoff date
+   * @param time the point in time
+   * @return the summed amount times unit price of those groceries
+   * @throws IllegalArgumentException if the date or time is null or the time is before the
+   *                                  history started
+   */
+  public double valueOfExpiredGroceries(LocalDate date, Instant time) {
+    if (date == null) {
+      throw new IllegalArgumentException("date cannot be null");
+    }
+    long cutoff = date.toEpochDay();
+    synchronized (this) {
+      int end = eventsUntil(time);
+      Checkpoint checkpoint = checkpointBefore(end);
+      double value = checkpoint.valueBefore(cutoff);
+      for (int i = checkpoint.eventIndex(); i < end; i++) {
+        if (expiryDays[i] < cutoff) {
+          value += valueDeltas[i];
+        }
+      }
+      return snapToZero(value);
+    }
+  }
+
+  /**
+   * Returns the number of deltas recorded so far.
+   *
+   * @return the number of deltas
+   */
+  public synchronized int size() {
+    return size;
+  }
+
+  @Override
+  public void lotAdded(Grocery lot) {
+    // Looked up before taking the monitor, which every grocery's changes pass through
+    int groceryId = foodStorage.groceryId(lot.getName());
+    synchronized (this) {
+      if (lots.containsKey(lot.getLotId())) {
+        return;
+      }
+      RecordedLot recorded = new RecordedLot(groceryId, lot.getUnitPrice(), lot.getAmount(),
+          (int) lot.getExpiryDate().toEpochDay());
+      lots.put(lot.getLotId(), recorded);
+      record(now(), recorded, recorded.amount);
+    }
+  }
+
+  @Override
+  public synchronized void lotAmountChanged(Grocery lot) {
+    RecordedLot recorded = lots.get(lot.getLotId());
+    if (recorded != null) {
+      double delta = lot.getAmount() - recorded.amount;
+      recorded.amount = lot.getAmount();
+      record(now(), recorded, delta);
+    }
+  }
+
+  @Override
+  public synchronized void lotRemoved(Grocery lot) {
+    RecordedLot recorded = lots.remove(lot.getLotId());
+    if (recorded != null) {
+      record(now(), recorded, -recorded.amount);
+    }
+  }
+
+  @Override
+  public synchronized void lotExpiryChanged(Grocery lot) {
+    RecordedLot recorded = lots.get(lot.getLotId());
+    if (recorded != null) {
+      long now = now();
+      record(now, recorded, -recorded.amount);
+      recorded.expiryDay = (int) lot.getExpiryDate().toEpochDay();
+      record(now, recorded, recorded.amount);
+    }
+  }
+
+  /**
+   * Reads the clock, never going back in time, so the deltas stay sorted by time.
+   */
+  private long now() {
+    lastMillis = Math.max(lastMillis, clock.millis());
+    return lastMillis;
+  }
+
+  /**
+   * Appends a delta for a lot and updates the running sums, saving a checkpoint when an interval
+   * is full.
+   */
+  private void record(long time, RecordedLot lot, double amountDelta) {
+    if (size == times.length) {
+      int capacity = size * 2;
+      times = Arrays.copyOf(times, capacity);
+      groceryIds = Arrays.copyOf(groceryIds, capacity);
+      expiryDays = Arrays.copyOf(expiryDays, capacity);
+      amountDeltas = Arrays.copyOf(amountDeltas, capacity);
+      valueDeltas = Arrays.copyOf(valueDeltas, capacity);
+    }
+    double valueDelta = amountDelta * lot.unitPrice;
+    times[size] = time;
+    groceryIds[size] = lot.groceryId;
+    expiryDays[size] = lot.expiryDay;
+    amountDeltas[size] = amountDelta;
+    valueDeltas[size] = valueDelta;
+    size++;
+
+    if (lot.groceryId >= totals.length) {
+      totals = Arrays.copyOf(totals, Math.max(totals.length * 2, lot.groceryId + 1));
+    }
+    totals[lot.groceryId] += amountDelta;
+    double dayValue = valueByDay.getOrDefault(lot.expiryDay, 0.0) + valueDelta;
+    if (Math.abs(dayValue) < EPSILON) {
+      valueByDay.remove(lot.expiryDay);
+    } else {
+      valueByDay.put(lot.expiryDay, dayValue);
+    }
+    if (size % checkpointInterval == 0) {
+      checkpoints.add(checkpoint());
+    }
+  }
+
+  private Checkpoint checkpoint() {
+    int[] days = new int[valueByDay.size()];
+    double[] valueBefore = new double[days.length + 1];
+    int index = 0;
+    for (Map.Entry<Integer, Double> entry : valueByDay.entrySet()) {
+      days[index] = entry.getKey();
+      valueBefore[index + 1] = valueBefore[index] + entry.getValue();
+      index++;
+    }
+    int groceries = totals.length;
+    while (groceries > 0 && totals[groceries - 1] == 0.0) {
+      groceries--;
+    }
+    return new Checkpoint(size, Arrays.copyOf(totals, groceries), days, valueBefore);
+  }
+
+  /**
+   * Returns the number of deltas recorded at or before a time.
+   */
+  private int eventsUntil(Instant time) {
+    if (time == null) {
+      throw new IllegalArgumentException("time cannot be null");
+    }
+    long millis = time.toEpochMilli();
+    if (millis < startMillis) {
+      throw new IllegalArgumentException("Time cannot be before the history started");
+    }
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (times[middle] <= millis) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low;
+  }
+
+  private Checkpoint checkpointBefore(int eventIndex) {
+    return checkpoints.get(eventIndex / checkpointInterval);
+  }
+
+  /**
+   * Rounds a sum to 0 when it is within rounding drift of it. Real negative values, from lots
+   * with negative unit prices, are kept.
+   */
+  private static double snapToZero(double value) {
+    return Math.abs(value) < EPSILON ? 0.0 : value;
+  }
+}
@@ -0,0 +1,66 @@
+package edu.ntnu.idatt.models;
+
+/**
+ * Receives notifications when the contents of a {@link FoodStorage} change. Every method does
+ * nothing by default, so a listener only overrides the events it cares about.
+ *
+ * <p>Notifications for one grocery arrive in the order the changes were made, while its lock is
+ * held.</p>
+ */
+public interface StorageListener {
+
+  /**
+   * Called after the total amount of a grocery has changed.
+   *
+   * @param groceryName the name of the grocery
+   * @param total       the new total amount, 0.0 if none is left
+   */
+  default void totalChanged(String groceryName, double total) {
+  }
+
+  /**
+   * Called after the total amount of a grocery has changed, along with the grocery's id in the
+   * storage. Listeners that keep per-grocery state in arrays can override this one instead. By
+   * default it calls {@link #totalChanged(String, double)}.
+   *
+   * @param groceryId   the id of the grocery, see {@link FoodStorage#groceryId(String)}
+   * @param groceryName the name of the grocery
+   * @param total       the new total amount, 0.0 if none is left
+   */
+  default void totalChanged(int groceryId, String groceryName, double total) {
+    totalChanged(groceryName, total);
+  }
+
+  /**
+   * Called after a lot has been added. The lot already has its lot id.
+   *
+   * @param lot the added lot
+   */
+  default void lotAdded(Grocery lot) {
+  }
+
+  /**
+   * Called after the amount of a stored lot has changed without the lot being removed.
+   *
+   * @param lot the lot, holding its new amount
+   */
+  default void lotAmountChanged(Grocery lot) {
+  }
+
+  /**
+   * Called after a lot has left the storage, whether used up, swept as expired or removed
+   * directly.
+   *
+   * @param lot the removed lot, holding the amount it had when it left
+   */
+  default void lotRemoved(Grocery lot) {
+  }
+
+  /**
+   * Called after a stored lot has been given a new expiry date.
+   *
+   * @param lot the lot, holding its new expiry date
+   */
+  default void lotExpiryChanged(Grocery lot) {
+  }
+}
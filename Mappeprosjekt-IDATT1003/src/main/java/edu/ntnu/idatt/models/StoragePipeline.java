@@ -0,0 +1,491 @@
+package edu.ntnu.idatt.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sends every change to a {@link FoodStorage} and its {@link CookBook} through one writer
+ * thread, and serves reads from the totals the writer last published.
+ *
+ * <p>Callers put commands on a bounded queue and get a {@link CompletableFuture} back; a full
+ * queue makes callers wait, so a burst cannot outrun the writer without limit. The writer takes
+ * up to {@link Settings#maxBatchSize()} queued commands at a time. Consecutive additions and
+ * withdrawals are checked one by one against the stock the batch leaves so far, so each command
+ * succeeds or fails on its own, and the accepted ones are applied together as one
+ * {@link StockBatch}. Locking, index upkeep and listener work such as journaling are therefore
+ * paid once per batch rather than once per command. A stock batch stores its additions before it
+ * withdraws, so an addition queued after a withdrawal of the same grocery starts a new batch;
+ * the withdrawal then takes the lots stored before it, as it would on its own. Other commands,
+ * like preparing a recipe, run in queue order between those groups.</p>
+ *
+ * <p>After each batch the writer publishes a new copy of the totals, and only then completes the
+ * batch's futures, so a caller whose future has completed reads its own change. Reads never wait
+ * for the writer. A batch of additions and withdrawals only re-reads the totals it touched; one
+ * that ran other commands copies every total from the storage.</p>
+ *
+ * <p>The checks assume the pipeline is the storage's only writer. If another thread changes the
+ * storage and a grouped batch no longer fits, its commands are applied one at a time
+ * instead.</p>
+ *
+ * <p>Any exception a command ends in, including one thrown by a storage listener, fails that
+ * command's future and leaves the writer running. If a group of additions and withdrawals ends in
+ * anything but an {@link IllegalArgumentException}, the storage may hold only part of it, so
+ * every command in the group fails with that exception and none is retried.</p>
+ */
+public final class StoragePipeline implements AutoCloseable {
+
+  /**
+   * Queue and batch sizes.
+   *
+   * @param queueCapacity the number of commands that can wait before callers block
+   * @param maxBatchSize  the largest number of commands applied together
+   */
+  public record Settings(int queueCapacity, int maxBatchSize) {
+
+    /**
+     * Validates the settings.
+     *
+     * @throws IllegalArgumentException if any value is not positive
+     */
+    public Settings {
+      if (queueCapacity <= 0 || maxBatchSize <= 0) {
+        throw new IllegalArgumentException("Pipeline settings must be greater than 0");
+      }
+    }
+
+    /**
+     * Returns settings suitable for interactive use: up to 4096 waiting commands, applied up to
+     * 256 at a time.
+     *
+     * @return the default settings
+     */
+    public static Settings defaults() {
+      return new Settings(4096, 256);
+    }
+  }
+
+  // Puts the writer to rest once every command queued before it has been applied
+  private static final Command STOP = new Barrier(null);
+
+  private final FoodStorage foodStorage;
+  private final CookBook cookBook;
+  private final Settings settings;
+  private final BlockingQueue<Command> queue;
+  private final Thread writer;
+  // Submitters hold the read lock while queueing, so close sees every command queued before it
+  private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+  private volatile double[] published;
+  private boolean closed;
+
+  private StoragePipeline(FoodStorage foodStorage, CookBook cookBook, Settings settings) {
+    this.foodStorage = foodStorage;
+    this.cookBook = cookBook;
+    this.settings = settings;
+    this.queue = new ArrayBlockingQueue<>(settings.queueCapacity());
+    this.published = foodStorage.snapshotTotals();
+    this.writer = new Thread(this::writeLoop, "storage-pipeline-writer");
+    this.writer.setDaemon(true);
+  }
+
+  /**
+   * Starts a pipeline over a storage and a cookbook that cooks from it.
+   *
+   * @param foodStorage the storage to change
+   * @param cookBook    the cookbook over the storage
+   * @param settings    the queue and batch sizes
+   * @return the running pipeline
+   * @throws IllegalArgumentException if any argument is null
+   */
+  public static StoragePipeline start(FoodStorage foodStorage, CookBook cookBook,
+      Settings settings) {
+    if (foodStorage == null || cookBook == null || settings == null) {
+      throw new IllegalArgumentException("storage, cookbook and settings cannot be null");
+    }
+    StoragePipeline pipeline = new StoragePipeline(foodStorage, cookBook, settings);
+    pipeline.writer.start();
+    return pipeline;
+  }
+
+  /**
+   * Queues a lot to add.
+   *
+   * @param grocery the lot
+   * @return a future completed once the lot is stored and visible to reads
+   * @throws IllegalArgumentException if the grocery is null
+   */
+  public CompletableFuture<Void> addGrocery(Grocery grocery) {
+    if (grocery == null) {
+      throw new IllegalArgumentException("grocery cannot be null");
+    }
+    return submit(new Addition(grocery));
+  }
+
+  /**
+   * Queues a withdrawal, taken from the oldest lots first.
+   *
+   * @param groceryName the name of the grocery
+   * @param amount      the amount to remove
+   * @return a future completed once the amount is removed, or failed with an
+   *         {@link IllegalArgumentException} if there was not enough of the grocery
+   * @throws IllegalArgumentException if the name is null or empty, or the amount not positive
+   */
+  public CompletableFuture<Void> removeAmount(String groceryName, double amount) {
+    if (groceryName == null || groceryName.trim().isEmpty()) {
+      throw new IllegalArgumentException("Grocery name cannot be null or empty");
+    }
+    if (!(amount > 0)) {
+      throw new IllegalArgumentException("Amount must be greater than 0");
+    }
+    return submit(new Withdrawal(groceryName, amount));
+  }
+
+  /**
+   * Queues a batch to apply as a whole, see {@link FoodStorage#apply(StockBatch)}. The batch must
+   * not be changed after it is queued.
+   *
+   * @param batch the changes
+   * @return a future completed once every change is made, or failed if none was
+   * @throws IllegalArgumentException if the batch is null
+   */
+  public CompletableFuture<Void> apply(StockBatch batch) {
+    if (batch == null) {
+      throw new IllegalArgumentException("batch cannot be null");
+    }
+    return submit(new Barrier(() -> foodStorage.apply(batch)));
+  }
+
+  /**
+   * Queues the preparation of a recipe, see {@link CookBook#prepareRecipe(String)}.
+   *
+   * @param recipeName the name of the recipe
+   * @return a future completed once the ingredients are removed, or failed if the recipe does
+   *         not exist or ingredients are insufficient
+   * @throws IllegalArgumentException if the name is null
+   */
+  public CompletableFuture<Void> prepareRecipe(String recipeName) {
+    if (recipeName == null) {
+      throw new IllegalArgumentException("Recipe name cannot be null");
+    }
+    return submit(new Barrier(() -> cookBook.prepareRecipe(recipeName)));
+  }
+
+  /**
+   * Returns the total amount of a grocery as of the last published batch.
+   *
+   * @param groceryName the name of the grocery
+   * @return the total, 0.0 if there is none
+   */
+  public double getTotalAmount(String groceryName) {
+    double[] totals = published;
+    int id = foodStorage.existingGroceryId(groceryName);
+    return id >= 0 && id < totals.length ? totals[id] : 0.0;
+  }
+
+  /**
+   * Checks a recipe against the totals of the last published batch.
+   *
+   * @param recipeName the name of the recipe
+   * @return true if all ingredients were available
+   * @throws IllegalArgumentException if the recipe does not exist
+   */
+  public boolean checkRecipeAvailability(String recipeName) {
+    return cookBook.checkRecipeAvailability(recipeName, published);
+  }
+
+  /**
+   * Applies every command queued so far and stops the writer. Commands queued afterwards are
+   * rejected. If the writer was interrupted, the commands it left were failed instead.
+   */
+  @Override
+  public synchronized void close() {
+    closeLock.writeLock().lock();
+    try {
+      if (closed) {
+        return;
+      }
+      closed = true;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    try {
+      queue.put(STOP);
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private CompletableFuture<Void> submit(Command command) {
+    // A full queue keeps close waiting too, but the writer keeps draining it until the stop marker
+    closeLock.readLock().lock();
+    try {
+      if (closed) {
+        throw new IllegalStateException("Storage pipeline is closed");
+      }
+      queue.put(command);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      command.future.completeExceptionally(e);
+    } finally {
+      closeLock.readLock().unlock();
+    }
+    return command.future;
+  }
+
+  private void writeLoop() {
+    List<Command> drained = new ArrayList<>(settings.maxBatchSize());
+    boolean running = true;
+    while (running) {
+      try {
+        drained.add(queue.take());
+      } catch (InterruptedException e) {
+        abandon(e);
+        return;
+      }
+      queue.drainTo(drained, settings.maxBatchSize() - 1);
+      try {
+        running = applyBatch(drained);
+      } catch (RuntimeException | Error e) {
+        running = !drained.contains(STOP);
+        fail(drained, e);
+      }
+      drained.clear();
+    }
+  }
+
+  /**
+   * Stops taking commands after the writer was interrupted: rejects new ones as if the pipeline
+   * were closed and fails every command still queued, so no caller waits on a future forever.
+   */
+  private void abandon(InterruptedException cause) {
+    IllegalStateException failure =
+        new IllegalStateException("Storage pipeline writer was interrupted", cause);
+    List<Command> left = new ArrayList<>();
+    // A submitter may be waiting on a full queue while holding the read lock
+    while (!closeLock.writeLock().tryLock()) {
+      queue.drainTo(left);
+      Thread.yield();
+    }
+    try {
+      closed = true;
+    } finally {
+      closeLock.writeLock().unlock();
+    }
+    queue.drainTo(left);
+    fail(left, failure);
+  }
+
+  /**
+   * Fails the commands of a batch that ended in an unexpected exception, and republishes every
+   * total since the batch may have been applied in part.
+   */
+  private void fail(List<Command> commands, Throwable cause) {
+    try {
+      published = foodStorage.snapshotTotals();
+    } finally {
+      for (Command command : commands) {
+        command.future.completeExceptionally(
+            command.failure != null ? command.failure : cause);
+      }
+    }
+  }
+
+  /**
+   * Applies drained commands in order, publishes the totals and completes the futures. The stop
+   * marker is always the last command queued.
+   *
+   * @return false if the stop marker was reached
+   */
+  private boolean applyBatch(List<Command> commands) {
+    Group group = new Group();
+    Set<String> touched = new HashSet<>();
+    boolean barrierRan = false;
+    boolean running = true;
+    for (Command command : commands) {
+      if (command == STOP) {
+        running = false;
+      } else if (command instanceof Barrier barrier) {
+        group.flush(touched);
+        group = new Group();
+        barrierRan = true;
+        try {
+          barrier.action.run();
+        } catch (RuntimeException e) {
+          barrier.failure = e;
+        }
+      } else {
+        if (group.mustFollow(command)) {
+          group.flush(touched);
+          group = new Group();
+        }
+        group.offer(command);
+      }
+    }
+    group.flush(touched);
+    published = barrierRan ? foodStorage.snapshotTotals() : withTotalsOf(touched);
+    for (Command command : commands) {
+      if (command == STOP) {
+        continue;
+      }
+      if (command.failure == null) {
+        command.future.complete(null);
+      } else {
+        command.future.completeExceptionally(command.failure);
+      }
+    }
+    return running;
+  }
+
+  /**
+   * Copies the published totals with the current totals of some groceries written in.
+   */
+  private double[] withTotalsOf(Set<String> groceryNames) {
+    double[] totals = published;
+    if (groceryNames.isEmpty()) {
+      return totals;
+    }
+    int[] ids = new int[groceryNames.size()];
+    int length = totals.length;
+    int i = 0;
+    for (String groceryName : groceryNames) {
+      // Names of failed withdrawals may never have been stored; they keep no total
+      ids[i] = foodStorage.existingGroceryId(groceryName);
+      length = Math.max(length, ids[i] + 1);
+      i++;
+    }
+    totals = Arrays.copyOf(totals, length);
+    for (int id : ids) {
+      if (id >= 0) {
+        totals[id] = foodStorage.getTotalAmount(id);
+      }
+    }
+    return totals;
+  }
+
+  /**
+   * Consecutive additions and withdrawals, checked against the stock they leave and applied as
+   * one stock batch.
+   */
+  private final class Group {
+
+    private final StockBatch batch = new StockBatch();
+    private final List<Command> members = new ArrayList<>();
+    // What the accepted commands add to or take from each grocery
+    private final Map<String, Double> pending = new HashMap<>();
+    private final Set<String> withdrawn = new HashSet<>();
+
+    /**
+     * Tells whether a command has to wait for this group to be applied: an addition of a grocery
+     * the group withdraws from would otherwise be stored before the withdrawal runs.
+     */
+    boolean mustFollow(Command command) {
+      return command instanceof Addition addition
+          && withdrawn.contains(addition.grocery.getName());
+    }
+
+    void offer(Command command) {
+      try {
+        if (command instanceof Addition addition) {
+          batch.add(addition.grocery);
+          pending.merge(addition.grocery.getName(), addition.grocery.getAmount(), Double::sum);
+        } else {
+          Withdrawal withdrawal = (Withdrawal) command;
+          double available = foodStorage.getTotalAmount(withdrawal.groceryName)
+              + pending.getOrDefault(withdrawal.groceryName, 0.0);
+          if (available < withdrawal.amount) {
+            throw new IllegalArgumentException(
+                "Amount to remove cannot be larger than the total amount of "
+                    + withdrawal.groceryName);
+          }
+          batch.withdraw(withdrawal.groceryName, withdrawal.amount);
+          pending.merge(withdrawal.groceryName, -withdrawal.amount, Double::sum);
+          withdrawn.add(withdrawal.groceryName);
+        }
+        members.add(command);
+      } catch (RuntimeException e) {
+        command.failure = e;
+      }
+    }
+
+    void flush(Set<String> touched) {
+      if (batch.isEmpty()) {
+        return;
+      }
+      touched.addAll(pending.keySet());
+      try {
+        foodStorage.apply(batch);
+      } catch (IllegalArgumentException e) {
+        // The storage was changed behind the pipeline's back; fall back to one call each
+        for (Command command : members) {
+          try {
+            if (command instanceof Addition addition) {
+              foodStorage.addGrocery(addition.grocery);
+            } else {
+              Withdrawal withdrawal = (Withdrawal) command;
+              foodStorage.removeAmount(withdrawal.groceryName, withdrawal.amount);
+            }
+          } catch (RuntimeException failure) {
+            command.failure = failure;
+          }
+        }
+      } catch (RuntimeException e) {
+        // Part of the batch may be stored, so retrying any of it could apply it twice
+        for (Command command : members) {
+          command.failure = e;
+        }
+      }
+    }
+  }
+
+  /**
+   * A queued change and the future its caller waits on.
+   */
+  private abstract static class Command {
+
+    final CompletableFuture<Void> future = new CompletableFuture<>();
+    // Set by the writer, which completes the future once the batch is published
+    Throwable failure;
+  }
+
+  private static final class Addition extends Command {
+
+    final Grocery grocery;
+
+    Addition(Grocery grocery) {
+      this.grocery = grocery;
+    }
+  }
+
+  private static final class Withdrawal extends Command {
+
+    final String groceryName;
+    final double amount;
+
+    Withdrawal(String groceryName, double amount) {
+      this.groceryName = groceryName;
+      this.amount = amount;
+    }
+  }
+
+  /**
+   * A command that runs on its own, between groups of additions and withdrawals.
+   */
+  private static final class Barrier extends Command {
+
+    final Runnable action;
+
+    Barrier(Runnable action) {
+      this.action = action;
+    }
+  }
+}
@@ -0,0 +1,189 @@
+package edu.ntnu.idatt.models;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * The contents of a {@link FoodStorage} as of one instant, for reports that must see a
+ * consistent view while the storage keeps changing. Taken with {@link FoodStorage#snapshot()}.
+ *
+ * <p>Taking a snapshot copies nothing. The first time a grocery is changed after the snapshot was
+ * taken, the writer first copies that grocery's lots into the snapshot, so every later change of
+ * it leaves the snapshot alone (copy-on-write). Groceries the report reaches first are copied by
+ * the report instead. Either way each grocery is copied at most once per snapshot, and writers
+ * only ever wait for the copy of the grocery they are changing.</p>
+ *
+ * <p>Lots returned by a snapshot are detached copies: they have the lot id of the stored lot but
+ * belong to no storage. Close the snapshot when the report is done so writers stop copying for
+ * it; a snapshot that is dropped without closing is released once it is garbage collected.</p>
+ */
+public final class StorageSnapshot implements AutoCloseable {
+
+  private final FoodStorage foodStorage;
+  // The lots of each grocery at the instant of the snapshot, indexed by id, once copied
+  private final AtomicReferenceArray<List<Grocery>> frozen;
+  private volatile boolean closed;
+
+  StorageSnapshot(FoodStorage foodStorage, int groceryCount) {
+    this.foodStorage = foodStorage;
+    this.frozen = new AtomicReferenceArray<>(groceryCount);
+  }
+
+  /**
+   * Returns the total amount of a grocery.
+   *
+   * @param groceryName the name of the grocery
+   * @return the total amount, 0.0 if there was none
+   */
+  public double getTotalAmount(String groceryName) {
+    int id = foodStorage.existingGroceryId(groceryName);
+    double total = 0.0;
+    for (Grocery lot : lotsOf(id)) {
+      total += lot.getAmount();
+    }
+    return total;
+  }
+
+  /**
+   * Returns the groceries grouped by name, each list in expiry order, oldest first.
+   *
+   * @return grocery lists keyed by name
+   */
+  public Map<String, List<Grocery>> getGroceries() {
+    Map<String, List<Grocery>> groceries = new HashMap<>();
+    for (int id = 0; id < frozen.length(); id++) {
+      List<Grocery> lots = lotsOf(id);
+      if (!lots.isEmpty()) {
+        groceries.put(lots.getFirst().getName(), lots);
+      }
+    }
+    return groceries;
+  }
+
+  /**
+   * Returns all groceries that expired before a date, in expiry order.
+   *
+   * @param date the cutoff date
+   * @return a list of expired groceries
+   * @throws IllegalArgumentException if the date is null
+   */
+  public List<Grocery> expiredGroceries(LocalDate date) {
+    if (date == null) {
+      throw new IllegalArgumentException("date cannot be null");
+    }
+    List<Grocery> expired = new ArrayList<>();
+    for (int id = 0; id < frozen.length(); id++) {
+      for (Grocery lot : lotsOf(id)) {
+        if (!lot.getExpiryDate().isBefore(date)) {
+          break;
+        }
+        expired.add(lot);
+      }
+    }
+    expired.sort(Comparator.comparing(Grocery::getExpiryDate));
+    return expired;
+  }
+
+  /**
+   * Returns the value of all groceries that expired before a date.
+   *
+   * @param date the cutoff date
+   * @return the summed amount times unit price of the expired groceries
+   * @throws IllegalArgumentException if the date is null
+   */
+  public double valueOfExpiredGroceries(LocalDate date) {
+    double totalValue = 0.0;
+    for (Grocery lot : expiredGroceries(date)) {
+      totalValue += lot.getTotalPrice();
+    }
+    return totalValue;
+  }
+
+  /**
+   * Displays all groceries in the snapshot, sorted by name.
+   */
+  public void displayGroceries() {
+    Map<String, List<Grocery>> groceries = getGroceries();
+    if (groceries.isEmpty()) {
+      System.out.println("No groceries found");
+    } else {
+      groceries.keySet().stream()
+          .sorted()
+          .forEach(key -> groceries.get(key).forEach(System.out::println));
+    }
+  }
+
+  /**
+   * Releases the snapshot, so writers no longer copy groceries for it. Reading a closed snapshot
+   * throws.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    foodStorage.release(this);
+  }
+
+  /**
+   * Returns the total of every grocery, indexed by grocery id, for checks such as
+   * {@link RequirementVector#isSatisfiedBy(double[])}.
+   *
+   * @return the totals
+   */
+  double[] totals() {
+    double[] totals = new double[frozen.length()];
+    for (int id = 0; id < totals.length; id++) {
+      for (Grocery lot : lotsOf(id)) {
+        totals[id] += lot.getAmount();
+      }
+    }
+    return totals;
+  }
+
+  /**
+   * Keeps the current lots of a grocery, if the snapshot does not have them yet. Called with the
+   * grocery's lock held, before the grocery changes for the first time since the snapshot, and by
+   * the snapshot itself for groceries that have not changed.
+   *
+   * @param groceryId the id of the grocery
+   * @param lots      its lot queue, or null if it has no lots
+   */
+  void preserve(int groceryId, LotQueue lots) {
+    if (groceryId >= frozen.length() || frozen.get(groceryId) != null) {
+      return;
+    }
+    List<Grocery> copies = new ArrayList<>(lots == null ? 0 : lots.size());
+    if (lots != null) {
+      for (Grocery lot : lots) {
+        // A lot set to 0 holds nothing, and a grocery cannot be created with no amount
+        if (lot.getAmount() <= 0) {
+          continue;
+        }
+        Grocery copy = new Grocery(lot.getName(), lot.getAmount(), lot.getUnit(),
+            lot.getExpiryDate(), lot.getUnitPrice());
+        copy.setLotId(lot.getLotId());
+        copies.add(copy);
+      }
+    }
+    frozen.set(groceryId, List.copyOf(copies));
+  }
+
+  private List<Grocery> lotsOf(int groceryId) {
+    if (closed) {
+      throw new IllegalStateException("Snapshot is closed");
+    }
+    if (groceryId < 0 || groceryId >= frozen.length()) {
+      return List.of();
+    }
+    List<Grocery> lots = frozen.get(groceryId);
+    if (lots == null) {
+      foodStorage.preserveFor(this, groceryId);
+      lots = frozen.get(groceryId);
+    }
+    return lots;
+  }
+}
@@ -0,0 +1,175 @@
+package edu.ntnu.idatt.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A hierarchical timing wheel of items due on epoch days. Three wheels of 64 slots cover days,
+ * 64-day spans and 4096-day spans; anything further out waits in an overflow set. An item is kept
+ * in the finest wheel whose span still contains both the current day and its due day, and moves
+ * to a finer wheel when the coarser slot it sits in comes round.
+ *
+ * <p>Scheduling and cancelling are constant time. Advancing one day visits one slot, plus one
+ * coarser slot every 64 days, so the cost of a day is the items due or cascading that day and
+ * not the number of items waiting.</p>
+ *
+ * <p>Items are compared by identity. The wheel is not synchronized.</p>
+ *
+ * @param <T> the item type
+ */
+final class TimingWheel<T> {
+
+  private static final int SLOT_BITS = 6;
+  private static final int SLOTS = 1 << SLOT_BITS;
+  private static final int LEVELS = 3;
+
+  private final List<List<Set<T>>> wheels;
+  private final Set<T> overflow;
+  private final Set<T> overdue;
+  // The slot each scheduled item is in, so it can be cancelled without a search
+  private final Map<T, Set<T>> slotOf;
+  private final Map<T, Long> dueDays;
+  private long currentDay;
+
+  /**
+   * Creates an empty wheel.
+   *
+   * @param currentDay the epoch day the wheel starts at
+   */
+  TimingWheel(long currentDay) {
+    this.wheels = new ArrayList<>(LEVELS);
+    for (int level = 0; level < LEVELS; level++) {
+      List<Set<T>> slots = new ArrayList<>(SLOTS);
+      for (int i = 0; i < SLOTS; i++) {
+        slots.add(identitySet());
+      }
+      wheels.add(slots);
+    }
+    this.overflow = identitySet();
+    this.overdue = identitySet();
+    this.slotOf = new IdentityHashMap<>();
+    this.dueDays = new IdentityHashMap<>();
+    this.currentDay = currentDay;
+  }
+
+  /**
+   * Schedules an item, replacing any earlier schedule for it. An item due on or before the
+   * current day is returned by the next {@link #advanceTo(long)}.
+   *
+   * @param item   the item
+   * @param dueDay the epoch day it is due
+   */
+  void schedule(T item, long dueDay) {
+    cancel(item);
+    dueDays.put(item, dueDay);
+    place(item, dueDay);
+  }
+
+  /**
+   * Removes an item from the wheel.
+   *
+   * @param item the item
+   * @return true if the item was scheduled
+   */
+  boolean cancel(T item) {
+    Set<T> slot = slotOf.remove(item);
+    if (slot == null) {
+      return false;
+    }
+    slot.remove(item);
+    dueDays.remove(item);
+    return true;
+  }
+
+  /**
+   * Moves the wheel forward to a day and takes out every item due on or before it.
+   *
+   * @param day the new current day; earlier days leave the wheel where it is
+   * @return the items that came due, which are no longer scheduled
+   */
+  List<T> advanceTo(long day) {
+    List<T> due = new ArrayList<>();
+    drain(overdue, due);
+    if (slotOf.isEmpty()) {
+      currentDay = Math.max(currentDay, day);
+      return due;
+    }
+    while (currentDay < day) {
+      currentDay++;
+      // Bring items down from coarser wheels whose slot starts today, coarsest first
+      if ((currentDay & ((1L << (SLOT_BITS * LEVELS)) - 1)) == 0) {
+        cascade(overflow);
+      }
+      for (int level = LEVELS - 1; level > 0; level--) {
+        if ((currentDay & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+          cascade(wheels.get(level).get(slotIndex(currentDay, level)));
+        }
+      }
+      drain(wheels.get(0).get(slotIndex(currentDay, 0)), due);
+      drain(overdue, due);
+    }
+    return due;
+  }
+
+  /**
+   * Returns the number of scheduled items.
+   *
+   * @return the number of items
+   */
+  int size() {
+    return slotOf.size();
+  }
+
+  private void place(T item, long dueDay) {
+    Set<T> slot;
+    if (dueDay <= currentDay) {
+      slot = overdue;
+    } else {
+      slot = overflow;
+      for (int level = 0; level < LEVELS; level++) {
+        int spanBits = SLOT_BITS * (level + 1);
+        if (dueDay >> spanBits == currentDay >> spanBits) {
+          slot = wheels.get(level).get(slotIndex(dueDay, level));
+          break;
+        }
+      }
+    }
+    slot.add(item);
+    slotOf.put(item, slot);
+  }
+
+  private void cascade(Set<T> slot) {
+    if (slot.isEmpty()) {
+      return;
+    }
+    List<T> items = new ArrayList<>(slot);
+    slot.clear();
+    for (T item : items) {
+      place(item, dueDays.get(item));
+    }
+  }
+
+  private void drain(Set<T> slot, List<T> due) {
+    if (slot.isEmpty()) {
+      return;
+    }
+    for (T item : slot) {
+      slotOf.remove(item);
+      dueDays.remove(item);
+      due.add(item);
+    }
+    slot.clear();
+  }
+
+  private static int slotIndex(long day, int level) {
+    return (int) (day >> (SLOT_BITS * level)) & (SLOTS - 1);
+  }
+
+  private static <T> Set<T> identitySet() {
+    return Collections.newSetFromMap(new IdentityHashMap<>());
+  }
+}
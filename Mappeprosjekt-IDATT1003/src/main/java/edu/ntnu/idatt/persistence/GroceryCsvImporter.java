@@ -0,0 +1,246 @@
+package edu.ntnu.idatt.persistence;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.Unit;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+/**
+ * Imports groceries from CSV files with one lot per line:
+ * <pre>
+ *   name,amount,unit,expiryDate,unitPrice
+ *   Milk,2,LITRE,2025-01-31,15.90
+ * </pre>
+ *
+ * <p>The header line is optional, blank lines are skipped and fields may not contain commas. Units
+ * are the {@link Unit} names in any case, dates are ISO dates and numbers must be finite. Beyond
+ * that, a row is accepted exactly when the {@link Grocery} constructor accepts it.</p>
+ *
+ * <p>The file is read in chunks of {@link Settings#chunkLines()} lines. Worker threads parse each
+ * chunk and add its lots to the storage as one batch, while the reading thread moves on. At most
+ * two chunks per worker are in flight, so memory use depends on the chunk size and not on the
+ * file size. Bad rows are reported with their line numbers, in file order, and the import
+ * continues past them.</p>
+ */
+public final class GroceryCsvImporter {
+
+  /**
+   * How an import is split up.
+   *
+   * @param chunkLines the number of lines parsed and added as one batch
+   * @param threads    the number of worker threads
+   */
+  public record Settings(int chunkLines, int threads) {
+
+    /**
+     * Validates the settings.
+     *
+     * @throws IllegalArgumentException if any value is not positive
+     */
+    public Settings {
+      if (chunkLines <= 0 || threads <= 0) {
+        throw new IllegalArgumentException("Import settings must be greater than 0");
+      }
+    }
+
+    /**
+     * Returns chunks of 10 000 lines and one worker per available processor.
+     *
+     * @return the default settings
+     */
+    public static Settings defaults() {
+      return new Settings(10_000, Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  /**
+   * A row that was not imported.
+   *
+   * @param lineNumber the line number in the file, starting at 1
+   * @param line       the line as read
+   * @param message    why the row was rejected
+   */
+  public record RowError(long lineNumber, String line, String message) {
+  }
+
+  /**
+   * The outcome of an import.
+   *
+   * @param importedRows the number of lots added to the storage
+   * @param rejectedRows the number of rows reported as errors
+   */
+  public record Summary(long importedRows, long rejectedRows) {
+  }
+
+  private static final String HEADER_NAME = "name";
+
+  private final FoodStorage foodStorage;
+  private final Settings settings;
+
+  /**
+   * Creates an importer into a storage.
+   *
+   * @param foodStorage the storage to add lots to
+   * @param settings    chunk size and worker count
+   * @throws IllegalArgumentException if an argument is null
+   */
+  public GroceryCsvImporter(FoodStorage foodStorage, Settings settings) {
+    if (foodStorage == null || settings == null) {
+      throw new IllegalArgumentException("foodStorage and settings cannot be null");
+    }
+    this.foodStorage = foodStorage;
+    this.settings = settings;
+  }
+
+  /**
+   * Imports a UTF-8 CSV file.
+   *
+   * @param file   the file to import
+   * @param errors called on the calling thread for each rejected row, in file order
+   * @return how many rows were imported and rejected
+   * @throws IOException if the file cannot be read
+   */
+  public Summary importFile(Path file, Consumer<RowError> errors) throws IOException {
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      return importFrom(reader, errors);
+    }
+  }
+
+  /**
+   * Imports CSV text from a reader. The reader is not closed.
+   *
+   * @param reader the CSV text
+   * @param errors called on the calling thread for each rejected row, in file order
+   * @return how many rows were imported and rejected
+   * @throws IOException if the reader fails
+   */
+  public Summary importFrom(Reader reader, Consumer<RowError> errors) throws IOException {
+    if (reader == null || errors == null) {
+      throw new IllegalArgumentException("reader and errors cannot be null");
+    }
+    BufferedReader lines = reader instanceof BufferedReader buffered
+        ? buffered : new BufferedReader(reader);
+    int maxInFlight = settings.threads() * 2;
+    ArrayDeque<CompletableFuture<ChunkResult>> inFlight = new ArrayDeque<>(maxInFlight);
+    long imported = 0;
+    long rejected = 0;
+
+    try (ExecutorService workers = Executors.newFixedThreadPool(settings.threads())) {
+      long lineNumber = 0;
+      String line = lines.readLine();
+      while (line != null) {
+        long firstLine = lineNumber + 1;
+        List<String> chunk = new ArrayList<>(settings.chunkLines());
+        while (line != null && chunk.size() < settings.chunkLines()) {
+          chunk.add(line);
+          lineNumber++;
+          line = lines.readLine();
+        }
+        if (inFlight.size() == maxInFlight) {
+          ChunkResult result = report(inFlight.poll(), errors);
+          imported += result.imported();
+          rejected += result.errors().size();
+        }
+        inFlight.add(CompletableFuture.supplyAsync(() -> importChunk(firstLine, chunk), workers));
+      }
+      while (!inFlight.isEmpty()) {
+        ChunkResult result = report(inFlight.poll(), errors);
+        imported += result.imported();
+        rejected += result.errors().size();
+      }
+    }
+    return new Summary(imported, rejected);
+  }
+
+  /**
+   * Waits for a chunk and passes its rejected rows on.
+   */
+  private static ChunkResult report(CompletableFuture<ChunkResult> future,
+      Consumer<RowError> errors) {
+    ChunkResult result;
+    try {
+      result = future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+    result.errors().forEach(errors);
+    return result;
+  }
+
+  /**
+   * Parses one chunk and adds its valid rows to the storage. Runs on a worker thread.
+   */
+  private ChunkResult importChunk(long firstLine, List<String> chunk) {
+    List<Grocery> lots = new ArrayList<>(chunk.size());
+    List<RowError> rejected = new ArrayList<>();
+    for (int i = 0; i < chunk.size(); i++) {
+      String line = chunk.get(i);
+      long lineNumber = firstLine + i;
+      if (line.isBlank() || (lineNumber == 1 && isHeader(line))) {
+        continue;
+      }
+      try {
+        lots.add(parse(line));
+      } catch (IllegalArgumentException | DateTimeParseException e) {
+        rejected.add(new RowError(lineNumber, line, e.getMessage()));
+      }
+    }
+    foodStorage.addGroceries(lots);
+    return new ChunkResult(lots.size(), rejected);
+  }
+
+  private static boolean isHeader(String line) {
+    int comma = line.indexOf(',');
+    return comma > 0 && line.substring(0, comma).strip().equalsIgnoreCase(HEADER_NAME);
+  }
+
+  private static Grocery parse(String line) {
+    String[] fields = line.split(",", -1);
+    if (fields.length != 5) {
+      throw new IllegalArgumentException("Expected 5 fields but found " + fields.length);
+    }
+    Unit unit;
+    try {
+      unit = Unit.valueOf(fields[2].strip().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("Unknown unit: " + fields[2].strip());
+    }
+    return new Grocery(fields[0].strip(), parseNumber(fields[1], "amount"), unit,
+        LocalDate.parse(fields[3].strip()), parseNumber(fields[4], "unit price"));
+  }
+
+  private static double parseNumber(String field, String what) {
+    double value;
+    try {
+      value = Double.parseDouble(field.strip());
+    } catch (NumberFormatException e) {
+      value = Double.NaN;
+    }
+    if (!Double.isFinite(value)) {
+      throw new IllegalArgumentException("Invalid " + what + ": " + field.strip());
+    }
+    return value;
+  }
+
+  private record ChunkResult(int imported, List<RowError> errors) {
+  }
+}
@@ -0,0 +1,190 @@
+package edu.ntnu.idatt.persistence;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.LotSource;
+import edu.ntnu.idatt.models.Unit;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A binary snapshot of a {@link FoodStorage} that opens in the time it takes to map the file.
+ *
+ * <p>The file holds a dictionary of grocery names, then one fixed-width record per lot, grouped by
+ * name and in expiry order within each name:</p>
+ * <pre>
+ *   header      int magic, int version, int name count, int lot count
+ *   dictionary  per name: short length, UTF-8 bytes
+ *   name table  per name: int first record, int record count
+ *   records     per lot:  int name id, double amount, byte unit ordinal, int expiry epoch day,
+ *                         double unit price
+ * </pre>
+ *
+ * <p>Opening reads only the header, dictionary and name table. The records are read straight
+ * from the mapped file when a storage built with {@link FoodStorage#FoodStorage(LotSource)}
+ * first needs a grocery, so no lot object exists until it is used. The mapping is read-only and
+ * only read at absolute positions, so several threads can materialize lots at once.</p>
+ */
+public final class MappedSnapshot implements LotSource {
+
+  private static final int MAGIC = 0x46574d53;
+  private static final int VERSION = 1;
+  private static final int RECORD_BYTES = 4 + 8 + 1 + 4 + 8;
+  private static final Unit[] UNITS = Unit.values();
+
+  private final MappedByteBuffer buffer;
+  private final int recordsStart;
+  private final int lotCount;
+  private final Map<String, Integer> nameIds;
+  private final int[] firstRecord;
+  private final int[] recordCount;
+
+  private MappedSnapshot(MappedByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    ByteBuffer in = buffer.duplicate();
+    if (in.remaining() < 16 || in.getInt() != MAGIC || in.getInt() != VERSION) {
+      throw new IOException("Not a storage snapshot");
+    }
+    int nameCount = in.getInt();
+    this.lotCount = in.getInt();
+    this.nameIds = new HashMap<>(Math.max(16, nameCount * 2));
+    for (int id = 0; id < nameCount; id++) {
+      byte[] name = new byte[in.getShort() & 0xffff];
+      in.get(name);
+      nameIds.put(new String(name, StandardCharsets.UTF_8), id);
+    }
+    this.firstRecord = new int[nameCount];
+    this.recordCount = new int[nameCount];
+    for (int id = 0; id < nameCount; id++) {
+      firstRecord[id] = in.getInt();
+      recordCount[id] = in.getInt();
+    }
+    this.recordsStart = in.position();
+    if ((long) recordsStart + (long) lotCount * RECORD_BYTES != buffer.capacity()) {
+      throw new IOException("Storage snapshot is truncated or corrupt");
+    }
+  }
+
+  /**
+   * Writes a snapshot of a storage. The file is written next to its final name and moved into
+   * place, so an existing snapshot is never left half-written.
+   *
+   * @param file        the snapshot file
+   * @param foodStorage the storage to write
+   * @throws IOException if the file cannot be written
+   */
+  public static void write(Path file, FoodStorage foodStorage) throws IOException {
+    if (file == null || foodStorage == null) {
+      throw new IllegalArgumentException("file and foodStorage cannot be null");
+    }
+    Map<String, List<Grocery>> groceries = foodStorage.getGroceries();
+    // A stored lot set to 0 holds nothing, and could not be rebuilt as a Grocery when loaded
+    groceries.values().forEach(lots -> lots.removeIf(lot -> lot.getAmount() <= 0));
+    List<String> names = new ArrayList<>(groceries.keySet());
+    Collections.sort(names);
+
+    Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(names.size());
+      out.writeInt(groceries.values().stream().mapToInt(List::size).sum());
+      for (String name : names) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+      }
+      int next = 0;
+      for (String name : names) {
+        out.writeInt(next);
+        out.writeInt(groceries.get(name).size());
+        next += groceries.get(name).size();
+      }
+      for (int id = 0; id < names.size(); id++) {
+        for (Grocery lot : groceries.get(names.get(id))) {
+          out.writeInt(id);
+          out.writeDouble(lot.getAmount());
+          out.writeByte(lot.getUnit().ordinal());
+          out.writeInt((int) lot.getExpiryDate().toEpochDay());
+          out.writeDouble(lot.getUnitPrice());
+        }
+      }
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Maps a snapshot file and reads its name dictionary.
+   *
+   * @param file the snapshot file
+   * @return the opened snapshot
+   * @throws IOException if the file cannot be read, is larger than 2 GB or is not a snapshot
+   */
+  public static MappedSnapshot open(Path file) throws IOException {
+    if (file == null) {
+      throw new IllegalArgumentException("file cannot be null");
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Storage snapshot is too large to map: " + file);
+      }
+      // The mapping stays valid after the channel is closed
+      return new MappedSnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  /**
+   * Returns the number of lots in the snapshot.
+   *
+   * @return the lot count
+   */
+  public int lotCount() {
+    return lotCount;
+  }
+
+  @Override
+  public Set<String> names() {
+    return Collections.unmodifiableSet(nameIds.keySet());
+  }
+
+  @Override
+  public List<Grocery> lots(String groceryName) {
+    Integer id = nameIds.get(groceryName);
+    if (id == null) {
+      return List.of();
+    }
+    List<Grocery> lots = new ArrayList<>(recordCount[id]);
+    int position = recordsStart + firstRecord[id] * RECORD_BYTES;
+    for (int i = 0; i < recordCount[id]; i++, position += RECORD_BYTES) {
+      lots.add(new Grocery(groceryName,
+          buffer.getDouble(position + 4),
+          UNITS[buffer.get(position + 12)],
+          LocalDate.ofEpochDay(buffer.getInt(position + 13)),
+          buffer.getDouble(position + 17)));
+    }
+    return lots;
+  }
+}
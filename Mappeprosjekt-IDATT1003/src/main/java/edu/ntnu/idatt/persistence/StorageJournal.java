@@ -0,0 +1,524 @@
+package edu.ntnu.idatt.persistence;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.StorageListener;
+import edu.ntnu.idatt.models.Unit;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of every change to a {@link FoodStorage}, with periodic snapshots, so the
+ * storage survives restarts.
+ *
+ * <p>Each lot change is appended as one record: lot added, amount changed, lot removed or expiry
+ * date changed. Withdrawals and expiry sweeps are therefore recorded as the lot changes they cause.
+ * Records only name the lot's final state, so replaying a record twice is harmless.</p>
+ *
+ * <p>Appending encodes the record and puts it on a lock-free queue, so storage writers on
+ * different stripes never wait for each other here. A background writer drains the queue in
+ * batches and forces each batch to disk with one fsync (group commit). A batch closes when it
+ * holds {@link Settings#fsyncBatchSize()} records or {@link Settings#fsyncIntervalMillis()} has
+ * passed. {@link #sync()} waits until everything appended so far is on disk.</p>
+ *
+ * <p>After every {@link Settings#snapshotInterval()} records the writer starts a new journal
+ * segment and writes a snapshot of the storage. It then deletes the older segments, so recovery
+ * loads the snapshot and replays only the segments written since. Recovery works out the final
+ * state of every lot first and stores each surviving lot once.</p>
+ */
+public final class StorageJournal implements StorageListener, AutoCloseable {
+
+  /**
+   * How often the journal is forced to disk and compacted.
+   *
+   * @param fsyncBatchSize      the number of records that closes a batch early
+   * @param fsyncIntervalMillis the longest time a record waits before its batch is forced
+   * @param snapshotInterval    the number of records between snapshots
+   */
+  public record Settings(int fsyncBatchSize, long fsyncIntervalMillis, long snapshotInterval) {
+
+    /**
+     * Validates the settings.
+     *
+     * @throws IllegalArgumentException if any value is not positive
+     */
+    public Settings {
+      if (fsyncBatchSize <= 0 || fsyncIntervalMillis <= 0 || snapshotInterval <= 0) {
+        throw new IllegalArgumentException("Journal settings must be greater than 0");
+      }
+    }
+
+    /**
+     * Returns settings suitable for interactive use: batches of up to 4096 records forced at
+     * least every 10 ms, and a snapshot every million records.
+     *
+     * @return the default settings
+     */
+    public static Settings defaults() {
+      return new Settings(4096, 10, 1_000_000);
+    }
+  }
+
+  private static final String SNAPSHOT_FILE = "snapshot.bin";
+  private static final String SEGMENT_PREFIX = "journal-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final int SNAPSHOT_MAGIC = 0x46574a53;
+
+  private static final byte LOT_ADDED = 1;
+  private static final byte AMOUNT_CHANGED = 2;
+  private static final byte LOT_REMOVED = 3;
+  private static final byte EXPIRY_CHANGED = 4;
+
+  private final Path directory;
+  private final FoodStorage foodStorage;
+  private final Settings settings;
+  private final Thread writer;
+  // Encoded records waiting for the writer, in the order each grocery's changes were made
+  private final Queue<ByteBuffer> pending;
+  private final AtomicLong appendedRecords;
+  private volatile long drainedRecords;
+  private volatile long syncRequests;
+  private volatile boolean closed;
+  private volatile IOException failure;
+
+  // Guarded by this journal's monitor
+  private long completedSyncs;
+  private boolean stopped;
+
+  // Only touched by the writer thread
+  private FileChannel segment;
+  private long segmentNumber;
+  private long recordsSinceSnapshot;
+
+  private StorageJournal(Path directory, FoodStorage foodStorage, Settings settings,
+      long segmentNumber) throws IOException {
+    this.directory = directory;
+    this.foodStorage = foodStorage;
+    this.settings = settings;
+    this.pending = new ConcurrentLinkedQueue<>();
+    this.appendedRecords = new AtomicLong();
+    this.segmentNumber = segmentNumber;
+    this.segment = openSegment(segmentNumber);
+    this.writer = new Thread(this::writeLoop, "storage-journal-writer");
+    this.writer.setDaemon(true);
+  }
+
+  /**
+   * Recovers a storage from the journal in a directory and starts journaling its changes. The
+   * latest snapshot is loaded and the journal written after it is replayed. A record cut short by
+   * a crash ends the replay.
+   *
+   * @param directory   the journal directory, created if missing
+   * @param foodStorage an empty storage to recover into
+   * @param settings    batching and snapshot settings
+   * @return the running journal
+   * @throws IOException if the directory cannot be read or written
+   */
+  public static StorageJournal open(Path directory, FoodStorage foodStorage, Settings settings)
+      throws IOException {
+    if (directory == null || foodStorage == null || settings == null) {
+      throw new IllegalArgumentException("directory, foodStorage and settings cannot be null");
+    }
+    Files.createDirectories(directory);
+    TreeMap<Long, Grocery> lotsById = new TreeMap<>();
+    long replayFrom = loadSnapshot(directory.resolve(SNAPSHOT_FILE), lotsById);
+    long lastSegment = replayFrom - 1;
+    for (Map.Entry<Long, Path> entry : segments(directory).entrySet()) {
+      if (entry.getKey() >= replayFrom) {
+        replaySegment(entry.getValue(), lotsById);
+      }
+      lastSegment = Math.max(lastSegment, entry.getKey());
+    }
+    for (Map.Entry<Long, Grocery> entry : lotsById.entrySet()) {
+      foodStorage.restoreLot(entry.getValue(), entry.getKey());
+    }
+    // Write into a fresh segment, so a torn record at the end of the last one is never followed
+    StorageJournal journal = new StorageJournal(directory, foodStorage, settings, lastSegment + 1);
+    foodStorage.addListener(journal);
+    journal.writer.start();
+    return journal;
+  }
+
+  @Override
+  public void lotAdded(Grocery lot) {
+    if (closed) {
+      return;
+    }
+    byte[] name = lot.getName().getBytes(StandardCharsets.UTF_8);
+    ByteBuffer record = beginRecord(LOT_ADDED, 8 + 2 + name.length + 8 + 1 + 8 + 8);
+    record.putLong(lot.getLotId()).putShort((short) name.length).put(name)
+        .putDouble(lot.getAmount()).put((byte) lot.getUnit().ordinal())
+        .putLong(lot.getExpiryDate().toEpochDay()).putDouble(lot.getUnitPrice());
+    append(record);
+  }
+
+  @Override
+  public void lotAmountChanged(Grocery lot) {
+    if (closed) {
+      return;
+    }
+    ByteBuffer record = beginRecord(AMOUNT_CHANGED, 16);
+    record.putLong(lot.getLotId()).putDouble(lot.getAmount());
+    append(record);
+  }
+
+  @Override
+  public void lotRemoved(Grocery lot) {
+    if (closed) {
+      return;
+    }
+    ByteBuffer record = beginRecord(LOT_REMOVED, 8);
+    record.putLong(lot.getLotId());
+    append(record);
+  }
+
+  @Override
+  public void lotExpiryChanged(Grocery lot) {
+    if (closed) {
+      return;
+    }
+    ByteBuffer record = beginRecord(EXPIRY_CHANGED, 16);
+    record.putLong(lot.getLotId()).putLong(lot.getExpiryDate().toEpochDay());
+    append(record);
+  }
+
+  /**
+   * Waits until every record appended so far has been forced to disk.
+   *
+   * @throws UncheckedIOException if the journal could not be written
+   */
+  public void sync() {
+    long request;
+    synchronized (this) {
+      request = ++syncRequests;
+    }
+    LockSupport.unpark(writer);
+    synchronized (this) {
+      while (completedSyncs < request && failure == null && !stopped) {
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+    }
+    if (failure != null) {
+      throw new UncheckedIOException("Journal write failed", failure);
+    }
+  }
+
+  /**
+   * Forces the remaining records to disk and stops the writer. Changes made after closing are not
+   * journaled.
+   *
+   * @throws IOException if the journal could not be written
+   */
+  @Override
+  public void close() throws IOException {
+    closed = true;
+    LockSupport.unpark(writer);
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Starts a record. Records are framed as [length][type][payload][crc32], where the length and
+   * checksum cover the type and payload.
+   *
+   * @return a buffer holding the header, with room for the payload and checksum
+   */
+  private static ByteBuffer beginRecord(byte type, int payloadLength) {
+    ByteBuffer record = ByteBuffer.allocate(4 + 1 + payloadLength + 4);
+    record.putInt(1 + payloadLength).put(type);
+    return record;
+  }
+
+  /**
+   * Appends the checksum of a record and queues it for the writer, waking the writer when a batch
+   * is full.
+   */
+  private void append(ByteBuffer record) {
+    CRC32 crc = new CRC32();
+    crc.update(record.array(), 4, record.position() - 4);
+    record.putInt((int) crc.getValue()).flip();
+    pending.offer(record);
+    if (appendedRecords.incrementAndGet() - drainedRecords == settings.fsyncBatchSize()) {
+      LockSupport.unpark(writer);
+    }
+  }
+
+  private long waitingRecords() {
+    return appendedRecords.get() - drainedRecords;
+  }
+
+  private void writeLoop() {
+    long interval = TimeUnit.MILLISECONDS.toNanos(settings.fsyncIntervalMillis());
+    ByteBuffer batch = ByteBuffer.allocate(1 << 16);
+    try {
+      while (true) {
+        long deadline = System.nanoTime() + interval;
+        long now = System.nanoTime();
+        while (!closed && syncRequests == completedSyncs()
+            && waitingRecords() < settings.fsyncBatchSize()
+            && (waitingRecords() <= 0 || now < deadline)) {
+          LockSupport.parkNanos(this, waitingRecords() <= 0 ? interval : deadline - now);
+          now = System.nanoTime();
+        }
+        boolean stopping = closed;
+        // Every record queued before the sync was requested is drained below
+        long syncs = syncRequests;
+
+        int batchRecords = 0;
+        ByteBuffer record;
+        while ((record = pending.poll()) != null) {
+          if (batch.remaining() < record.remaining()) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(batch.capacity() * 2,
+                batch.position() + record.remaining()));
+            batch.flip();
+            grown.put(batch);
+            batch = grown;
+          }
+          batch.put(record);
+          batchRecords++;
+        }
+        drainedRecords += batchRecords;
+        batch.flip();
+        while (batch.hasRemaining()) {
+          segment.write(batch);
+        }
+        batch.clear();
+        if (batchRecords > 0) {
+          segment.force(false);
+        }
+        synchronized (this) {
+          completedSyncs = syncs;
+          notifyAll();
+        }
+
+        recordsSinceSnapshot += batchRecords;
+        if (stopping) {
+          segment.close();
+          return;
+        }
+        if (recordsSinceSnapshot >= settings.snapshotInterval()) {
+          snapshot();
+        }
+      }
+    } catch (IOException e) {
+      failure = e;
+    } finally {
+      synchronized (this) {
+        stopped = true;
+        notifyAll();
+      }
+    }
+  }
+
+  private synchronized long completedSyncs() {
+    return completedSyncs;
+  }
+
+  /**
+   * Starts a new segment, writes a snapshot of the storage and deletes the segments before it.
+   *
+   * <p>The storage keeps changing while it is read, so the snapshot may already contain some
+   * changes that are also in the new segment. Replaying those is harmless, because records only
+   * name a lot's final state.</p>
+   */
+  private void snapshot() throws IOException {
+    segment.close();
+    segmentNumber++;
+    segment = openSegment(segmentNumber);
+    recordsSinceSnapshot = 0;
+
+    Path temporary = directory.resolve(SNAPSHOT_FILE + ".tmp");
+    try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+        StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        DataOutputStream out = new DataOutputStream(
+            new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16))) {
+      writeSnapshot(out, segmentNumber, foodStorage.getGroceries());
+      out.flush();
+      channel.force(true);
+    }
+    Files.move(temporary, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+    for (Map.Entry<Long, Path> entry : segments(directory).entrySet()) {
+      if (entry.getKey() < segmentNumber) {
+        Files.deleteIfExists(entry.getValue());
+      }
+    }
+  }
+
+  private static void writeSnapshot(DataOutputStream out, long replayFrom,
+      Map<String, List<Grocery>> groceries) throws IOException {
+    out.writeInt(SNAPSHOT_MAGIC);
+    out.writeLong(replayFrom);
+    out.writeInt(groceries.values().stream().mapToInt(List::size).sum());
+    for (List<Grocery> lots : groceries.values()) {
+      for (Grocery lot : lots) {
+        out.writeLong(lot.getLotId());
+        out.writeUTF(lot.getName());
+        out.writeDouble(lot.getAmount());
+        out.writeByte(lot.getUnit().ordinal());
+        out.writeLong(lot.getExpiryDate().toEpochDay());
+        out.writeDouble(lot.getUnitPrice());
+      }
+    }
+  }
+
+  /**
+   * Loads the snapshot, if there is one.
+   *
+   * @return the first segment to replay after the snapshot
+   */
+  private static long loadSnapshot(Path file, Map<Long, Grocery> lotsById) throws IOException {
+    if (!Files.exists(file)) {
+      return 0;
+    }
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+      if (in.readInt() != SNAPSHOT_MAGIC) {
+        throw new IOException("Not a storage snapshot: " + file);
+      }
+      long replayFrom = in.readLong();
+      int count = in.readInt();
+      for (int i = 0; i < count; i++) {
+        long lotId = in.readLong();
+        lotsById.put(lotId, restoredLot(in.readUTF(), in.readDouble(),
+            Unit.values()[in.readByte()], LocalDate.ofEpochDay(in.readLong()), in.readDouble()));
+      }
+      return replayFrom;
+    }
+  }
+
+  private static void replaySegment(Path file, Map<Long, Grocery> lotsById) throws IOException {
+    try (InputStream stream = new BufferedInputStream(Files.newInputStream(file), 1 << 16)) {
+      DataInputStream in = new DataInputStream(stream);
+      while (true) {
+        ByteBuffer body;
+        try {
+          int length = in.readInt();
+          if (length <= 0 || length > (1 << 20)) {
+            return;
+          }
+          byte[] bytes = new byte[length];
+          in.readFully(bytes);
+          CRC32 crc = new CRC32();
+          crc.update(bytes);
+          if (in.readInt() != (int) crc.getValue()) {
+            return;
+          }
+          body = ByteBuffer.wrap(bytes);
+        } catch (EOFException tornRecord) {
+          return;
+        }
+        apply(body, lotsById);
+      }
+    }
+  }
+
+  /**
+   * Applies a record to the recovered lots, which are not stored yet.
+   */
+  private static void apply(ByteBuffer body, Map<Long, Grocery> lotsById) {
+    byte type = body.get();
+    long lotId = body.getLong();
+    Grocery lot = lotsById.get(lotId);
+    switch (type) {
+      case LOT_ADDED -> {
+        byte[] name = new byte[body.getShort()];
+        body.get(name);
+        double amount = body.getDouble();
+        Unit unit = Unit.values()[body.get()];
+        LocalDate expiryDate = LocalDate.ofEpochDay(body.getLong());
+        double unitPrice = body.getDouble();
+        if (lot == null) {
+          lotsById.put(lotId, restoredLot(new String(name, StandardCharsets.UTF_8), amount, unit,
+              expiryDate, unitPrice));
+        }
+      }
+      case AMOUNT_CHANGED -> {
+        double amount = body.getDouble();
+        if (lot != null) {
+          lotsById.put(lotId, restoredLot(lot.getName(), amount, lot.getUnit(),
+              lot.getExpiryDate(), lot.getUnitPrice()));
+        }
+      }
+      case LOT_REMOVED -> lotsById.remove(lotId);
+      case EXPIRY_CHANGED -> {
+        // Rebuilt rather than set, since a recovered date may already have passed
+        LocalDate expiryDate = LocalDate.ofEpochDay(body.getLong());
+        if (lot != null) {
+          lotsById.put(lotId, restoredLot(lot.getName(), lot.getAmount(), lot.getUnit(),
+              expiryDate, lot.getUnitPrice()));
+        }
+      }
+      default -> throw new IllegalStateException("Unknown journal record type " + type);
+    }
+  }
+
+  /**
+   * Rebuilds a lot as it was written. A stored lot can be set to an amount of 0 and stay stored,
+   * which the constructor rejects, so such a lot is built with a placeholder amount and set to 0
+   * before it is stored. The lot is not stored yet, so setting its amount only assigns it.
+   */
+  private static Grocery restoredLot(String name, double amount, Unit unit, LocalDate expiryDate,
+      double unitPrice) {
+    Grocery lot = new Grocery(name, amount > 0 ? amount : 1.0, unit, expiryDate, unitPrice);
+    if (amount <= 0) {
+      lot.setAmount(amount);
+    }
+    return lot;
+  }
+
+  private FileChannel openSegment(long number) throws IOException {
+    return FileChannel.open(directory.resolve(SEGMENT_PREFIX + number + SEGMENT_SUFFIX),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  private static TreeMap<Long, Path> segments(Path directory) throws IOException {
+    TreeMap<Long, Path> segments = new TreeMap<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.forEach(file -> {
+        String name = file.getFileName().toString();
+        if (name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX)) {
+          segments.put(Long.parseLong(name.substring(SEGMENT_PREFIX.length(),
+              name.length() - SEGMENT_SUFFIX.length())), file);
+        }
+      });
+    }
+    return segments;
+  }
+}
@@ -1,10 +1,16 @@
 package edu.ntnu.idatt.userinterface;
 
 import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.ExpiryScheduler;
 import edu.ntnu.idatt.models.FoodStorage;
 import edu.ntnu.idatt.models.Grocery;
 import edu.ntnu.idatt.models.Recipe;
 import edu.ntnu.idatt.models.Unit;
+import edu.ntnu.idatt.persistence.GroceryCsvImporter;
+import edu.ntnu.idatt.persistence.StorageJournal;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.List;
@@ -19,24 +25,43 @@ import java.util.Scanner;
  */
 public class UserInterface {
 
+  private static final Path DATA_DIRECTORY = Path.of("data");
+
   private FoodStorage foodStorage;
+  private StorageJournal journal;
+  private ExpiryScheduler expiryScheduler;
   private CookBook cookBook;
   private Scanner scanner;
 
   /**
-   * Initializes the UserInterface, FoodStorage, and CookBook objects with sample data.
+   * Initializes the UserInterface, FoodStorage, and CookBook objects. The storage is recovered
+   * from the journal in the data directory, and filled with sample data when it is empty.
+   * Expired lots are evicted in the background from then on.
    */
   public void init() {
     foodStorage = new FoodStorage();
+    try {
+      journal = StorageJournal.open(DATA_DIRECTORY, foodStorage,
+          StorageJournal.Settings.defaults());
+    } catch (IOException e) {
+      System.out.println("Could not open the storage journal, changes will not be saved: "
+          + e.getMessage());
+    }
     cookBook = new CookBook(foodStorage);
     scanner = new Scanner(System.in);
 
     // Example groceries
-    foodStorage.addGrocery(new Grocery("Milk", 2, Unit.LITRE, LocalDate.now().plusDays(5), 1.50));
-    foodStorage.addGrocery(
-        new Grocery("Flour", 1, Unit.KILOGRAM, LocalDate.now().plusMonths(3), 2.00));
-    foodStorage.addGrocery(
-        new Grocery("Eggs", 0.5, Unit.KILOGRAM, LocalDate.now().plusDays(10), 0.10));
+    if (foodStorage.getGroceries().isEmpty()) {
+      foodStorage.addGrocery(
+          new Grocery("Milk", 2, Unit.LITRE, LocalDate.now().plusDays(5), 1.50));
+      foodStorage.addGrocery(
+          new Grocery("Flour", 1, Unit.KILOGRAM, LocalDate.now().plusMonths(3), 2.00));
+      foodStorage.addGrocery(
+          new Grocery("Eggs", 0.5, Unit.KILOGRAM, LocalDate.now().plusDays(10), 0.10));
+    }
+    expiryScheduler = new ExpiryScheduler(foodStorage, Clock.systemDefaultZone(),
+        ExpiryScheduler.Settings.defaults());
+    expiryScheduler.start();
 
     // Example recipe: Pancakes
     ArrayList<Grocery> pancakeIngredients = new ArrayList<>();
@@ -68,6 +93,7 @@ public class UserInterface {
       System.out.println("7. Display a recipe by name");
       System.out.println("8. Prepare a recipe");
       System.out.println("10. Exit");
+      System.out.println("11. Import groceries from a CSV file");
       System.out.print("Choose an option: ");
 
       try {
@@ -104,13 +130,18 @@ public class UserInterface {
             break;
           case 10:
             System.out.println("Exiting... Goodbye!");
+            expiryScheduler.close();
+            closeJournal();
             running = false;
             break;
+          case 11:
+            importGroceries();
+            break;
           default:
             System.out.println("Invalid choice. Please try again.");
         }
       } catch (NumberFormatException e) {
-        System.out.println("Invalid input. Please enter a number between 1 and 9.");
+        System.out.println("Invalid input. Please enter a number between 1 and 11.");
       } catch (IllegalArgumentException e) {
         System.out.println("Error: " + e.getMessage());
       } catch (Exception e) {
@@ -120,6 +151,39 @@ public class UserInterface {
   }
 
 
+  /**
+   * Forces the last changes to disk and stops the journal.
+   */
+  private void closeJournal() {
+    if (journal == null) {
+      return;
+    }
+    try {
+      journal.close();
+    } catch (IOException e) {
+      System.out.println("Could not save the last changes: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Prompts the user for a CSV file and imports its groceries, listing the rows that were
+   * rejected.
+   */
+  private void importGroceries() {
+    System.out.print("Enter CSV file path: ");
+    Path file = Path.of(scanner.nextLine().trim());
+    GroceryCsvImporter importer =
+        new GroceryCsvImporter(foodStorage, GroceryCsvImporter.Settings.defaults());
+    try {
+      GroceryCsvImporter.Summary summary = importer.importFile(file, error ->
+          System.out.println("Line " + error.lineNumber() + " skipped: " + error.message()));
+      System.out.println(summary.importedRows() + " groceries imported, "
+          + summary.rejectedRows() + " rows skipped.");
+    } catch (IOException e) {
+      System.out.println("Could not read the file: " + e.getMessage());
+    }
+  }
+
   /**
    * Prompts the user to add a grocery to FoodStorage.
    */
@@ -0,0 +1,128 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.ntnu.idatt.models.ColumnarFoodStorage;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.GroceryStorage;
+import edu.ntnu.idatt.models.Unit;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ColumnarFoodStorageTest {
+
+  private static final LocalDate TODAY = LocalDate.now();
+
+  private ColumnarFoodStorage storage;
+
+  @BeforeEach
+  void setUp() {
+    storage = new ColumnarFoodStorage();
+    storage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, TODAY.plusDays(9), 16.0));
+    storage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, TODAY.minusDays(2), 15.0));
+    storage.addGrocery(new Grocery("Flour", 1.5, Unit.KILOGRAM, TODAY.plusDays(30), 20.0));
+  }
+
+  @Test
+  void removeAmountTakesOldestLotFirst() {
+    storage.removeAmount("Milk", 2.5);
+
+    List<Grocery> milk = storage.getGroceries().get("Milk");
+    assertEquals(1, milk.size());
+    assertEquals(TODAY.plusDays(9), milk.get(0).getExpiryDate());
+    assertEquals(0.5, milk.get(0).getAmount(), 1e-9);
+    assertEquals(0.5, storage.getTotalAmount("Milk"), 1e-9);
+    assertEquals(2, storage.lotCount());
+  }
+
+  @Test
+  void rejectsInvalidWithdrawals() {
+    assertThrows(IllegalArgumentException.class, () -> storage.removeAmount("Eggs", 1.0));
+    assertThrows(IllegalArgumentException.class, () -> storage.removeAmount("Milk", 3.5));
+    assertThrows(IllegalArgumentException.class, () -> storage.removeAmount(" ", 1.0));
+    assertEquals(3.0, storage.getTotalAmount("Milk"));
+  }
+
+  @Test
+  void expiryQueriesAndSweep() {
+    assertEquals(30.0, storage.valueOfExpiredGroceries(TODAY));
+    assertEquals(1, storage.expiredGroceries(TODAY).size());
+
+    storage.removeCurrentlyExpiredGroceries();
+    assertEquals(1.0, storage.getTotalAmount("Milk"));
+    assertEquals(0.0, storage.valueOfExpiredGroceries(TODAY));
+  }
+
+  @Test
+  void storesCopies() {
+    Grocery eggs = new Grocery("Eggs", 1.0, Unit.KILOGRAM, TODAY.plusDays(5), 3.0);
+    storage.addGrocery(eggs);
+    eggs.setAmount(5.0);
+    assertEquals(1.0, storage.getTotalAmount("Eggs"));
+
+    storage.getGroceries().get("Eggs").get(0).setAmount(7.0);
+    assertEquals(1.0, storage.getTotalAmount("Eggs"));
+  }
+
+  @Test
+  void behavesLikeFoodStorageUnderRandomOperations() {
+    GroceryStorage reference = new FoodStorage();
+    ColumnarFoodStorage columnar = new ColumnarFoodStorage();
+    Random random = new Random(11);
+    String[] names = {"Milk", "Flour", "Eggs", "Butter", "Cheese"};
+
+    for (int step = 0; step < 20_000; step++) {
+      String name = names[random.nextInt(names.length)];
+      int operation = random.nextInt(10);
+      if (operation < 5) {
+        Grocery lot = new Grocery(name, 0.01 + random.nextDouble() * 3, Unit.KILOGRAM,
+            TODAY.plusDays(random.nextInt(60) - 5), random.nextDouble() * 20);
+        reference.addGrocery(lot);
+        columnar.addGrocery(new Grocery(lot.getName(), lot.getAmount(), lot.getUnit(),
+            lot.getExpiryDate(), lot.getUnitPrice()));
+      } else if (operation < 9) {
+        double amount = random.nextDouble() * reference.getTotalAmount(name);
+        if (amount > 0) {
+          reference.removeAmount(name, amount);
+          columnar.removeAmount(name, amount);
+        }
+      } else {
+        reference.removeCurrentlyExpiredGroceries();
+        columnar.removeCurrentlyExpiredGroceries();
+      }
+
+      for (String n : names) {
+        assertEquals(reference.getTotalAmount(n), columnar.getTotalAmount(n), 1e-6);
+      }
+      if (step % 500 == 0) {
+        LocalDate cutoff = TODAY.plusDays(random.nextInt(40));
+        assertEquals(reference.valueOfExpiredGroceries(cutoff),
+            columnar.valueOfExpiredGroceries(cutoff), 1e-6);
+        assertEquals(reference.expiredGroceries(cutoff).size(),
+            columnar.expiredGroceries(cutoff).size());
+        assertSameLots(reference.getGroceries(), columnar.getGroceries());
+      }
+    }
+  }
+
+  private static void assertSameLots(Map<String, List<Grocery>> expected,
+      Map<String, List<Grocery>> actual) {
+    for (Map.Entry<String, List<Grocery>> entry : expected.entrySet()) {
+      List<Grocery> lots = actual.getOrDefault(entry.getKey(), List.of());
+      assertEquals(entry.getValue().size(), lots.size(), entry.getKey());
+      for (int i = 0; i < lots.size(); i++) {
+        assertEquals(entry.getValue().get(i).getExpiryDate(), lots.get(i).getExpiryDate());
+        assertEquals(entry.getValue().get(i).getAmount(), lots.get(i).getAmount(), 1e-9);
+      }
+    }
+    assertFalse(actual.keySet().stream()
+        .anyMatch(name -> !expected.containsKey(name) && !actual.get(name).isEmpty()));
+  }
+}
@@ -14,7 +14,14 @@ import edu.ntnu.idatt.models.Grocery;
 import edu.ntnu.idatt.models.Recipe;
 import edu.ntnu.idatt.models.Unit;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -115,6 +122,156 @@ class CookBookTest {
     assertTrue(suggestedRecipes.contains("Pancakes"));
   }
 
+  @Test
+  void testAvailabilityFollowsStockChanges() {
+    List<Grocery> ingredients = List.of(
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0),
+        new Grocery("Flour", 0.5, Unit.KILOGRAM, LocalDate.now().plusDays(30), 10.0)
+    );
+    cookBook.addRecipe("Pancakes", "Delicious pancakes", "Mix and fry", ingredients, 2);
+    assertTrue(cookBook.suggestRecipes().isEmpty());
+
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    foodStorage.addGrocery(
+        new Grocery("Flour", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(30), 10.0));
+    assertEquals(List.of("Pancakes"), cookBook.suggestRecipes());
+
+    foodStorage.removeAmount("Milk", 0.5);
+    assertFalse(cookBook.checkRecipeAvailability("Pancakes"));
+    assertTrue(cookBook.suggestRecipes().isEmpty());
+  }
+
+  @Test
+  void testAvailabilityFollowsPortionChanges() {
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    List<Grocery> ingredients = new ArrayList<>();
+    ingredients.add(new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    cookBook.addRecipe("Hot chocolate", "Warm drink", "Heat and stir", ingredients, 2);
+    assertTrue(cookBook.checkRecipeAvailability("Hot chocolate"));
+
+    cookBook.getRecipe("Hot chocolate").setPortions(4);
+
+    assertFalse(cookBook.checkRecipeAvailability("Hot chocolate"));
+  }
+
+  @Test
+  void testAvailabilityCombinesRepeatedIngredients() {
+    foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    cookBook.addRecipe("Milkshake", "Extra milky", "Blend", List.of(
+        new Grocery("Milk", 1.5, Unit.LITRE, LocalDate.now().plusDays(5), 20.0),
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0)), 1);
+
+    assertFalse(cookBook.checkRecipeAvailability("Milkshake"));
+    assertFalse(cookBook.suggestRecipes().contains("Milkshake"));
+
+    cookBook.getRecipe("Milkshake").setPortions(0.5);
+    assertTrue(cookBook.checkRecipeAvailability("Milkshake"));
+    assertTrue(cookBook.suggestRecipes().contains("Milkshake"));
+  }
+
+  @Test
+  void testMaxPortionsIsLimitedByScarcestIngredient() {
+    foodStorage.addGrocery(new Grocery("Milk", 3.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    foodStorage.addGrocery(
+        new Grocery("Flour", 2.0, Unit.KILOGRAM, LocalDate.now().plusDays(30), 10.0));
+    cookBook.addRecipe("Pancakes", "Delicious pancakes", "Mix and fry", List.of(
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0),
+        new Grocery("Flour", 0.5, Unit.KILOGRAM, LocalDate.now().plusDays(30), 10.0)), 2);
+    cookBook.addRecipe("Bread", "Plain bread", "Bake", List.of(
+        new Grocery("Flour", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(30), 10.0),
+        new Grocery("Yeast", 0.1, Unit.KILOGRAM, LocalDate.now().plusDays(30), 10.0)), 1);
+
+    Map<String, Double> portions = cookBook.maxPortions();
+
+    assertEquals(6.0, portions.get("Pancakes"), 1e-9);
+    assertEquals(0.0, portions.get("Bread"));
+    assertEquals(1.0, cookBook.getRecipe("Pancakes").getIngredients().get(0).getAmount());
+    assertEquals(2, cookBook.getRecipe("Pancakes").getPortions());
+  }
+
+  @Test
+  void testMaxPortionsOverLargeCookbook() {
+    for (int g = 0; g < 50; g++) {
+      foodStorage.addGrocery(
+          new Grocery("Grocery" + g, g + 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(5), 1.0));
+    }
+    for (int r = 0; r < 10_000; r++) {
+      cookBook.addRecipe("Recipe" + r, "Generated", "None", List.of(
+          new Grocery("Grocery" + r % 50, 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(5), 1.0),
+          new Grocery("Grocery" + (r + 7) % 50, 2.0, Unit.KILOGRAM, LocalDate.now(), 1.0)), 1);
+    }
+
+    Map<String, Double> portions = cookBook.maxPortions();
+
+    assertEquals(10_000, portions.size());
+    for (int r = 0; r < 10_000; r++) {
+      double expected = Math.min(r % 50 + 1.0, ((r + 7) % 50 + 1.0) / 2.0);
+      assertEquals(expected, portions.get("Recipe" + r), 1e-9);
+    }
+  }
+
+  @Test
+  void testParallelSuggestionsFollowInsertionOrder() {
+    for (int g = 0; g < 50; g++) {
+      foodStorage.addGrocery(
+          new Grocery("Grocery" + g, g + 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(5), 1.0));
+    }
+    List<String> expected = new ArrayList<>();
+    for (int r = 0; r < 20_000; r++) {
+      double amount = (r * 31 % 60) + 0.5;
+      cookBook.addRecipe("Recipe" + r, "Generated", "None", List.of(
+          new Grocery("Grocery" + r % 50, amount, Unit.KILOGRAM, LocalDate.now(), 1.0)), 1);
+      if (amount <= r % 50 + 1.0) {
+        expected.add("Recipe" + r);
+      }
+    }
+
+    ForkJoinPool pool = new ForkJoinPool(4);
+    try {
+      assertEquals(expected, cookBook.suggestRecipes(pool));
+    } finally {
+      pool.shutdown();
+    }
+    assertEquals(expected.size(), cookBook.suggestRecipes().size());
+  }
+
+  @Test
+  void testParallelSuggestionsOnSmallCookbook() {
+    foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    cookBook.addRecipe("Porridge", "Warm", "Boil", List.of(
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0)), 1);
+    cookBook.addRecipe("Pudding", "Sweet", "Stir", List.of(
+        new Grocery("Milk", 3.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0)), 1);
+    cookBook.addRecipe("Toast", "Crisp", "Toast", List.of(), 1);
+
+    assertEquals(List.of("Porridge", "Toast"), cookBook.suggestRecipes(ForkJoinPool.commonPool()));
+    assertThrows(IllegalArgumentException.class, () -> cookBook.suggestRecipes(null));
+  }
+
+  @Test
+  void testAvailabilityCacheFollowsIngredientVersions() {
+    foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    cookBook.addRecipe("Porridge", "Warm", "Boil", List.of(
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0)), 1);
+
+    assertTrue(cookBook.checkRecipeAvailability("Porridge"));
+    assertTrue(cookBook.checkRecipeAvailability("Porridge"));
+    assertEquals(new CookBook.CacheStats(1, 1), cookBook.availabilityCacheStats());
+
+    // A change to another grocery keeps the cached answer
+    foodStorage.addGrocery(new Grocery("Salt", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(5), 1.0));
+    assertTrue(cookBook.checkRecipeAvailability("Porridge"));
+    assertEquals(2, cookBook.availabilityCacheStats().hits());
+
+    foodStorage.removeAmount("Milk", 1.5);
+    assertFalse(cookBook.checkRecipeAvailability("Porridge"));
+    assertEquals(2, cookBook.availabilityCacheStats().misses());
+
+    cookBook.getRecipe("Porridge").setPortions(0.5);
+    assertTrue(cookBook.checkRecipeAvailability("Porridge"));
+    assertEquals(0.4, cookBook.availabilityCacheStats().hitRate(), 1e-9);
+  }
+
   @Test
   void testPrepareRecipeSuccessfully() {
     foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
@@ -134,6 +291,84 @@ class CookBookTest {
     assertEquals(0.5, foodStorage.getTotalAmount("Flour"));
   }
 
+  @Test
+  void testPrepareRecipeCombinesRepeatedIngredients() {
+    foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    cookBook.addRecipe("Milkshake", "Extra milky", "Blend", List.of(
+        new Grocery("Milk", 1.5, Unit.LITRE, LocalDate.now().plusDays(5), 20.0),
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0)), 1);
+
+    assertThrows(IllegalArgumentException.class, () -> cookBook.prepareRecipe("Milkshake"));
+    assertEquals(2.0, foodStorage.getTotalAmount("Milk"));
+
+    foodStorage.addGrocery(new Grocery("Milk", 0.5, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    cookBook.prepareRecipe("Milkshake");
+    assertEquals(0.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+  }
+
+  @Test
+  void testCheckAndPrepareScaledPortions() {
+    foodStorage.addGrocery(new Grocery("Milk", 3.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
+    cookBook.addRecipe("Porridge", "Warm", "Boil", List.of(
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0)), 2);
+
+    assertTrue(cookBook.checkRecipeAvailability("Porridge", 6));
+    assertFalse(cookBook.checkRecipeAvailability("Porridge", 7));
+    assertThrows(IllegalArgumentException.class, () -> cookBook.prepareRecipe("Porridge", 8));
+    assertThrows(IllegalArgumentException.class, () -> cookBook.prepareRecipe("Porridge", 0));
+
+    cookBook.prepareRecipe("Porridge", 5);
+    assertEquals(0.5, foodStorage.getTotalAmount("Milk"), 1e-9);
+    assertEquals(2, cookBook.getRecipe("Porridge").getPortions());
+    assertEquals(1.0, cookBook.getRecipe("Porridge").getIngredients().get(0).getAmount());
+  }
+
+  @Test
+  void testConcurrentPreparationsAreAllOrNothing() throws Exception {
+    for (int i = 0; i < 40; i++) {
+      foodStorage.addGrocery(
+          new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5 + i % 3), 20.0));
+      foodStorage.addGrocery(
+          new Grocery("Flour", 0.5, Unit.KILOGRAM, LocalDate.now().plusDays(30), 10.0));
+      foodStorage.addGrocery(
+          new Grocery("Eggs", 0.3, Unit.KILOGRAM, LocalDate.now().plusDays(10), 0.2));
+    }
+    cookBook.addRecipe("Pancakes", "Delicious pancakes", "Mix and fry", List.of(
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 20.0),
+        new Grocery("Flour", 0.5, Unit.KILOGRAM, LocalDate.now().plusDays(30), 10.0)), 2);
+    cookBook.addRecipe("Omelette", "Fluffy omelette", "Whisk and fry", List.of(
+        new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(5), 2.0),
+        new Grocery("Eggs", 0.3, Unit.KILOGRAM, LocalDate.now().plusDays(10), 0.2)), 1);
+
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    AtomicInteger pancakes = new AtomicInteger();
+    AtomicInteger omelettes = new AtomicInteger();
+    List<Future<?>> cooks = new ArrayList<>();
+    for (int t = 0; t < 8; t++) {
+      final boolean makesPancakes = t % 2 == 0;
+      cooks.add(pool.submit(() -> {
+        for (int i = 0; i < 20; i++) {
+          try {
+            cookBook.prepareRecipe(makesPancakes ? "Pancakes" : "Omelette");
+            (makesPancakes ? pancakes : omelettes).incrementAndGet();
+          } catch (IllegalArgumentException outOfStock) {
+            // Ingredients ran out
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> cook : cooks) {
+      cook.get();
+    }
+    pool.shutdown();
+
+    assertEquals(40, pancakes.get() + omelettes.get());
+    assertEquals(0.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+    assertEquals(20.0 - 0.5 * pancakes.get(), foodStorage.getTotalAmount("Flour"), 1e-9);
+    assertEquals(12.0 - 0.3 * omelettes.get(), foodStorage.getTotalAmount("Eggs"), 1e-9);
+  }
+
   @Test
   void testPrepareRecipeInsufficientIngredientsThrowsException() {
     foodStorage.addGrocery(new Grocery("Milk", 0.5, Unit.LITRE, LocalDate.now().plusDays(5), 20.0));
@@ -0,0 +1,191 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ntnu.idatt.models.ExpiryScheduler;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.Unit;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class ExpirySchedulerTest {
+
+  // Ahead of the real date, so lots can be moved to later days through Grocery
+  private static final LocalDate START = LocalDate.now().plusDays(1);
+
+  @Test
+  void evictsLotsOnTheDayAfterExpiry() {
+    DayClock clock = new DayClock(START);
+    FoodStorage foodStorage = new FoodStorage();
+    ExpiryScheduler scheduler =
+        new ExpiryScheduler(foodStorage, clock, new ExpiryScheduler.Settings(0, 1000));
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, START.plusDays(2), 15.0));
+    foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, START.plusDays(70), 15.0));
+    foodStorage.addGrocery(new Grocery("Rice", 1.0, Unit.KILOGRAM, START.plusDays(5000), 30.0));
+
+    clock.setDay(START.plusDays(2));
+    assertEquals(0, scheduler.tick());
+    clock.setDay(START.plusDays(3));
+    assertEquals(1, scheduler.tick());
+    assertEquals(2.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+
+    clock.setDay(START.plusDays(70));
+    assertEquals(0, scheduler.tick());
+    clock.setDay(START.plusDays(71));
+    assertEquals(1, scheduler.tick());
+    assertEquals(0.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+
+    clock.setDay(START.plusDays(5001));
+    assertEquals(1, scheduler.tick());
+    assertEquals(0, scheduler.scheduledCount());
+  }
+
+  @Test
+  void evictsTheSameLotsAsASweepDayByDay() {
+    DayClock clock = new DayClock(START);
+    FoodStorage foodStorage = new FoodStorage();
+    FoodStorage reference = new FoodStorage();
+    ExpiryScheduler scheduler =
+        new ExpiryScheduler(foodStorage, clock, new ExpiryScheduler.Settings(0, 1000));
+    Random random = new Random(42);
+    for (int i = 0; i < 2000; i++) {
+      LocalDate expiry = START.plusDays(random.nextInt(9000));
+      foodStorage.addGrocery(new Grocery("G" + (i % 50), 1.0, Unit.KILOGRAM, expiry, 1.0));
+      reference.addGrocery(new Grocery("G" + (i % 50), 1.0, Unit.KILOGRAM, expiry, 1.0));
+    }
+
+    int evicted = 0;
+    for (LocalDate day = START; day.isBefore(START.plusDays(9100)); day = day.plusDays(1)) {
+      clock.setDay(day);
+      evicted += scheduler.tick();
+      assertEquals(reference.expiredGroceries(day).size(), evicted, "on " + day);
+    }
+    assertEquals(2000, evicted);
+  }
+
+  @Test
+  void followsExpiryChangesAndRemovals() {
+    DayClock clock = new DayClock(START);
+    FoodStorage foodStorage = new FoodStorage();
+    ExpiryScheduler scheduler =
+        new ExpiryScheduler(foodStorage, clock, new ExpiryScheduler.Settings(0, 1000));
+    Grocery moved = new Grocery("Milk", 1.0, Unit.LITRE, START.plusDays(1), 15.0);
+    Grocery removed = new Grocery("Eggs", 1.0, Unit.KILOGRAM, START.plusDays(1), 3.0);
+    foodStorage.addGrocery(moved);
+    foodStorage.addGrocery(removed);
+    moved.setExpiryDate(START.plusDays(10));
+    foodStorage.removeLot(removed);
+    assertEquals(1, scheduler.scheduledCount());
+
+    clock.setDay(START.plusDays(5));
+    assertEquals(0, scheduler.tick());
+    assertEquals(1.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+    clock.setDay(START.plusDays(11));
+    assertEquals(1, scheduler.tick());
+  }
+
+  @Test
+  void schedulesLotsAlreadyStored() {
+    FoodStorage foodStorage = new FoodStorage();
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, START.plusDays(1), 15.0));
+    foodStorage.addGrocery(new Grocery("Eggs", 1.0, Unit.KILOGRAM, START.minusDays(1), 3.0));
+
+    DayClock clock = new DayClock(START);
+    ExpiryScheduler scheduler =
+        new ExpiryScheduler(foodStorage, clock, new ExpiryScheduler.Settings(0, 1000));
+    assertEquals(1, scheduler.tick());
+    assertEquals(0.0, foodStorage.getTotalAmount("Eggs"), 1e-9);
+    clock.setDay(START.plusDays(2));
+    assertEquals(1, scheduler.tick());
+  }
+
+  @Test
+  void warnsOnceAheadOfExpiry() {
+    DayClock clock = new DayClock(START);
+    FoodStorage foodStorage = new FoodStorage();
+    ExpiryScheduler scheduler =
+        new ExpiryScheduler(foodStorage, clock, new ExpiryScheduler.Settings(3, 1000));
+    List<String> warned = new ArrayList<>();
+    scheduler.addWarningListener(lot -> warned.add(lot.getName()));
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, START.plusDays(10), 15.0));
+    foodStorage.addGrocery(new Grocery("Eggs", 1.0, Unit.KILOGRAM, START.plusDays(2), 3.0));
+
+    scheduler.tick();
+    assertEquals(List.of("Eggs"), warned);
+    clock.setDay(START.plusDays(6));
+    scheduler.tick();
+    assertEquals(List.of("Eggs"), warned);
+    clock.setDay(START.plusDays(7));
+    scheduler.tick();
+    assertEquals(List.of("Eggs", "Milk"), warned);
+    clock.setDay(START.plusDays(8));
+    scheduler.tick();
+    assertEquals(2, warned.size());
+  }
+
+  @Test
+  void ticksInTheBackground() throws InterruptedException {
+    DayClock clock = new DayClock(START);
+    FoodStorage foodStorage = new FoodStorage();
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, START.plusDays(1), 15.0));
+    try (ExpiryScheduler scheduler =
+        new ExpiryScheduler(foodStorage, clock, new ExpiryScheduler.Settings(0, 5))) {
+      scheduler.start();
+      clock.setDay(START.plusDays(2));
+      long deadline = System.currentTimeMillis() + 5000;
+      while (foodStorage.getTotalAmount("Milk") > 0 && System.currentTimeMillis() < deadline) {
+        Thread.sleep(5);
+      }
+      assertEquals(0.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+      assertThrows(IllegalStateException.class, scheduler::start);
+    }
+  }
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new ExpiryScheduler.Settings(-1, 1000));
+    assertThrows(IllegalArgumentException.class, () -> new ExpiryScheduler.Settings(3, 0));
+    assertTrue(ExpiryScheduler.Settings.defaults().warningDays() > 0);
+  }
+
+  /**
+   * A clock that stands still at the start of a settable day.
+   */
+  private static final class DayClock extends Clock {
+
+    private volatile Instant instant;
+
+    DayClock(LocalDate day) {
+      setDay(day);
+    }
+
+    void setDay(LocalDate day) {
+      instant = day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
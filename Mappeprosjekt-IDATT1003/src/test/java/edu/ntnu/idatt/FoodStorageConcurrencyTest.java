@@ -0,0 +1,160 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.Unit;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+
+class FoodStorageConcurrencyTest {
+
+  private static final String[] NAMES = {"Milk", "Flour", "Eggs", "Butter", "Sugar", "Salt"};
+  private static final int THREADS = 8;
+  private static final int OPERATIONS = 20_000;
+
+  @Test
+  void testConcurrentAddsAndWithdrawalsKeepTotalsConsistent() throws Exception {
+    FoodStorage foodStorage = new FoodStorage();
+    // Whole units only, so the expected totals can be tracked exactly
+    AtomicLong[] expected = new AtomicLong[NAMES.length];
+    for (int i = 0; i < NAMES.length; i++) {
+      expected[i] = new AtomicLong();
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      final long seed = t;
+      workers.add(pool.submit(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < OPERATIONS; i++) {
+          int n = random.nextInt(NAMES.length);
+          if (random.nextInt(3) < 2) {
+            foodStorage.addGrocery(new Grocery(NAMES[n], 1.0, Unit.KILOGRAM,
+                LocalDate.now().plusDays(random.nextInt(30)), 5.0));
+            expected[n].incrementAndGet();
+          } else {
+            try {
+              foodStorage.removeAmount(NAMES[n], 1.0);
+              expected[n].decrementAndGet();
+            } catch (IllegalArgumentException notEnoughStock) {
+              // Another thread got there first
+            }
+          }
+          foodStorage.getTotalAmount(NAMES[random.nextInt(NAMES.length)]);
+          foodStorage.valueOfExpiredGroceries(LocalDate.now().plusDays(10));
+        }
+        return null;
+      }));
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+    Map<String, List<Grocery>> groceries = foodStorage.getGroceries();
+    int lotCount = 0;
+    for (int i = 0; i < NAMES.length; i++) {
+      List<Grocery> lots = groceries.getOrDefault(NAMES[i], List.of());
+      double recomputed = lots.stream().mapToDouble(Grocery::getAmount).sum();
+      assertEquals(expected[i].get(), foodStorage.getTotalAmount(NAMES[i]), 1e-6);
+      assertEquals(recomputed, foodStorage.getTotalAmount(NAMES[i]), 1e-6);
+      lotCount += lots.size();
+    }
+    assertEquals(lotCount, foodStorage.expiredGroceries(LocalDate.now().plusDays(31)).size());
+  }
+
+  @Test
+  void testConcurrentWithdrawalsNeverOverdraw() throws Exception {
+    FoodStorage foodStorage = new FoodStorage();
+    for (int i = 0; i < 100; i++) {
+      foodStorage.addGrocery(
+          new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(i % 7), 15.0));
+    }
+
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    AtomicLong withdrawn = new AtomicLong();
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      workers.add(pool.submit(() -> {
+        for (int i = 0; i < 50; i++) {
+          try {
+            foodStorage.removeAmount("Milk", 1.0);
+            withdrawn.incrementAndGet();
+          } catch (IllegalArgumentException notEnoughStock) {
+            // Stock ran out
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    pool.shutdown();
+
+    assertEquals(100, withdrawn.get());
+    assertEquals(0.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+  }
+
+  @Test
+  void testRecipeAvailabilityFollowsConcurrentChanges() throws Exception {
+    FoodStorage foodStorage = new FoodStorage();
+    CookBook cookBook = new CookBook(foodStorage);
+    ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+    List<Future<?>> workers = new ArrayList<>();
+    for (int t = 0; t < THREADS; t++) {
+      final long seed = t;
+      workers.add(pool.submit(() -> {
+        Random random = new Random(seed);
+        for (int i = 0; i < OPERATIONS / 4; i++) {
+          String name = NAMES[random.nextInt(NAMES.length)];
+          if (random.nextBoolean()) {
+            foodStorage.addGrocery(new Grocery(name, 1.0, Unit.KILOGRAM,
+                LocalDate.now().plusDays(30), 5.0));
+          } else {
+            try {
+              foodStorage.removeAmount(name, 1.0);
+            } catch (IllegalArgumentException notEnoughStock) {
+              // Another thread got there first
+            }
+          }
+          if (seed == 0 && i % 50 == 0) {
+            cookBook.addRecipe("Recipe" + i, "Generated", "None", List.of(
+                new Grocery(NAMES[i % NAMES.length], 1.0 + i % 4, Unit.KILOGRAM,
+                    LocalDate.now(), 1.0),
+                new Grocery(NAMES[(i + 1) % NAMES.length], 1.0, Unit.KILOGRAM,
+                    LocalDate.now(), 1.0)), 1);
+          }
+        }
+        return null;
+      }));
+    }
+    for (Future<?> worker : workers) {
+      worker.get();
+    }
+    pool.shutdown();
+
+    List<String> expected = new ArrayList<>();
+    for (int i = 0; i < OPERATIONS / 4; i += 50) {
+      if (cookBook.checkRecipeAvailability("Recipe" + i)) {
+        expected.add("Recipe" + i);
+      }
+    }
+    assertEquals(expected, cookBook.suggestRecipes());
+  }
+}
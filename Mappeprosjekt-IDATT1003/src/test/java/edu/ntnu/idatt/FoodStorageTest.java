@@ -4,12 +4,15 @@ package edu.ntnu.idatt;
 
 import edu.ntnu.idatt.models.FoodStorage;
 import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.StockBatch;
 import edu.ntnu.idatt.models.Unit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -45,6 +48,42 @@ class FoodStorageTest {
         assertEquals(0.0, foodStorage.getTotalAmount("Banana"));
     }
 
+    @Test
+    void testRemoveAmountTakesOldestLotFirst() {
+        Grocery freshBanana = new Grocery("Banana", 2.0, Unit.KILOGRAM, LocalDate.now().plusDays(9), 15.0);
+        Grocery oldBanana = new Grocery("Banana", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(1), 15.0);
+        foodStorage.addGrocery(freshBanana);
+        foodStorage.addGrocery(oldBanana);
+
+        foodStorage.removeAmount("Banana", 2.0);
+
+        List<Grocery> bananas = foodStorage.getGroceries().get("Banana");
+        assertEquals(2, bananas.size());
+        assertEquals(0.5, bananas.getFirst().getAmount(), 1e-9);
+        assertSame(freshBanana, bananas.getLast());
+    }
+
+    @Test
+    void testRemoveAmountsIsAllOrNothing() {
+        assertThrows(IllegalArgumentException.class,
+            () -> foodStorage.removeAmounts(Map.of("Apple", 0.5, "Banana", 2.0)));
+        assertEquals(1.0, foodStorage.getTotalAmount("Apple"));
+        assertEquals(1.5, foodStorage.getTotalAmount("Banana"));
+
+        foodStorage.removeAmounts(Map.of("Apple", 0.5, "Banana", 1.5));
+        assertEquals(0.5, foodStorage.getTotalAmount("Apple"));
+        assertEquals(0.0, foodStorage.getTotalAmount("Banana"));
+    }
+
+    @Test
+    void testRemoveAmountsRejectsUnknownNamesWithoutStoringThem() {
+        int known = foodStorage.snapshotTotals().length;
+        assertThrows(IllegalArgumentException.class,
+            () -> foodStorage.removeAmounts(Map.of("Apple", 0.5, "Appel", 0.5)));
+        assertEquals(known, foodStorage.snapshotTotals().length);
+        assertEquals(1.0, foodStorage.getTotalAmount("Apple"));
+    }
+
     @Test
     void testGetTotalAmount() {
         assertEquals(1.0, foodStorage.getTotalAmount("Apple"));
@@ -73,6 +112,325 @@ class FoodStorageTest {
         assertEquals(1.0, foodStorage.getTotalAmount("Apple"));
     }
 
+    @Test
+    void testEmptiedNamesFailWithdrawalsAlikeOnEveryPath() {
+        foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().minusDays(1), 10.0));
+        foodStorage.removeCurrentlyExpiredGroceries();
+        foodStorage.removeAmount("Banana", 1.5);
+
+        for (String name : List.of("Milk", "Banana")) {
+            IllegalArgumentException batch = assertThrows(IllegalArgumentException.class,
+                () -> foodStorage.apply(new StockBatch().withdraw(name, 1.0)));
+            assertTrue(batch.getMessage().startsWith("Amount to remove cannot be larger"), name);
+            IllegalArgumentException single = assertThrows(IllegalArgumentException.class,
+                () -> foodStorage.removeAmount(name, 1.0));
+            assertTrue(single.getMessage().startsWith("Amount to remove cannot be larger"), name);
+            assertTrue(foodStorage.getGroceries().get(name).isEmpty(), name);
+        }
+    }
+
+    @Test
+    void testExpiredGroceriesFollowExpiryDateChanges() {
+        Grocery cheese = new Grocery("Cheese", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(1), 80.0);
+        foodStorage.addGrocery(cheese);
+        assertEquals(2, foodStorage.expiredGroceries(LocalDate.now().plusDays(3)).size());
+
+        cheese.setExpiryDate(LocalDate.now().plusDays(20));
+
+        List<Grocery> expired = foodStorage.expiredGroceries(LocalDate.now().plusDays(3));
+        assertEquals(1, expired.size());
+        assertEquals("Banana", expired.getFirst().getName());
+        assertSame(cheese, foodStorage.getGroceries().get("Cheese").getFirst());
+    }
+
+    @Test
+    void testRemovedLotsLeaveExpiryIndex() {
+        foodStorage.removeAmount("Banana", 1.5);
+
+        assertTrue(foodStorage.expiredGroceries(LocalDate.now().plusDays(3)).isEmpty());
+        assertEquals(0.0, foodStorage.valueOfExpiredGroceries(LocalDate.now().plusDays(3)));
+    }
+
+    @Test
+    void testValueOfExpiredGroceries() {
+        assertEquals(1.5 * 15.0, foodStorage.valueOfExpiredGroceries(LocalDate.now().plusDays(3)));
+        assertEquals(1.5 * 15.0 + 20.0,
+            foodStorage.valueOfExpiredGroceries(LocalDate.now().plusDays(6)));
+    }
+
+    @Test
+    void testAddSameGroceryTwiceThrowsException() {
+        Grocery orange = new Grocery("Orange", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(7), 25.0);
+        foodStorage.addGrocery(orange);
+
+        assertThrows(IllegalArgumentException.class, () -> foodStorage.addGrocery(orange));
+    }
+
+    @Test
+    void testAddGroceriesAddsWholeBatch() {
+        LocalDate date = LocalDate.now().plusDays(7);
+        foodStorage.addGroceries(List.of(
+            new Grocery("Orange", 1.0, Unit.KILOGRAM, date, 25.0),
+            new Grocery("Orange", 2.0, Unit.KILOGRAM, date, 25.0),
+            new Grocery("Apple", 0.5, Unit.KILOGRAM, date, 20.0)));
+
+        assertEquals(3.0, foodStorage.getTotalAmount("Orange"));
+        assertEquals(1.5, foodStorage.getTotalAmount("Apple"));
+    }
+
+    @Test
+    void testAddGroceriesRejectsStoredGroceryBeforeAddingAnything() {
+        Grocery stored = foodStorage.getGroceries().get("Apple").get(0);
+        Grocery orange = new Grocery("Orange", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(7), 25.0);
+
+        assertThrows(IllegalArgumentException.class,
+            () -> foodStorage.addGroceries(List.of(orange, stored)));
+        assertEquals(0.0, foodStorage.getTotalAmount("Orange"));
+    }
+
+    @Test
+    void testGroceryIdsAreStableAndIndexTotals() {
+        int apple = foodStorage.groceryId("Apple");
+        int flour = foodStorage.groceryId("Flour");
+
+        assertEquals(apple, foodStorage.groceryId("Apple"));
+        assertNotEquals(apple, flour);
+        assertEquals(1.0, foodStorage.getTotalAmount(apple));
+        assertEquals(0.0, foodStorage.getTotalAmount(flour));
+
+        foodStorage.addGrocery(new Grocery("Flour", 2.0, Unit.KILOGRAM, LocalDate.now().plusDays(9), 10.0));
+        assertEquals(2.0, foodStorage.getTotalAmount(flour));
+        assertThrows(IllegalArgumentException.class, () -> foodStorage.getTotalAmount(999));
+    }
+
+    @Test
+    void testVersionsChangeOnlyWithTheirTotal() {
+        int apple = foodStorage.groceryId("Apple");
+        int banana = foodStorage.groceryId("Banana");
+        long appleVersion = foodStorage.groceryVersion(apple);
+        long bananaVersion = foodStorage.groceryVersion(banana);
+        long count = foodStorage.modificationCount();
+
+        foodStorage.removeAmount("Apple", 0.25);
+
+        assertTrue(foodStorage.groceryVersion(apple) > appleVersion);
+        assertEquals(bananaVersion, foodStorage.groceryVersion(banana));
+        assertTrue(foodStorage.modificationCount() > count);
+        assertEquals(0, foodStorage.groceryVersion(foodStorage.groceryId("Flour")));
+    }
+
+    @Test
+    void testRemoveAmountsByIdIsAllOrNothing() {
+        int[] ids = {foodStorage.groceryId("Apple"), foodStorage.groceryId("Banana")};
+
+        assertThrows(IllegalArgumentException.class,
+            () -> foodStorage.removeAmounts(ids, new double[] {0.5, 2.0}));
+        assertEquals(1.0, foodStorage.getTotalAmount("Apple"));
+
+        foodStorage.removeAmounts(ids, new double[] {0.5, 1.0});
+        assertEquals(0.5, foodStorage.getTotalAmount("Apple"));
+        assertEquals(0.5, foodStorage.getTotalAmount("Banana"), 1e-9);
+        assertThrows(IllegalArgumentException.class,
+            () -> foodStorage.removeAmounts(new int[] {ids[0], ids[0]}, new double[] {0.1, 0.1}));
+    }
+
+    @Test
+    void testRunningTotalsMatchRecomputationAfterRandomOperations() {
+        Random random = new Random(1003);
+        String[] names = {"Apple", "Banana", "Milk", "Flour"};
+        for (int step = 0; step < 20_000; step++) {
+            String name = names[random.nextInt(names.length)];
+            int operation = random.nextInt(10);
+            if (operation < 5) {
+                foodStorage.addGrocery(new Grocery(name, 0.01 + random.nextDouble() * 3,
+                    Unit.KILOGRAM, LocalDate.now().plusDays(random.nextInt(60) - 5), 10.0));
+            } else if (operation < 8) {
+                double amount = random.nextDouble() * foodStorage.getTotalAmount(name);
+                if (amount > 0) {
+                    foodStorage.removeAmount(name, amount);
+                }
+            } else if (operation < 9) {
+                List<Grocery> lots = foodStorage.getGroceries().get(name);
+                if (lots != null && !lots.isEmpty()) {
+                    lots.get(random.nextInt(lots.size())).setAmount(random.nextDouble() * 2);
+                }
+            } else {
+                foodStorage.removeCurrentlyExpiredGroceries();
+            }
+
+            for (String n : names) {
+                List<Grocery> lots = foodStorage.getGroceries().getOrDefault(n, List.of());
+                double recomputed = lots.stream().mapToDouble(Grocery::getAmount).sum();
+                assertEquals(recomputed, foodStorage.getTotalAmount(n), 1e-9);
+            }
+        }
+    }
+
+    @Test
+    void testValueSumsMatchRecomputationAfterRandomOperations() {
+        Random random = new Random(11);
+        String[] names = {"Apple", "Banana", "Milk", "Rice"};
+        LocalDate today = LocalDate.now();
+        for (int step = 0; step < 2000; step++) {
+            String name = names[random.nextInt(names.length)];
+            int operation = random.nextInt(10);
+            if (operation < 4) {
+                foodStorage.addGrocery(new Grocery(name, 0.01 + random.nextDouble() * 3,
+                    Unit.KILOGRAM, today.plusDays(random.nextInt(3000)), random.nextDouble() * 40));
+            } else if (operation < 6) {
+                double amount = random.nextDouble() * foodStorage.getTotalAmount(name);
+                if (amount > 0) {
+                    foodStorage.removeAmount(name, amount);
+                }
+            } else if (operation < 8) {
+                List<Grocery> lots = foodStorage.getGroceries().get(name);
+                if (lots != null && !lots.isEmpty()) {
+                    Grocery lot = lots.get(random.nextInt(lots.size()));
+                    lot.setExpiryDate(today.plusDays(random.nextInt(3000)));
+                }
+            } else {
+                List<Grocery> lots = foodStorage.getGroceries().get(name);
+                if (lots != null && !lots.isEmpty()) {
+                    lots.get(random.nextInt(lots.size())).setAmount(0.01 + random.nextDouble());
+                }
+            }
+
+            if (step % 50 == 0) {
+                LocalDate from = today.plusDays(random.nextInt(3000) - 60);
+                LocalDate to = from.plusDays(random.nextInt(400));
+                double expected = foodStorage.expiredGroceries(to).stream()
+                    .filter(g -> !g.getExpiryDate().isBefore(from))
+                    .mapToDouble(Grocery::getTotalPrice).sum();
+                assertEquals(expected, foodStorage.valueExpiringBetween(from, to), 1e-6);
+                double expired = foodStorage.expiredGroceries(to).stream()
+                    .mapToDouble(Grocery::getTotalPrice).sum();
+                assertEquals(expired, foodStorage.valueOfExpiredGroceries(to), 1e-6);
+            }
+        }
+    }
+
+    @Test
+    void testValueSumsCoverFarOffDates() {
+        Grocery distant = new Grocery("Salt", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(1), 5.0);
+        foodStorage.addGrocery(distant);
+        distant.setExpiryDate(LocalDate.of(3000, 1, 1));
+        foodStorage.addGrocery(new Grocery("Wine", 1.0, Unit.LITRE, LocalDate.of(1500, 1, 1), 7.0));
+
+        assertEquals(7.0, foodStorage.valueOfExpiredGroceries(LocalDate.of(1600, 1, 1)), 1e-9);
+        assertEquals(7.0 + 1.5 * 15.0 + 20.0,
+            foodStorage.valueOfExpiredGroceries(LocalDate.of(2999, 1, 1)), 1e-9);
+        assertEquals(5.0, foodStorage.valueExpiringBetween(LocalDate.of(2999, 1, 1),
+            LocalDate.of(3001, 1, 1)), 1e-9);
+
+        foodStorage.removeLot(distant);
+        assertEquals(0.0, foodStorage.valueExpiringBetween(LocalDate.of(2999, 1, 1),
+            LocalDate.of(3001, 1, 1)), 1e-9);
+        assertThrows(IllegalArgumentException.class, () -> foodStorage.valueExpiringBetween(
+            LocalDate.now(), LocalDate.now().minusDays(1)));
+    }
+
+    @Test
+    void testExpiredValueKeepsNegativePrices() {
+        LocalDate expiry = LocalDate.now().plusDays(400);
+        foodStorage.addGrocery(new Grocery("Sample", 1.0, Unit.KILOGRAM, expiry, -5.0));
+
+        LocalDate after = expiry.plusDays(1);
+        double before = foodStorage.valueOfExpiredGroceries(expiry);
+        assertEquals(before - 5.0, foodStorage.valueOfExpiredGroceries(after), 1e-9);
+        assertEquals(-5.0, foodStorage.valueExpiringBetween(expiry, after), 1e-9);
+    }
+
+    @Test
+    void testLotMergingFoldsIdenticalLotsOnInsert() {
+        LocalDate expiry = LocalDate.now().plusDays(4);
+        foodStorage.setLotMerging(true);
+        Grocery first = new Grocery("Milk", 1.0, Unit.LITRE, expiry, 15.0);
+        foodStorage.addGrocery(first);
+        foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, expiry, 15.0));
+        foodStorage.addGroceries(List.of(new Grocery("Milk", 0.5, Unit.LITRE, expiry, 15.0),
+            new Grocery("Milk", 1.0, Unit.LITRE, expiry, 16.0)));
+
+        List<Grocery> lots = foodStorage.getGroceries().get("Milk");
+        assertEquals(2, lots.size());
+        assertSame(first, lots.getFirst());
+        assertEquals(3.5, first.getAmount(), 1e-9);
+        assertEquals(4.5, foodStorage.getTotalAmount("Milk"), 1e-9);
+        assertEquals(3.5 * 15.0 + 16.0,
+            foodStorage.valueExpiringBetween(expiry, expiry.plusDays(1)), 1e-9);
+    }
+
+    @Test
+    void testCompactLotsKeepsTotalsAndValues() {
+        LocalDate today = LocalDate.now();
+        for (int i = 0; i < 30; i++) {
+            foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE,
+                today.plusDays(1 + i % 3), i % 2 == 0 ? 15.0 : 16.0));
+        }
+        double total = foodStorage.getTotalAmount("Milk");
+        double value = foodStorage.valueOfExpiredGroceries(today.plusDays(10));
+
+        assertEquals(24, foodStorage.compactLots());
+        assertEquals(6, foodStorage.getGroceries().get("Milk").size());
+        assertEquals(total, foodStorage.getTotalAmount("Milk"), 1e-9);
+        assertEquals(value, foodStorage.valueOfExpiredGroceries(today.plusDays(10)), 1e-9);
+        assertEquals(0, foodStorage.compactLots());
+
+        foodStorage.removeAmount("Milk", 12.0);
+        assertEquals(18.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+    }
+
+    @Test
+    void testApplyBatchAddsBeforeWithdrawing() {
+        LocalDate date = LocalDate.now().plusDays(7);
+        StockBatch batch = new StockBatch()
+            .withdraw("Apple", 0.5)
+            .add(new Grocery("Orange", 2.0, Unit.KILOGRAM, date, 25.0))
+            .withdraw("Orange", 1.5)
+            .withdraw("Apple", 0.25)
+            .add(new Grocery("Banana", 1.0, Unit.KILOGRAM, date, 15.0));
+
+        foodStorage.apply(batch);
+
+        assertEquals(0.25, foodStorage.getTotalAmount("Apple"), 1e-9);
+        assertEquals(0.5, foodStorage.getTotalAmount("Orange"), 1e-9);
+        assertEquals(2.5, foodStorage.getTotalAmount("Banana"), 1e-9);
+        assertEquals(2, foodStorage.getGroceries().get("Banana").size());
+    }
+
+    @Test
+    void testApplyBatchIsAllOrNothing() {
+        Grocery orange = new Grocery("Orange", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(7), 25.0);
+        StockBatch batch = new StockBatch()
+            .add(orange)
+            .withdraw("Apple", 0.5)
+            .withdraw("Banana", 2.0);
+
+        assertThrows(IllegalArgumentException.class, () -> foodStorage.apply(batch));
+        assertEquals(1.0, foodStorage.getTotalAmount("Apple"));
+        assertEquals(1.5, foodStorage.getTotalAmount("Banana"));
+        assertEquals(0.0, foodStorage.getTotalAmount("Orange"));
+        assertNull(foodStorage.getGroceries().get("Orange"));
+
+        assertThrows(IllegalArgumentException.class,
+            () -> foodStorage.apply(new StockBatch().withdraw("Flour", 1.0)));
+        foodStorage.addGrocery(orange);
+        StockBatch stale = new StockBatch().withdraw("Apple", 0.5);
+        assertThrows(IllegalArgumentException.class, () -> stale.add(orange));
+    }
+
+    @Test
+    void testStockBatchRejectsInvalidChanges() {
+        Grocery orange = new Grocery("Orange", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(7), 25.0);
+        StockBatch batch = new StockBatch().add(orange);
+
+        assertThrows(IllegalArgumentException.class, () -> batch.add(orange));
+        assertThrows(IllegalArgumentException.class, () -> batch.add(null));
+        assertThrows(IllegalArgumentException.class, () -> batch.withdraw(" ", 1.0));
+        assertThrows(IllegalArgumentException.class, () -> batch.withdraw("Apple", 0.0));
+        assertThrows(IllegalArgumentException.class, () -> batch.withdraw("Apple", Double.NaN));
+        assertTrue(new StockBatch().isEmpty());
+    }
+
     @Test
     void testDisplayGroceries() {
         assertDoesNotThrow(() -> foodStorage.displayGroceries());
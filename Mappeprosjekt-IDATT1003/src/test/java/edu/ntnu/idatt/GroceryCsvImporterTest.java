@@ -0,0 +1,93 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Unit;
+import edu.ntnu.idatt.persistence.GroceryCsvImporter;
+import edu.ntnu.idatt.persistence.GroceryCsvImporter.RowError;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GroceryCsvImporterTest {
+
+  private static final String DATE = LocalDate.now().plusDays(10).toString();
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void importsValidRowsAndReportsBadOnes() throws IOException {
+    String csv = String.join("\n",
+        "name,amount,unit,expiryDate,unitPrice",
+        "Milk,2,LITRE," + DATE + ",15.9",
+        " Flour , 1.5 , kilogram , " + DATE + " , 20",
+        "",
+        "Milk,-1,LITRE," + DATE + ",15.9",
+        "Eggs,1,PIECE," + DATE + ",3",
+        "Eggs,1,KILOGRAM,tomorrow,3",
+        "Eggs,NaN,KILOGRAM," + DATE + ",3",
+        ",1,KILOGRAM," + DATE + ",3",
+        "Milk,1,LITRE," + DATE,
+        "Milk,0.5,LITRE," + DATE + ",-2");
+    FoodStorage storage = new FoodStorage();
+    List<RowError> errors = new ArrayList<>();
+
+    GroceryCsvImporter.Summary summary =
+        new GroceryCsvImporter(storage, new GroceryCsvImporter.Settings(3, 2))
+            .importFrom(new StringReader(csv), errors::add);
+
+    assertEquals(3, summary.importedRows());
+    assertEquals(6, summary.rejectedRows());
+    assertEquals(List.of(5L, 6L, 7L, 8L, 9L, 10L),
+        errors.stream().map(RowError::lineNumber).toList());
+    assertEquals("Unknown unit: PIECE", errors.get(1).message());
+    assertEquals(2.5, storage.getTotalAmount("Milk"));
+    assertEquals(1.5, storage.getTotalAmount("Flour"));
+    assertEquals(Unit.KILOGRAM, storage.getGroceries().get("Flour").get(0).getUnit());
+  }
+
+  @Test
+  void importsLargeFileInManyChunks() throws IOException {
+    Path file = directory.resolve("delivery.csv");
+    List<String> lines = new ArrayList<>();
+    for (int i = 1; i <= 50_000; i++) {
+      lines.add(i % 1000 == 0
+          ? "Broken line " + i
+          : "Grocery" + (i % 97) + ",1,KILOGRAM," + DATE + ",2.5");
+    }
+    Files.write(file, lines);
+    FoodStorage storage = new FoodStorage();
+    List<RowError> errors = new ArrayList<>();
+
+    GroceryCsvImporter.Summary summary =
+        new GroceryCsvImporter(storage, new GroceryCsvImporter.Settings(1000, 4))
+            .importFile(file, errors::add);
+
+    assertEquals(49_950, summary.importedRows());
+    assertEquals(50, errors.size());
+    for (int i = 0; i < errors.size(); i++) {
+      assertEquals(1000L * (i + 1), errors.get(i).lineNumber());
+    }
+    double total = 0;
+    for (int n = 0; n < 97; n++) {
+      total += storage.getTotalAmount("Grocery" + n);
+    }
+    assertEquals(49_950, total, 1e-6);
+  }
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new GroceryCsvImporter.Settings(0, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> new GroceryCsvImporter(null, GroceryCsvImporter.Settings.defaults()));
+  }
+}
@@ -0,0 +1,88 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.LotQueue;
+import edu.ntnu.idatt.models.Unit;
+import java.time.LocalDate;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class LotQueueTest {
+
+  private LotQueue lots;
+  private Grocery late;
+  private Grocery early;
+  private Grocery earlySecond;
+
+  @BeforeEach
+  void setUp() {
+    lots = new LotQueue();
+    late = new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.of(2025, 3, 1), 15.0);
+    early = new Grocery("Milk", 2.0, Unit.LITRE, LocalDate.of(2025, 1, 1), 15.0);
+    earlySecond = new Grocery("Milk", 3.0, Unit.LITRE, LocalDate.of(2025, 1, 1), 15.0);
+    lots.add(late);
+    lots.add(early);
+    lots.add(earlySecond);
+  }
+
+  @Test
+  void testLotsAreKeptInExpiryOrder() {
+    assertEquals(List.of(early, earlySecond, late), lots.toList());
+    assertEquals(3, lots.size());
+  }
+
+  @Test
+  void testPollFirstReturnsOldestLot() {
+    assertSame(early, lots.pollFirst());
+    assertSame(earlySecond, lots.pollFirst());
+    assertSame(late, lots.pollFirst());
+    assertNull(lots.pollFirst());
+    assertTrue(lots.isEmpty());
+  }
+
+  @Test
+  void testRemoveSpecificLot() {
+    assertTrue(lots.remove(earlySecond));
+    assertFalse(lots.remove(earlySecond));
+    assertEquals(List.of(early, late), lots.toList());
+  }
+
+  @Test
+  void testRunningTotalFollowsLots() {
+    assertEquals(6.0, lots.getTotal());
+
+    lots.pollFirst();
+    lots.remove(late);
+    assertEquals(3.0, lots.getTotal());
+
+    lots.pollFirst();
+    assertEquals(0.0, lots.getTotal());
+  }
+
+  @Test
+  void testFindMergeableMatchesExpiryUnitAndPrice() {
+    Grocery same = new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.of(2025, 1, 1), 15.0);
+    Grocery otherPrice = new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.of(2025, 1, 1), 16.0);
+    Grocery otherDay = new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.of(2025, 1, 2), 15.0);
+
+    assertSame(early, lots.findMergeable(same));
+    assertSame(early, lots.findMergeable(earlySecond));
+    assertSame(earlySecond, lots.findMergeable(early));
+    assertNull(lots.findMergeable(otherPrice));
+    assertNull(lots.findMergeable(otherDay));
+    assertNull(lots.findMergeable(late));
+  }
+
+  @Test
+  void testAddNullThrowsException() {
+    assertThrows(IllegalArgumentException.class, () -> lots.add(null));
+  }
+}
@@ -0,0 +1,134 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.StorageListener;
+import edu.ntnu.idatt.models.Unit;
+import edu.ntnu.idatt.persistence.MappedSnapshot;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MappedSnapshotTest {
+
+  private static final LocalDate TODAY = LocalDate.now();
+
+  @TempDir
+  Path directory;
+
+  private FoodStorage original;
+  private Path file;
+
+  @BeforeEach
+  void setUp() throws IOException {
+    original = new FoodStorage();
+    original.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, TODAY.plusDays(9), 15.0));
+    original.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, TODAY.minusDays(2), 16.0));
+    original.addGrocery(new Grocery("Flour", 1.5, Unit.KILOGRAM, TODAY.plusDays(30), 20.0));
+    original.addGrocery(new Grocery("Eggs", 0.5, Unit.KILOGRAM, TODAY.minusDays(1), 3.0));
+    file = directory.resolve("storage.snapshot");
+    MappedSnapshot.write(file, original);
+  }
+
+  @Test
+  void roundTripsEveryLotInOrder() throws IOException {
+    MappedSnapshot snapshot = MappedSnapshot.open(file);
+    assertEquals(4, snapshot.lotCount());
+    assertEquals(original.getGroceries().keySet(), snapshot.names());
+
+    Map<String, List<Grocery>> expected = original.getGroceries();
+    Map<String, List<Grocery>> actual = new FoodStorage(snapshot).getGroceries();
+    assertEquals(expected.keySet(), actual.keySet());
+    for (String name : expected.keySet()) {
+      assertEquals(expected.get(name).size(), actual.get(name).size());
+      for (int i = 0; i < expected.get(name).size(); i++) {
+        Grocery want = expected.get(name).get(i);
+        Grocery got = actual.get(name).get(i);
+        assertEquals(want.getAmount(), got.getAmount());
+        assertEquals(want.getUnit(), got.getUnit());
+        assertEquals(want.getExpiryDate(), got.getExpiryDate());
+        assertEquals(want.getUnitPrice(), got.getUnitPrice());
+      }
+    }
+  }
+
+  @Test
+  void materializesGroceriesOnFirstUse() throws IOException {
+    FoodStorage storage = new FoodStorage(MappedSnapshot.open(file));
+    AtomicInteger events = new AtomicInteger();
+    storage.addListener(new StorageListener() {
+      @Override
+      public void lotAdded(Grocery lot) {
+        events.incrementAndGet();
+      }
+    });
+
+    assertEquals(3.0, storage.getTotalAmount("Milk"));
+    storage.addGrocery(new Grocery("Flour", 0.5, Unit.KILOGRAM, TODAY.plusDays(3), 20.0));
+    assertEquals(2.0, storage.getTotalAmount("Flour"));
+    // Only the new lot is reported, the snapshot's lots were there all along
+    assertEquals(1, events.get());
+
+    storage.removeAmounts(Map.of("Milk", 2.5, "Eggs", 0.5));
+    assertEquals(0.5, storage.getTotalAmount("Milk"), 1e-9);
+    assertEquals(0.0, storage.getTotalAmount("Eggs"), 1e-9);
+  }
+
+  @Test
+  void expiryQueriesSeeUnloadedGroceries() throws IOException {
+    FoodStorage storage = new FoodStorage(MappedSnapshot.open(file));
+    assertEquals(original.valueOfExpiredGroceries(TODAY),
+        storage.valueOfExpiredGroceries(TODAY), 1e-9);
+    assertEquals(2, storage.expiredGroceries(TODAY).size());
+
+    storage.removeCurrentlyExpiredGroceries();
+    assertEquals(2.0, storage.getTotalAmount("Milk"));
+    assertTrue(storage.getGroceries().get("Eggs").isEmpty());
+  }
+
+  @Test
+  void cookBookSeesUnloadedGroceries() throws IOException {
+    CookBook cookBook = new CookBook(new FoodStorage(MappedSnapshot.open(file)));
+    cookBook.addRecipe("Porridge", "Warm", "Boil", List.of(
+        new Grocery("Milk", 2.5, Unit.LITRE, TODAY, 1.0),
+        new Grocery("Flour", 1.0, Unit.KILOGRAM, TODAY, 1.0)), 1);
+    assertTrue(cookBook.checkRecipeAvailability("Porridge"));
+    cookBook.prepareRecipe("Porridge");
+    assertFalse(cookBook.checkRecipeAvailability("Porridge"));
+  }
+
+  @Test
+  void skipsLotsSetToZero() throws IOException {
+    original.getGroceries().get("Flour").getFirst().setAmount(0);
+    MappedSnapshot.write(file, original);
+
+    FoodStorage storage = new FoodStorage(MappedSnapshot.open(file));
+    assertEquals(0.0, storage.getTotalAmount("Flour"));
+    assertEquals(3.0, storage.getTotalAmount("Milk"), 1e-9);
+    assertEquals(3, MappedSnapshot.open(file).lotCount());
+  }
+
+  @Test
+  void rejectsDamagedFiles() throws IOException {
+    byte[] bytes = Files.readAllBytes(file);
+    Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+    assertThrows(IOException.class, () -> MappedSnapshot.open(file));
+
+    Files.write(file, new byte[] {1, 2, 3, 4});
+    assertThrows(IOException.class, () -> MappedSnapshot.open(file));
+  }
+}
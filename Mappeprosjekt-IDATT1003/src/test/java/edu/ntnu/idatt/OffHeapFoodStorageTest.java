@@ -0,0 +1,128 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.GroceryStorage;
+import edu.ntnu.idatt.models.OffHeapFoodStorage;
+import edu.ntnu.idatt.models.Unit;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OffHeapFoodStorageTest {
+
+  private static final LocalDate TODAY = LocalDate.now();
+
+  private OffHeapFoodStorage storage;
+
+  @BeforeEach
+  void setUp() {
+    storage = new OffHeapFoodStorage();
+    storage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, TODAY.plusDays(9), 16.0));
+    storage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, TODAY.minusDays(2), 15.0));
+    storage.addGrocery(new Grocery("Flour", 1.5, Unit.KILOGRAM, TODAY.plusDays(30), 20.0));
+  }
+
+  @AfterEach
+  void tearDown() {
+    storage.close();
+  }
+
+  @Test
+  void removeAmountTakesOldestLotFirst() {
+    storage.removeAmount("Milk", 2.5);
+
+    List<Grocery> milk = storage.getGroceries().get("Milk");
+    assertEquals(1, milk.size());
+    assertEquals(TODAY.plusDays(9), milk.get(0).getExpiryDate());
+    assertEquals(Unit.LITRE, milk.get(0).getUnit());
+    assertEquals(0.5, storage.getTotalAmount("Milk"), 1e-9);
+    assertEquals(2, storage.lotCount());
+  }
+
+  @Test
+  void expiryQueriesAndSweep() {
+    assertEquals(30.0, storage.valueOfExpiredGroceries(TODAY));
+    assertEquals(1, storage.expiredGroceries(TODAY).size());
+
+    storage.removeCurrentlyExpiredGroceries();
+    assertEquals(1.0, storage.getTotalAmount("Milk"));
+    assertEquals(0.0, storage.valueOfExpiredGroceries(TODAY));
+  }
+
+  @Test
+  void reusesFreedRecords() {
+    long allocated = storage.offHeapBytes();
+    for (int i = 0; i < 100_000; i++) {
+      storage.addGrocery(new Grocery("Eggs", 1.0, Unit.KILOGRAM, TODAY.plusDays(5), 3.0));
+      storage.removeAmount("Eggs", 1.0);
+    }
+    assertEquals(allocated, storage.offHeapBytes());
+  }
+
+  @Test
+  void closedStorageCannotBeUsed() {
+    storage.close();
+    assertThrows(IllegalStateException.class, () -> storage.getTotalAmount("Milk"));
+    assertThrows(IllegalStateException.class, () -> storage.addGrocery(
+        new Grocery("Milk", 1.0, Unit.LITRE, TODAY, 1.0)));
+    assertThrows(IllegalStateException.class, storage::offHeapBytes);
+    assertDoesNotThrow(storage::close);
+  }
+
+  @Test
+  void behavesLikeFoodStorageUnderRandomOperations() {
+    GroceryStorage reference = new FoodStorage();
+    Random random = new Random(12);
+    String[] names = {"Milk", "Flour", "Eggs", "Butter", "Cheese"};
+    try (OffHeapFoodStorage offHeap = new OffHeapFoodStorage()) {
+      for (int step = 0; step < 20_000; step++) {
+        String name = names[random.nextInt(names.length)];
+        int operation = random.nextInt(10);
+        if (operation < 5) {
+          Grocery lot = new Grocery(name, 0.01 + random.nextDouble() * 3, Unit.KILOGRAM,
+              TODAY.plusDays(random.nextInt(60) - 5), random.nextDouble() * 20);
+          offHeap.addGrocery(lot);
+          reference.addGrocery(lot);
+        } else if (operation < 9) {
+          double amount = random.nextDouble() * reference.getTotalAmount(name);
+          if (amount > 0) {
+            reference.removeAmount(name, amount);
+            offHeap.removeAmount(name, amount);
+          }
+        } else {
+          reference.removeCurrentlyExpiredGroceries();
+          offHeap.removeCurrentlyExpiredGroceries();
+        }
+
+        for (String n : names) {
+          assertEquals(reference.getTotalAmount(n), offHeap.getTotalAmount(n), 1e-6);
+        }
+        if (step % 500 == 0) {
+          LocalDate cutoff = TODAY.plusDays(random.nextInt(40));
+          assertEquals(reference.valueOfExpiredGroceries(cutoff),
+              offHeap.valueOfExpiredGroceries(cutoff), 1e-6);
+          assertEquals(reference.expiredGroceries(cutoff).size(),
+              offHeap.expiredGroceries(cutoff).size());
+          Map<String, List<Grocery>> expected = reference.getGroceries();
+          Map<String, List<Grocery>> actual = offHeap.getGroceries();
+          for (String n : expected.keySet()) {
+            List<Grocery> lots = actual.getOrDefault(n, List.of());
+            assertEquals(expected.get(n).size(), lots.size());
+            for (int i = 0; i < lots.size(); i++) {
+              assertEquals(expected.get(n).get(i).getExpiryDate(), lots.get(i).getExpiryDate());
+            }
+          }
+        }
+      }
+    }
+  }
+}
@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import edu.ntnu.idatt.models.Grocery;
 import edu.ntnu.idatt.models.Recipe;
+import edu.ntnu.idatt.models.ScaledRecipe;
 import edu.ntnu.idatt.models.Unit;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -68,6 +69,55 @@ class RecipeTest {
     assertEquals(3, ingredients.get(2).getAmount()); // Eggs
   }
 
+  @Test
+  void testRepeatedScalingDoesNotDrift() {
+    for (int i = 0; i < 1000; i++) {
+      recipe.setPortions(3);
+      recipe.setPortions(7);
+    }
+    recipe.setPortions(4);
+
+    assertEquals(500, recipe.getIngredients().get(0).getAmount());
+    assertEquals(1, recipe.getIngredients().get(1).getAmount());
+  }
+
+  @Test
+  void testScaledViewLeavesRecipeUnchanged() {
+    ScaledRecipe doubled = recipe.scaledTo(8);
+    recipe.setPortions(2);
+
+    assertEquals(8, doubled.getPortions());
+    assertEquals(3, doubled.getIngredientCount());
+    assertEquals("Milk", doubled.getIngredientName(1));
+    assertEquals(1000, doubled.getAmount(0));
+    assertEquals(12, doubled.getAmount(2));
+    assertEquals(250, recipe.getIngredients().get(0).getAmount());
+    assertThrows(IllegalArgumentException.class, () -> recipe.scaledTo(0));
+  }
+
+  @Test
+  void testIngredientsAreCopied() {
+    List<Grocery> ingredients = new ArrayList<>();
+    ingredients.add(new Grocery("Flour", 500, Unit.KILOGRAM, LocalDate.of(2025, 1, 1), 20));
+    ingredients.add(new Grocery("Milk", 1, Unit.LITRE, LocalDate.of(2024, 12, 31), 15));
+    Recipe bread = new Recipe("Bread", "Bake.", ingredients, 2);
+    ingredients.remove(0);
+    ingredients.add(new Grocery("Salt", 1, Unit.KILOGRAM, LocalDate.of(2025, 1, 1), 5));
+
+    bread.setPortions(4);
+    assertEquals(2, bread.getIngredients().size());
+    assertEquals(1000, bread.getIngredients().get(0).getAmount());
+    assertEquals(2, bread.getIngredients().get(1).getAmount());
+    assertThrows(UnsupportedOperationException.class, () -> bread.getIngredients().clear());
+  }
+
+  @Test
+  void testRecipeWithoutIngredients() {
+    Recipe water = new Recipe("Water", "Pour.", null, 1);
+    assertTrue(water.getIngredients().isEmpty());
+    assertEquals(0, water.scaledTo(3).getIngredientCount());
+  }
+
   @Test
   void testSetPortionsInvalid() {
     assertThrows(IllegalArgumentException.class, () -> recipe.setPortions(0));
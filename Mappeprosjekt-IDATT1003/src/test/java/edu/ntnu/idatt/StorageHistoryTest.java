@@ -0,0 +1,151 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.StorageHistory;
+import edu.ntnu.idatt.models.Unit;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class StorageHistoryTest {
+
+  private static final LocalDate START = LocalDate.of(2025, 1, 1);
+  private static final Instant START_TIME = START.atStartOfDay(ZoneOffset.UTC).toInstant();
+
+  @Test
+  void answersAsOfEarlierTimes() {
+    StepClock clock = new StepClock(START_TIME);
+    FoodStorage foodStorage = new FoodStorage();
+    foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, START.plusDays(3), 15.0));
+    StorageHistory history =
+        new StorageHistory(foodStorage, clock, new StorageHistory.Settings(2));
+
+    clock.advance(Duration.ofHours(1));
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, START.plusDays(4), 15.0));
+    clock.advance(Duration.ofHours(1));
+    foodStorage.removeAmount("Milk", 2.5);
+    clock.advance(Duration.ofHours(1));
+    Grocery last = foodStorage.getGroceries().get("Milk").getFirst();
+    last.setExpiryDate(LocalDate.now().plusDays(1));
+
+    assertEquals(2.0, history.getTotalAmount("Milk", START_TIME), 1e-9);
+    assertEquals(3.0, history.getTotalAmount("Milk", START_TIME.plusSeconds(3600)), 1e-9);
+    assertEquals(0.5, history.getTotalAmount("Milk", START_TIME.plusSeconds(7200)), 1e-9);
+    assertEquals(0.5, history.getTotalAmount("Milk", START_TIME.plusSeconds(3 * 3600)), 1e-9);
+    assertEquals(0.0, history.getTotalAmount("Flour", START_TIME.plusSeconds(3600)));
+
+    LocalDate cutoff = START.plusDays(5);
+    assertEquals(30.0, history.valueOfExpiredGroceries(cutoff, START_TIME), 1e-9);
+    assertEquals(45.0,
+        history.valueOfExpiredGroceries(cutoff, START_TIME.plusSeconds(3600)), 1e-9);
+    assertEquals(7.5,
+        history.valueOfExpiredGroceries(cutoff, START_TIME.plusSeconds(7200)), 1e-9);
+    assertEquals(0.0,
+        history.valueOfExpiredGroceries(cutoff, START_TIME.plusSeconds(3 * 3600)), 1e-9);
+    assertEquals(6, history.size());
+  }
+
+  @Test
+  void matchesTheStorageAtEveryRecordedMoment() {
+    StepClock clock = new StepClock(START_TIME);
+    FoodStorage foodStorage = new FoodStorage();
+    StorageHistory history =
+        new StorageHistory(foodStorage, clock, new StorageHistory.Settings(16));
+    Random random = new Random(7);
+    List<Instant> times = new ArrayList<>();
+    List<double[]> expected = new ArrayList<>();
+    LocalDate cutoff = START.plusDays(20);
+
+    for (int step = 0; step < 500; step++) {
+      clock.advance(Duration.ofMinutes(1 + random.nextInt(90)));
+      String name = "Grocery" + random.nextInt(5);
+      if (random.nextInt(3) == 0 && foodStorage.getTotalAmount(name) > 1.0) {
+        foodStorage.removeAmount(name, 0.5 + random.nextDouble() * 0.5);
+      } else {
+        foodStorage.addGrocery(new Grocery(name, 1.0 + random.nextInt(3), Unit.KILOGRAM,
+            START.plusDays(random.nextInt(60)), 1.0 + random.nextInt(10)));
+      }
+      times.add(clock.instant());
+      expected.add(new double[] {foodStorage.getTotalAmount("Grocery0"),
+          foodStorage.valueOfExpiredGroceries(cutoff)});
+    }
+
+    for (int i = 0; i < times.size(); i++) {
+      assertEquals(expected.get(i)[0], history.getTotalAmount("Grocery0", times.get(i)), 1e-6);
+      assertEquals(expected.get(i)[1],
+          history.valueOfExpiredGroceries(cutoff, times.get(i)), 1e-6);
+    }
+  }
+
+  @Test
+  void keepsNegativeValuesAndUnknownNames() {
+    StepClock clock = new StepClock(START_TIME);
+    FoodStorage foodStorage = new FoodStorage();
+    StorageHistory history =
+        new StorageHistory(foodStorage, clock, StorageHistory.Settings.defaults());
+    int known = foodStorage.snapshotTotals().length;
+
+    clock.advance(Duration.ofHours(1));
+    foodStorage.addGrocery(new Grocery("Deposit", 2.0, Unit.KILOGRAM, START.plusDays(1), -3.0));
+    clock.advance(Duration.ofHours(1));
+    foodStorage.removeAmount("Deposit", 2.0);
+
+    Instant held = START_TIME.plusSeconds(3600);
+    assertEquals(-6.0, history.valueOfExpiredGroceries(START.plusDays(5), held), 1e-9);
+    assertEquals(0.0, history.valueOfExpiredGroceries(START.plusDays(5), clock.instant()));
+    assertEquals(0.0, history.getTotalAmount("Milk", held));
+    assertEquals(known + 1, foodStorage.snapshotTotals().length);
+  }
+
+  @Test
+  void rejectsTimesBeforeTheHistory() {
+    StepClock clock = new StepClock(START_TIME);
+    StorageHistory history = new StorageHistory(new FoodStorage(), clock,
+        StorageHistory.Settings.defaults());
+
+    assertThrows(IllegalArgumentException.class,
+        () -> history.getTotalAmount("Milk", START_TIME.minusSeconds(1)));
+    assertThrows(IllegalArgumentException.class,
+        () -> history.valueOfExpiredGroceries(null, START_TIME));
+    assertThrows(IllegalArgumentException.class, () -> new StorageHistory.Settings(0));
+  }
+
+  private static final class StepClock extends Clock {
+
+    private volatile Instant instant;
+
+    StepClock(Instant instant) {
+      this.instant = instant;
+    }
+
+    void advance(Duration duration) {
+      instant = instant.plus(duration);
+    }
+
+    @Override
+    public ZoneId getZone() {
+      return ZoneOffset.UTC;
+    }
+
+    @Override
+    public Clock withZone(ZoneId zone) {
+      return this;
+    }
+
+    @Override
+    public Instant instant() {
+      return instant;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.Unit;
+import edu.ntnu.idatt.persistence.StorageJournal;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class StorageJournalTest {
+
+  private static final StorageJournal.Settings SETTINGS =
+      new StorageJournal.Settings(64, 5, 1_000_000);
+
+  @TempDir
+  Path directory;
+
+  @Test
+  void recoversEveryKindOfChange() throws IOException {
+    FoodStorage foodStorage = new FoodStorage();
+    try (StorageJournal journal = StorageJournal.open(directory, foodStorage, SETTINGS)) {
+      LocalDate today = LocalDate.now();
+      foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, today.plusDays(3), 15.0));
+      foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, today.plusDays(9), 16.0));
+      Grocery flour = new Grocery("Flour", 1.0, Unit.KILOGRAM, today.plusDays(30), 20.0);
+      foodStorage.addGrocery(flour);
+      Grocery old = new Grocery("Eggs", 0.5, Unit.KILOGRAM, today.plusDays(1), 3.0);
+      foodStorage.addGrocery(old);
+
+      foodStorage.removeAmount("Milk", 2.5);
+      flour.setExpiryDate(today.plusDays(60));
+      flour.setAmount(0.75);
+      foodStorage.removeLot(old);
+      journal.sync();
+    }
+
+    FoodStorage recovered = recover(SETTINGS);
+    assertSameContents(foodStorage, recovered);
+    assertEquals(0.5, recovered.getTotalAmount("Milk"), 1e-9);
+    assertEquals(LocalDate.now().plusDays(60),
+        recovered.getGroceries().get("Flour").get(0).getExpiryDate());
+    assertTrue(recovered.getGroceries().get("Eggs") == null
+        || recovered.getGroceries().get("Eggs").isEmpty());
+  }
+
+  @Test
+  void recoversFromSnapshotAndTail() throws IOException {
+    StorageJournal.Settings settings = new StorageJournal.Settings(16, 1, 500);
+    FoodStorage foodStorage = new FoodStorage();
+    Random random = new Random(8);
+    try (StorageJournal journal = StorageJournal.open(directory, foodStorage, settings)) {
+      for (int i = 0; i < 5000; i++) {
+        String name = "Grocery" + random.nextInt(20);
+        if (random.nextBoolean() && foodStorage.getTotalAmount(name) >= 1.0) {
+          foodStorage.removeAmount(name, 1.0);
+        } else {
+          foodStorage.addGrocery(new Grocery(name, 1.0 + random.nextInt(3), Unit.KILOGRAM,
+              LocalDate.now().plusDays(1 + random.nextInt(100)), 2.5));
+        }
+        if (i % 250 == 0) {
+          journal.sync();
+        }
+      }
+    }
+
+    assertTrue(Files.exists(directory.resolve("snapshot.bin")));
+    try (Stream<Path> files = Files.list(directory)) {
+      assertTrue(files.filter(file -> file.getFileName().toString().endsWith(".log")).count() < 5);
+    }
+    assertSameContents(foodStorage, recover(settings));
+  }
+
+  @Test
+  void ignoresTornRecordAtTheEnd() throws IOException {
+    FoodStorage foodStorage = new FoodStorage();
+    try (StorageJournal journal = StorageJournal.open(directory, foodStorage, SETTINGS)) {
+      foodStorage.addGrocery(
+          new Grocery("Milk", 2.0, Unit.LITRE, LocalDate.now().plusDays(3), 15.0));
+      journal.sync();
+    }
+    Path segment;
+    try (Stream<Path> files = Files.list(directory)) {
+      segment = files.filter(file -> file.getFileName().toString().endsWith(".log"))
+          .filter(file -> file.toFile().length() > 0).findFirst().orElseThrow();
+    }
+    Files.write(segment, new byte[] {0, 0, 0, 40, 2, 0, 0}, StandardOpenOption.APPEND);
+
+    FoodStorage recovered = new FoodStorage();
+    try (StorageJournal journal = StorageJournal.open(directory, recovered, SETTINGS)) {
+      assertSameContents(foodStorage, recovered);
+      // Journaling continues in a fresh segment, after the torn record
+      recovered.addGrocery(
+          new Grocery("Milk", 1.0, Unit.LITRE, LocalDate.now().plusDays(4), 15.0));
+      journal.sync();
+    }
+    assertEquals(3.0, recover(SETTINGS).getTotalAmount("Milk"), 1e-9);
+  }
+
+  @Test
+  void recoversEmptiedLotsFromSnapshot() throws IOException {
+    StorageJournal.Settings settings = new StorageJournal.Settings(1, 1, 2);
+    FoodStorage foodStorage = new FoodStorage();
+    try (StorageJournal journal = StorageJournal.open(directory, foodStorage, settings)) {
+      Grocery milk = new Grocery("Milk", 2.0, Unit.LITRE, LocalDate.now().plusDays(3), 15.0);
+      foodStorage.addGrocery(milk);
+      milk.setAmount(0);
+      journal.sync();
+      foodStorage.addGrocery(
+          new Grocery("Flour", 1.0, Unit.KILOGRAM, LocalDate.now().plusDays(30), 20.0));
+      journal.sync();
+    }
+
+    assertTrue(Files.exists(directory.resolve("snapshot.bin")));
+    FoodStorage recovered = recover(settings);
+    assertSameContents(foodStorage, recovered);
+    assertEquals(0.0, recovered.getTotalAmount("Milk"));
+  }
+
+  @Test
+  void recoversChangesFromConcurrentWriters() throws Exception {
+    FoodStorage foodStorage = new FoodStorage();
+    try (StorageJournal journal = StorageJournal.open(directory, foodStorage, SETTINGS)) {
+      List<Thread> writers = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        String name = "Grocery" + t;
+        writers.add(new Thread(() -> {
+          for (int i = 0; i < 500; i++) {
+            foodStorage.addGrocery(new Grocery(name, 1.0, Unit.KILOGRAM,
+                LocalDate.now().plusDays(1 + i % 50), 2.0));
+            if (i % 2 == 1) {
+              foodStorage.removeAmount(name, 1.5);
+            }
+          }
+        }));
+      }
+      writers.forEach(Thread::start);
+      for (Thread writer : writers) {
+        writer.join();
+      }
+      journal.sync();
+    }
+
+    FoodStorage recovered = recover(SETTINGS);
+    assertSameContents(foodStorage, recovered);
+    assertEquals(125.0, recovered.getTotalAmount("Grocery0"), 1e-9);
+  }
+
+  @Test
+  void rejectsInvalidSettings() {
+    assertThrows(IllegalArgumentException.class, () -> new StorageJournal.Settings(0, 1, 1));
+    assertThrows(IllegalArgumentException.class,
+        () -> StorageJournal.open(null, new FoodStorage(), SETTINGS));
+  }
+
+  private FoodStorage recover(StorageJournal.Settings settings) throws IOException {
+    FoodStorage recovered = new FoodStorage();
+    StorageJournal.open(directory, recovered, settings).close();
+    return recovered;
+  }
+
+  private static void assertSameContents(FoodStorage expected, FoodStorage actual) {
+    Map<String, List<Grocery>> expectedLots = expected.getGroceries();
+    Map<String, List<Grocery>> actualLots = actual.getGroceries();
+    for (String name : expectedLots.keySet()) {
+      assertEquals(expected.getTotalAmount(name), actual.getTotalAmount(name), 1e-9, name);
+      List<Grocery> expectedList = expectedLots.get(name);
+      List<Grocery> actualList = actualLots.getOrDefault(name, List.of());
+      assertEquals(expectedList.size(), actualList.size(), name);
+      for (int i = 0; i < expectedList.size(); i++) {
+        assertEquals(expectedList.get(i).getLotId(), actualList.get(i).getLotId());
+        assertEquals(expectedList.get(i).getAmount(), actualList.get(i).getAmount(), 1e-9);
+        assertEquals(expectedList.get(i).getExpiryDate(), actualList.get(i).getExpiryDate());
+        assertEquals(expectedList.get(i).getUnitPrice(), actualList.get(i).getUnitPrice());
+      }
+    }
+  }
+}
@@ -0,0 +1,273 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.StockBatch;
+import edu.ntnu.idatt.models.StorageListener;
+import edu.ntnu.idatt.models.StoragePipeline;
+import edu.ntnu.idatt.models.Unit;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StoragePipelineTest {
+
+  private static final LocalDate EXPIRY = LocalDate.now().plusDays(10);
+
+  private FoodStorage foodStorage;
+  private CookBook cookBook;
+
+  @BeforeEach
+  void setUp() {
+    foodStorage = new FoodStorage();
+    cookBook = new CookBook(foodStorage);
+  }
+
+  @Test
+  void completedChangesAreVisibleToReads() {
+    try (StoragePipeline pipeline =
+        StoragePipeline.start(foodStorage, cookBook, StoragePipeline.Settings.defaults())) {
+      pipeline.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, EXPIRY, 15.0)).join();
+      assertEquals(2.0, pipeline.getTotalAmount("Milk"), 1e-9);
+
+      pipeline.removeAmount("Milk", 0.5).join();
+      assertEquals(1.5, pipeline.getTotalAmount("Milk"), 1e-9);
+      assertEquals(1.5, foodStorage.getTotalAmount("Milk"), 1e-9);
+      assertEquals(0.0, pipeline.getTotalAmount("Flour"));
+    }
+  }
+
+  @Test
+  void failedWithdrawalLeavesOthersApplied() {
+    try (StoragePipeline pipeline =
+        StoragePipeline.start(foodStorage, cookBook, StoragePipeline.Settings.defaults())) {
+      CompletableFuture<Void> add =
+          pipeline.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, EXPIRY, 15.0));
+      CompletableFuture<Void> tooMuch = pipeline.removeAmount("Milk", 5.0);
+      CompletableFuture<Void> enough = pipeline.removeAmount("Milk", 0.75);
+      CompletableFuture<Void> missing = pipeline.removeAmount("Flour", 1.0);
+
+      add.join();
+      enough.join();
+      CompletionException failure = assertThrows(CompletionException.class, tooMuch::join);
+      assertInstanceOf(IllegalArgumentException.class, failure.getCause());
+      assertThrows(CompletionException.class, missing::join);
+      assertEquals(0.25, pipeline.getTotalAmount("Milk"), 1e-9);
+    }
+  }
+
+  @Test
+  void concurrentProducersLoseNoChanges() throws Exception {
+    StoragePipeline.Settings settings = new StoragePipeline.Settings(64, 16);
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try (StoragePipeline pipeline = StoragePipeline.start(foodStorage, cookBook, settings)) {
+      List<Future<?>> producers = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        String name = "Grocery" + t;
+        producers.add(executor.submit(() -> {
+          List<CompletableFuture<Void>> futures = new ArrayList<>();
+          for (int i = 0; i < 500; i++) {
+            futures.add(pipeline.addGrocery(new Grocery(name, 1.0, Unit.KILOGRAM, EXPIRY, 2.0)));
+            if (i % 2 == 1) {
+              futures.add(pipeline.removeAmount(name, 0.5));
+            }
+          }
+          futures.forEach(CompletableFuture::join);
+        }));
+      }
+      for (Future<?> producer : producers) {
+        producer.get();
+      }
+      for (int t = 0; t < 4; t++) {
+        assertEquals(375.0, pipeline.getTotalAmount("Grocery" + t), 1e-9);
+        assertEquals(375.0, foodStorage.getTotalAmount("Grocery" + t), 1e-9);
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  void preparesRecipesAndAppliesBatchesInQueueOrder() {
+    List<Grocery> ingredients = new ArrayList<>();
+    ingredients.add(new Grocery("Milk", 1.0, Unit.LITRE, EXPIRY, 15.0));
+    cookBook.addRecipe("Milkshake", "Cold", "Blend.", ingredients, 1);
+    try (StoragePipeline pipeline =
+        StoragePipeline.start(foodStorage, cookBook, StoragePipeline.Settings.defaults())) {
+      assertFalse(pipeline.checkRecipeAvailability("Milkshake"));
+      pipeline.apply(new StockBatch()
+          .add(new Grocery("Milk", 1.5, Unit.LITRE, EXPIRY, 15.0))).join();
+      assertTrue(pipeline.checkRecipeAvailability("Milkshake"));
+
+      pipeline.prepareRecipe("Milkshake").join();
+      assertFalse(pipeline.checkRecipeAvailability("Milkshake"));
+      assertThrows(CompletionException.class, () -> pipeline.prepareRecipe("Milkshake").join());
+      assertEquals(0.5, pipeline.getTotalAmount("Milk"), 1e-9);
+    }
+  }
+
+  @Test
+  void failingListenerFailsItsCommandsAndKeepsTheWriterRunning() {
+    foodStorage.addListener(new StorageListener() {
+      @Override
+      public void lotAdded(Grocery lot) {
+        if (lot.getName().equals("Poison")) {
+          throw new IllegalStateException("Listener failed");
+        }
+      }
+    });
+    try (StoragePipeline pipeline =
+        StoragePipeline.start(foodStorage, cookBook, StoragePipeline.Settings.defaults())) {
+      CompletableFuture<Void> poisoned =
+          pipeline.addGrocery(new Grocery("Poison", 1.0, Unit.KILOGRAM, EXPIRY, 1.0));
+      CompletableFuture<Void> poisonedBatch = pipeline.apply(new StockBatch()
+          .add(new Grocery("Poison", 1.0, Unit.KILOGRAM, EXPIRY, 1.0)));
+
+      CompletionException failure = assertThrows(CompletionException.class, poisoned::join);
+      assertInstanceOf(IllegalStateException.class, failure.getCause());
+      assertThrows(CompletionException.class, poisonedBatch::join);
+
+      pipeline.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, EXPIRY, 15.0)).join();
+      assertEquals(1.0, pipeline.getTotalAmount("Milk"), 1e-9);
+    }
+  }
+
+  @Test
+  void everyAcceptedCommandCompletesWhenClosedUnderLoad() throws Exception {
+    StoragePipeline pipeline =
+        StoragePipeline.start(foodStorage, cookBook, new StoragePipeline.Settings(4, 2));
+    ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<List<CompletableFuture<Void>>>> producers = new ArrayList<>();
+      for (int t = 0; t < 4; t++) {
+        producers.add(executor.submit(() -> {
+          List<CompletableFuture<Void>> accepted = new ArrayList<>();
+          try {
+            while (true) {
+              accepted.add(
+                  pipeline.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, EXPIRY, 15.0)));
+            }
+          } catch (IllegalStateException closed) {
+            return accepted;
+          }
+        }));
+      }
+      Thread.sleep(20);
+      pipeline.close();
+
+      int accepted = 0;
+      for (Future<List<CompletableFuture<Void>>> producer : producers) {
+        for (CompletableFuture<Void> future : producer.get(5, TimeUnit.SECONDS)) {
+          future.get(5, TimeUnit.SECONDS);
+          accepted++;
+        }
+      }
+      assertEquals(accepted, foodStorage.getTotalAmount("Milk"), 1e-9);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  void withdrawalQueuedBeforeAnAdditionTakesTheOlderLot() throws InterruptedException {
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, EXPIRY, 15.0));
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch gate = new CountDownLatch(1);
+    foodStorage.addListener(holdingWriterOn("Gate", entered, gate, false));
+    try (StoragePipeline pipeline =
+        StoragePipeline.start(foodStorage, cookBook, StoragePipeline.Settings.defaults())) {
+      pipeline.addGrocery(new Grocery("Gate", 1.0, Unit.KILOGRAM, EXPIRY, 1.0));
+      entered.await();
+      // Queued together while the writer is held, so they are drained as one batch
+      CompletableFuture<Void> withdrawn = pipeline.removeAmount("Milk", 1.0);
+      LocalDate sooner = LocalDate.now().plusDays(1);
+      CompletableFuture<Void> added =
+          pipeline.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, sooner, 15.0));
+      gate.countDown();
+      CompletableFuture.allOf(withdrawn, added).join();
+
+      List<Grocery> milk = foodStorage.getGroceries().get("Milk");
+      assertEquals(1, milk.size());
+      assertEquals(sooner, milk.getFirst().getExpiryDate());
+    }
+  }
+
+  @Test
+  void interruptedWriterFailsQueuedCommands() throws Exception {
+    CountDownLatch entered = new CountDownLatch(1);
+    CountDownLatch gate = new CountDownLatch(1);
+    foodStorage.addListener(holdingWriterOn("Gate", entered, gate, true));
+    StoragePipeline pipeline =
+        StoragePipeline.start(foodStorage, cookBook, StoragePipeline.Settings.defaults());
+    CompletableFuture<Void> held =
+        pipeline.addGrocery(new Grocery("Gate", 1.0, Unit.KILOGRAM, EXPIRY, 1.0));
+    entered.await();
+    CompletableFuture<Void> queued =
+        pipeline.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, EXPIRY, 15.0));
+    gate.countDown();
+
+    held.get(5, TimeUnit.SECONDS);
+    ExecutionException failure =
+        assertThrows(ExecutionException.class, () -> queued.get(5, TimeUnit.SECONDS));
+    assertInstanceOf(IllegalStateException.class, failure.getCause());
+    assertThrows(IllegalStateException.class, () -> pipeline.removeAmount("Gate", 1.0));
+    pipeline.close();
+    assertEquals(0.0, foodStorage.getTotalAmount("Milk"));
+  }
+
+  @Test
+  void closedPipelineRejectsCommands() {
+    StoragePipeline pipeline =
+        StoragePipeline.start(foodStorage, cookBook, StoragePipeline.Settings.defaults());
+    CompletableFuture<Void> queued =
+        pipeline.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, EXPIRY, 15.0));
+    pipeline.close();
+
+    assertTrue(queued.isDone());
+    assertEquals(1.0, foodStorage.getTotalAmount("Milk"), 1e-9);
+    assertThrows(IllegalStateException.class, () -> pipeline.removeAmount("Milk", 0.5));
+    assertThrows(IllegalArgumentException.class, () -> new StoragePipeline.Settings(0, 1));
+  }
+
+  /**
+   * Holds the writer inside the batch that adds a lot of the given name until the gate opens,
+   * optionally interrupting it on the way out.
+   */
+  private static StorageListener holdingWriterOn(String name, CountDownLatch entered,
+      CountDownLatch gate, boolean interrupt) {
+    return new StorageListener() {
+      @Override
+      public void lotAdded(Grocery lot) {
+        if (!lot.getName().equals(name)) {
+          return;
+        }
+        entered.countDown();
+        try {
+          gate.await();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+        if (interrupt) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    };
+  }
+}
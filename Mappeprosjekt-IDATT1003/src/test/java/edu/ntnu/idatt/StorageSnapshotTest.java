@@ -0,0 +1,158 @@
+package edu.ntnu.idatt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import edu.ntnu.idatt.models.CookBook;
+import edu.ntnu.idatt.models.FoodStorage;
+import edu.ntnu.idatt.models.Grocery;
+import edu.ntnu.idatt.models.StockBatch;
+import edu.ntnu.idatt.models.StorageSnapshot;
+import edu.ntnu.idatt.models.Unit;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StorageSnapshotTest {
+
+  private static final LocalDate TODAY = LocalDate.now();
+
+  private FoodStorage foodStorage;
+
+  @BeforeEach
+  void setUp() {
+    foodStorage = new FoodStorage();
+    foodStorage.addGrocery(new Grocery("Milk", 2.0, Unit.LITRE, TODAY.minusDays(2), 15.0));
+    foodStorage.addGrocery(new Grocery("Milk", 1.0, Unit.LITRE, TODAY.plusDays(5), 15.0));
+    foodStorage.addGrocery(new Grocery("Flour", 3.0, Unit.KILOGRAM, TODAY.plusDays(90), 20.0));
+  }
+
+  @Test
+  void snapshotIgnoresLaterChanges() {
+    try (StorageSnapshot snapshot = foodStorage.snapshot()) {
+      foodStorage.removeAmount("Milk", 2.5);
+      foodStorage.addGrocery(new Grocery("Flour", 1.0, Unit.KILOGRAM, TODAY.plusDays(30), 20.0));
+      foodStorage.addGrocery(new Grocery("Eggs", 12.0, Unit.KILOGRAM, TODAY.plusDays(20), 3.0));
+      foodStorage.removeCurrentlyExpiredGroceries();
+
+      assertEquals(3.0, snapshot.getTotalAmount("Milk"), 1e-9);
+      assertEquals(3.0, snapshot.getTotalAmount("Flour"), 1e-9);
+      assertEquals(0.0, snapshot.getTotalAmount("Eggs"));
+      assertEquals(30.0, snapshot.valueOfExpiredGroceries(TODAY), 1e-9);
+      assertEquals(2, snapshot.getGroceries().size());
+
+      assertEquals(0.5, foodStorage.getTotalAmount("Milk"), 1e-9);
+      assertEquals(4.0, foodStorage.getTotalAmount("Flour"), 1e-9);
+    }
+  }
+
+  @Test
+  void snapshotKeepsLotsAsTheyWere() {
+    try (StorageSnapshot snapshot = foodStorage.snapshot()) {
+      Grocery fresh = foodStorage.getGroceries().get("Milk").getLast();
+      fresh.setExpiryDate(TODAY.plusDays(1));
+
+      List<Grocery> expired = snapshot.expiredGroceries(TODAY.plusDays(2));
+      assertEquals(1, expired.size());
+      assertEquals(2.0, expired.getFirst().getAmount(), 1e-9);
+      Grocery kept = snapshot.getGroceries().get("Milk").getLast();
+      assertEquals(fresh.getLotId(), kept.getLotId());
+      assertEquals(TODAY.plusDays(5), kept.getExpiryDate());
+      assertEquals(1.0, kept.getAmount(), 1e-9);
+    }
+  }
+
+  @Test
+  void snapshotSkipsLotsSetToZero() {
+    foodStorage.getGroceries().get("Milk").getFirst().setAmount(0);
+    int known = foodStorage.snapshotTotals().length;
+
+    try (StorageSnapshot snapshot = foodStorage.snapshot()) {
+      foodStorage.removeAmount("Milk", 0.5);
+
+      assertEquals(1.0, snapshot.getTotalAmount("Milk"), 1e-9);
+      assertEquals(1, snapshot.getGroceries().get("Milk").size());
+      assertEquals(0.0, snapshot.getTotalAmount("Eggs"));
+      assertEquals(known, foodStorage.snapshotTotals().length);
+    }
+  }
+
+  @Test
+  void snapshotsTakenAtDifferentTimesDiffer() {
+    StorageSnapshot before = foodStorage.snapshot();
+    foodStorage.apply(new StockBatch().withdraw("Flour", 1.0));
+    StorageSnapshot after = foodStorage.snapshot();
+    foodStorage.apply(new StockBatch().withdraw("Flour", 1.0));
+
+    assertEquals(3.0, before.getTotalAmount("Flour"), 1e-9);
+    assertEquals(2.0, after.getTotalAmount("Flour"), 1e-9);
+    assertEquals(1.0, foodStorage.getTotalAmount("Flour"), 1e-9);
+    before.close();
+    after.close();
+  }
+
+  @Test
+  void closedSnapshotCannotBeRead() {
+    StorageSnapshot snapshot = foodStorage.snapshot();
+    snapshot.close();
+    foodStorage.removeAmount("Flour", 1.0);
+
+    assertThrows(IllegalStateException.class, () -> snapshot.getTotalAmount("Flour"));
+    assertThrows(IllegalStateException.class, snapshot::getGroceries);
+    assertThrows(IllegalArgumentException.class, () -> foodStorage.snapshot().getTotalAmount(""));
+  }
+
+  @Test
+  void suggestsRecipesFromSnapshot() {
+    CookBook cookBook = new CookBook(foodStorage);
+    List<Grocery> ingredients = new ArrayList<>();
+    ingredients.add(new Grocery("Flour", 2.0, Unit.KILOGRAM, TODAY, 20.0));
+    cookBook.addRecipe("Bread", "Plain", "Bake.", ingredients, 1);
+
+    try (StorageSnapshot snapshot = foodStorage.snapshot()) {
+      foodStorage.removeAmount("Flour", 2.0);
+      assertEquals(List.of("Bread"), cookBook.suggestRecipesFrom(snapshot));
+      assertFalse(cookBook.checkRecipeAvailability("Bread"));
+    }
+  }
+
+  @Test
+  void reportStaysConsistentWhileWritersRun() throws InterruptedException {
+    for (int i = 0; i < 50; i++) {
+      foodStorage.addGrocery(new Grocery("Grocery" + i, 10.0, Unit.KILOGRAM, TODAY, 1.0));
+    }
+    AtomicBoolean running = new AtomicBoolean(true);
+    Thread writer = new Thread(() -> {
+      int i = 0;
+      while (running.get()) {
+        String name = "Grocery" + (i++ % 50);
+        foodStorage.removeAmount(name, 1.0);
+        foodStorage.addGrocery(new Grocery(name, 1.0, Unit.KILOGRAM, TODAY, 1.0));
+      }
+    });
+    writer.start();
+    try {
+      for (int round = 0; round < 20; round++) {
+        try (StorageSnapshot snapshot = foodStorage.snapshot()) {
+          Map<String, List<Grocery>> groceries = snapshot.getGroceries();
+          double total = 0.0;
+          for (int i = 0; i < 50; i++) {
+            total += snapshot.getTotalAmount("Grocery" + i);
+          }
+          // Each withdrawal is restocked before the next one, so at most one unit is missing
+          assertTrue(total >= 499.0 - 1e-9 && total <= 500.0 + 1e-9);
+          assertEquals(52, groceries.size());
+        }
+      }
+    } finally {
+      running.set(false);
+      writer.join();
+    }
+  }
+}